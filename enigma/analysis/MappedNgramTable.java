@@ -0,0 +1,127 @@
+package enigma.analysis;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An NgramScorer that reads the scores from a memory mapped file
+ * <p>
+ * The scores are not copied to the heap: every JVM that opens the same file shares the same pages
+ * of the page cache, and a lookup is one read of the mapped memory.
+ * <p>
+ * The file is a 16 byte header (the magic number {@code "NGRM"}, the format version, n and a reserved int)
+ * followed by the {@code 26^n} scores as floats, all little endian
+ * @see NgramTable
+ */
+public final class MappedNgramTable implements NgramScorer {
+	/**
+	 * The first 4 bytes of an n-gram file ({@code "NGRM"})
+	 */
+	public static final int MAGIC = 0x4D52474E;
+	/**
+	 * The version of the file format
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * Size of the header in bytes
+	 */
+	public static final int HEADER_SIZE = 16;
+	
+	private final int n;
+	private final ByteBuffer scores;
+	
+	private MappedNgramTable(int n, ByteBuffer scores){
+		this.n = n;
+		this.scores = scores;
+	}
+	
+	/**
+	 * Maps an n-gram file. The file can be closed or replaced by other programs, but it must not be changed while it is mapped
+	 * @param file the file
+	 * @return the table
+	 * @throws IOException if the file can't be read or is not an n-gram file
+	 */
+	public static MappedNgramTable open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < HEADER_SIZE)
+				throw new IOException(file + " is not an n-gram file");
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			
+			int n = map.getInt(8);
+			if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION || n < 1 || n > NgramTable.MAX_ORDER
+					|| size != HEADER_SIZE + 4L * NgramTable.size(n))
+				throw new IOException(file + " is not an n-gram file");
+			
+			map.position(HEADER_SIZE);
+			return new MappedNgramTable(n, map.slice().order(ByteOrder.LITTLE_ENDIAN));
+		} finally {
+			// the mapping stays valid after the channel is closed
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Writes the scores of an n-gram table to a file (created or overwritten)
+	 * @param file the file
+	 * @param n the number of letters in the n-grams (between 1 and NgramTable.MAX_ORDER)
+	 * @param scores the scores of all the {@code 26^n} n-grams
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(Path file, int n, float[] scores) throws IOException {
+		if (n < 1 || n > NgramTable.MAX_ORDER || scores.length != NgramTable.size(n))
+			throw new IllegalArgumentException();
+		
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(0);
+			for (float score : scores){
+				if (!buffer.hasRemaining())
+					drain(channel, buffer);
+				buffer.putFloat(score);
+			}
+			drain(channel, buffer);
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Counts the n-grams of a corpus and writes their log probabilities to a file (see {@link NgramTable#count(Reader, int)}).
+	 * The corpus is read in blocks so it can be much larger than the heap
+	 * @param corpus the text (read until the end but not closed)
+	 * @param n the number of letters in the n-grams (between 1 and NgramTable.MAX_ORDER)
+	 * @param file the file (created or overwritten)
+	 * @throws IOException if the corpus can't be read or the file can't be written
+	 */
+	public static void build(Reader corpus, int n, Path file) throws IOException {
+		write(file, n, NgramTable.logProbabilities(NgramTable.count(corpus, n)));
+	}
+	
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+	
+	@Override
+	public int order(){
+		return n;
+	}
+	
+	@Override
+	public float score(int index){
+		return scores.getFloat(index << 2);
+	}
+}
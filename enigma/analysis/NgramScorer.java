@@ -0,0 +1,23 @@
+package enigma.analysis;
+
+/**
+ * Scores n-grams of plaintext letters (usually with log probabilities of a language)
+ * <p>
+ * An n-gram {@code x[0] ... x[n - 1]} (letters 0 - 25) is given by its index
+ * {@code x[0] * 26^(n - 1) + x[1] * 26^(n - 2) + ... + x[n - 1]}. Implementations must be thread safe
+ * @see NgramTable
+ * @see MappedNgramTable
+ */
+public interface NgramScorer {
+	
+	/**
+	 * @return n, the number of letters in the n-grams (between 1 and NgramTable.MAX_ORDER)
+	 */
+	public int order();
+	
+	/**
+	 * @param index the index of an n-gram (0 - {@code 26^n - 1})
+	 * @return the score of the n-gram (higher is more likely)
+	 */
+	public float score(int index);
+}
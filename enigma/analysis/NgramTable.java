@@ -0,0 +1,118 @@
+package enigma.analysis;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * An NgramScorer that keeps the scores in a float array (on the heap)
+ * <p>
+ * The score of an n-gram is the log10 of its probability in a text. N-grams that were never seen get
+ * the score of an n-gram seen 0.01 times
+ */
+public final class NgramTable implements NgramScorer {
+	/**
+	 * The largest n. The counts of {@code 26^6} 6-grams would take 2.4GB of heap (and their index doesn't fit in an int
+	 * while it is computed)
+	 */
+	public static final int MAX_ORDER = 5;
+	
+	private final int n;
+	private final float[] scores;
+	
+	/**
+	 * @param n the number of letters in the n-grams (between 1 and MAX_ORDER)
+	 * @param scores the scores of all the {@code 26^n} n-grams (not copied)
+	 */
+	public NgramTable(int n, float[] scores){
+		if (n < 1 || n > MAX_ORDER || scores.length != size(n))
+			throw new IllegalArgumentException();
+		this.n = n;
+		this.scores = scores;
+	}
+	
+	/**
+	 * Counts the n-grams of a text. Anything that is not a letter is skipped (n-grams go over it)
+	 * @param text the text (read until the end but not closed)
+	 * @param n the number of letters in the n-grams (between 1 and MAX_ORDER)
+	 * @return the table
+	 * @throws IOException if text can't be read
+	 */
+	public static NgramTable fromText(Reader text, int n) throws IOException {
+		return new NgramTable(n, logProbabilities(count(text, n)));
+	}
+	
+	/**
+	 * Counts the n-grams of a text. Anything that is not a letter is skipped (n-grams go over it)
+	 * @param text the text (read until the end but not closed)
+	 * @param n the number of letters in the n-grams (between 1 and MAX_ORDER)
+	 * @return the number of times each n-gram was seen
+	 * @throws IOException if text can't be read
+	 */
+	public static long[] count(Reader text, int n) throws IOException {
+		if (n < 1 || n > MAX_ORDER)
+			throw new IllegalArgumentException();
+		int size = size(n);
+		long[] counts = new long[size];
+		
+		char[] buffer = new char[8192];
+		int index = 0;
+		int letters = 0;
+		int read;
+		while ((read = text.read(buffer)) != -1){
+			for (int i = 0; i < read; i++){
+				char c = buffer[i];
+				int letter;
+				if (c >= 'A' && c <= 'Z')
+					letter = c - 'A';
+				else if (c >= 'a' && c <= 'z')
+					letter = c - 'a';
+				else
+					continue;
+				
+				// index * 26 + letter is below 26^(MAX_ORDER + 1), which still fits in an int
+				index = (index * 26 + letter) % size;
+				if (++letters >= n)
+					counts[index]++;
+			}
+		}
+		return counts;
+	}
+	
+	/**
+	 * @param counts the number of times each n-gram was seen
+	 * @return log10 of the probability of each n-gram (n-grams never seen are counted as 0.01)
+	 */
+	public static float[] logProbabilities(long[] counts){
+		double total = 0;
+		for (long count : counts)
+			total += count;
+		if (total == 0)
+			total = 1;
+		
+		float[] scores = new float[counts.length];
+		float floor = (float)Math.log10(0.01 / total);
+		for (int i = 0; i < counts.length; i++)
+			scores[i] = counts[i] == 0 ? floor : (float)Math.log10(counts[i] / total);
+		return scores;
+	}
+	
+	/**
+	 * @return {@code 26^n}
+	 */
+	static int size(int n){
+		int size = 1;
+		for (int i = 0; i < n; i++)
+			size *= 26;
+		return size;
+	}
+	
+	@Override
+	public int order(){
+		return n;
+	}
+	
+	@Override
+	public float score(int index){
+		return scores[index];
+	}
+}
@@ -0,0 +1,251 @@
+package enigma.analysis.bombe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import enigma.machine.ScramblerTable;
+import enigma.metrics.SearchProgressEvent;
+
+/**
+ * A Turing-Welchman Bombe: finds the rotor orders and start positions that are consistent with a menu
+ * <p>
+ * For every rotor order (and reflector) a ScramblerTable is built once, so the scrambler of every edge
+ * of the menu is a row of the table. For every start position, the test register is energized with a hypothesis
+ * for the plugboard partner of the test letter and the current is spread through the menu: if {@code x} is paired
+ * with {@code b} and {@code x} is on an edge to {@code y}, then {@code y} is paired with the scrambler output of {@code b}.
+ * The diagonal board adds that {@code b} is paired with {@code x}.
+ * A hypothesis is a stop if no register ends up with two live wires.
+ * <p>
+ * The start positions are stepped exactly like an EnigmaMachine with Stepping.COG_WHEEL (the middle and left rotors turn
+ * within the crib), so there are no false stops or missed stops because of turnovers. A message of a machine with another stepping
+ * is only found if only the right rotor turns within the crib.
+ * Each rotor order is searched as a separate task of a ForkJoinPool and stops are given to the listener as soon as they are found
+ */
+public class Bombe {
+	private final String[] rotorNames;
+	private final String[] reflectorNames;
+	
+	/**
+	 * @param rotorNames the rotors to try. Every order of 3 different rotors is searched
+	 * @param reflectorNames the reflectors to try
+	 * @throws IllegalArgumentException if there are less than 3 rotors or no reflectors
+	 */
+	public Bombe(String[] rotorNames, String[] reflectorNames){
+		if (rotorNames.length < 3 || reflectorNames.length == 0)
+			throw new IllegalArgumentException();
+		this.rotorNames = rotorNames.clone();
+		this.reflectorNames = reflectorNames.clone();
+	}
+	
+	/**
+	 * @return the number of rotor orders times the number of reflectors
+	 */
+	public int getOrderCount(){
+		int n = rotorNames.length;
+		return n * (n - 1) * (n - 2) * reflectorNames.length;
+	}
+	
+	/**
+	 * Same as run(Menu, Consumer, ForkJoinPool) on the common ForkJoinPool
+	 * @param menu the menu
+	 * @param listener called for every stop
+	 * @return the number of start positions tested
+	 */
+	public long run(Menu menu, Consumer<Stop> listener){
+		return run(menu, listener, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Searches all rotor orders and start positions. Returns after all of them are searched
+	 * @param menu the menu
+	 * @param listener called for every stop (by the thread that found it, so it has to be thread safe)
+	 * @param pool the pool the rotor orders are searched in
+	 * @return the number of start positions tested
+	 */
+	public long run(final Menu menu, final Consumer<Stop> listener, ForkJoinPool pool){
+		List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+		for (final String reflector : reflectorNames){
+			for (int l = 0; l < rotorNames.length; l++){
+				for (int m = 0; m < rotorNames.length; m++){
+					for (int r = 0; r < rotorNames.length; r++){
+						if (l == m || m == r || l == r)
+							continue;
+						final String[] order = {rotorNames[l], rotorNames[m], rotorNames[r]};
+						tasks.add(new Callable<Long>() {
+							public Long call() {
+								return search(order, reflector, menu, listener);
+							}
+						});
+					}
+				}
+			}
+		}
+		
+		long tested = 0;
+		try {
+			for (Future<Long> future : pool.invokeAll(tasks))
+				tested += future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while searching", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		return tested;
+	}
+	
+	/**
+	 * Searches all the start positions of one rotor order (any rotors and reflector, not only the ones of a Bombe)
+	 * @param order names of the rotors (left to right)
+	 * @param reflector name of the reflector
+	 * @param menu the menu
+	 * @param listener called for every stop
+	 * @return the number of start positions tested
+	 */
+	public static long search(String[] order, String reflector, Menu menu, Consumer<Stop> listener){
+		return search(order, reflector, menu, 0, ScramblerTable.POSITIONS, listener);
+	}
+	
+	/**
+	 * Searches a range of the start positions of one rotor order (any rotors and reflector, not only the ones of a Bombe)
+	 * @param order names of the rotors (left to right)
+	 * @param reflector name of the reflector
+	 * @param menu the menu
+	 * @param from the first start state (see {@link ScramblerTable#state(int, int, int)})
+	 * @param to the state after the last one
+	 * @param listener called for every stop
+	 * @return the number of start positions tested
+	 * @throws IndexOutOfBoundsException if the range is not inside {@code [0, ScramblerTable.POSITIONS)}
+	 */
+	public static long search(String[] order, String reflector, Menu menu, int from, int to, Consumer<Stop> listener){
+		if (from < 0 || from > to || to > ScramblerTable.POSITIONS)
+			throw new IndexOutOfBoundsException("range [" + from + ", " + to + ") out of bounds for " + ScramblerTable.POSITIONS);
+		ScramblerTable table = ScramblerTable.build(order[0], order[1], order[2], reflector);
+		Scan scan = new Scan(table, menu);
+		SearchProgressEvent progress = new SearchProgressEvent("Bombe", order, reflector, to - from);
+		
+		for (int start = from; start < to; start++){
+			int stecker = scan.test(start);
+			if (stecker >= 0){
+				int[] positions = new int[3];
+				for (int i = 0; i < 3; i++)
+					positions[i] = ScramblerTable.position(start, i);
+				listener.accept(new Stop(order, reflector, positions, menu.getTestLetter(),
+						(char)(stecker + 'A'), scan.steckers()));
+			}
+			if ((start + 1 - from) % SearchProgressEvent.INTERVAL == 0)
+				progress = progress.next(start + 1 - from);
+		}
+		progress.next(to - from);
+		return to - from;
+	}
+	
+	/**
+	 * The registers and diagonal board of one bank (only used by one thread)
+	 */
+	private static final class Scan {
+		final ScramblerTable table;
+		final Menu menu;
+		final int test;
+		// the state of the rotors after k key presses
+		final int[] stateAt;
+		// live[x] has bit b set if the wire b of register x is live (x is paired with b)
+		final int[] live = new int[26];
+		final int[] stack = new int[26 * 26];
+		int top;
+		
+		Scan(ScramblerTable table, Menu menu){
+			this.table = table;
+			this.menu = menu;
+			this.test = menu.testRegister();
+			this.stateAt = new int[menu.maxSteps() + 1];
+		}
+		
+		/**
+		 * Tests all the hypotheses of the test register at a start position
+		 * @param start the state of the rotors before the first key press
+		 * @return the partner of the test letter of a stop (0 - 25) or -1 if there is no stop.
+		 * After a stop live has the wires of the stop
+		 */
+		int test(int start){
+			stateAt[0] = start;
+			for (int k = 1; k < stateAt.length; k++)
+				stateAt[k] = table.next(stateAt[k - 1]);
+			
+			// hypotheses known to be wrong: every live wire of the test register after a contradiction
+			int wrong = 0;
+			for (int hypothesis = 0; hypothesis < 26; hypothesis++){
+				if ((wrong >>> hypothesis & 1) != 0)
+					continue;
+				if (spread(hypothesis))
+					return hypothesis;
+				wrong |= live[test];
+				if (wrong == (1 << 26) - 1)
+					break;
+			}
+			return -1;
+		}
+		
+		/**
+		 * Energizes a wire of the test register and spreads the current
+		 * @return true if no register has more than one live wire
+		 */
+		private boolean spread(int hypothesis){
+			for (int x = 0; x < 26; x++)
+				live[x] = 0;
+			top = 0;
+			energize(test, hypothesis);
+			
+			while (top > 0){
+				int wire = stack[--top];
+				int x = wire / 26;
+				int b = wire % 26;
+				
+				// diagonal board
+				energize(b, x);
+				
+				int[] adjacent = menu.adjacent(x);
+				int[] steps = menu.steps(x);
+				for (int k = 0; k < adjacent.length; k++)
+					energize(adjacent[k], table.map(stateAt[steps[k]], b));
+				
+				// two live wires in the test register, the hypothesis is wrong
+				if ((live[test] & live[test] - 1) != 0)
+					return false;
+			}
+			
+			for (int x = 0; x < 26; x++){
+				if ((live[x] & live[x] - 1) != 0)
+					return false;
+			}
+			return true;
+		}
+		
+		private void energize(int register, int wire){
+			int bit = 1 << wire;
+			if ((live[register] & bit) == 0){
+				live[register] |= bit;
+				stack[top++] = register * 26 + wire;
+			}
+		}
+		
+		/**
+		 * @return the plugboard pairs of the last stop (0 for unknown letters)
+		 */
+		char[] steckers(){
+			char[] steckers = new char[26];
+			for (int x = 0; x < 26; x++){
+				if (live[x] != 0)
+					steckers[x] = (char)(Integer.numberOfTrailingZeros(live[x]) + 'A');
+			}
+			return steckers;
+		}
+	}
+}
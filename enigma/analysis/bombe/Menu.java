@@ -0,0 +1,167 @@
+package enigma.analysis.bombe;
+
+/**
+ * A menu: the graph of letters made from a crib (known plaintext) and the ciphertext under it
+ * <p>
+ * Every position {@code i} of the crib gives an edge between {@code crib[i]} and {@code ciphertext[offset + i]}
+ * labelled with the number of key presses from the start of the message ({@code offset + i + 1}).
+ * The letter with the most edges is used as the test register of the Bombe
+ * @see Bombe
+ */
+public final class Menu {
+	private final String crib;
+	private final String ciphertext;
+	private final int offset;
+	
+	// edges of letter x: (adjacent[x][k], steps[x][k])
+	private final int[][] adjacent;
+	private final int[][] steps;
+	private final int maxSteps;
+	private final int testLetter;
+	
+	/**
+	 * Creates a menu with the crib under the start of the ciphertext
+	 * @param crib the known plaintext
+	 * @param ciphertext the ciphertext
+	 * @see Menu#Menu(String, String, int)
+	 */
+	public Menu(String crib, String ciphertext){
+		this(crib, ciphertext, 0);
+	}
+	
+	/**
+	 * @param crib the known plaintext (letters only)
+	 * @param ciphertext the ciphertext (letters only)
+	 * @param offset the position of the crib in the ciphertext
+	 * @throws IllegalArgumentException if the crib doesn't fit in the ciphertext at offset, one of them has
+	 * anything other than letters or a letter of the crib is over the same letter (an Enigma never encrypts a letter to itself)
+	 */
+	public Menu(String crib, String ciphertext, int offset){
+		this.crib = crib.toUpperCase();
+		this.ciphertext = ciphertext.toUpperCase();
+		this.offset = offset;
+		if (offset < 0 || crib.length() == 0 || offset + crib.length() > ciphertext.length())
+			throw new IllegalArgumentException("the crib doesn't fit in the ciphertext at " + offset);
+		
+		int[] count = new int[26];
+		for (int i = 0; i < this.crib.length(); i++){
+			int plain = letter(this.crib.charAt(i));
+			int cipher = letter(this.ciphertext.charAt(offset + i));
+			if (plain == cipher)
+				throw new IllegalArgumentException("crib letter " + (char)(plain + 'A') + " is over itself at " + (offset + i));
+			count[plain]++;
+			count[cipher]++;
+		}
+		
+		adjacent = new int[26][];
+		steps = new int[26][];
+		int test = 0;
+		for (int x = 0; x < 26; x++){
+			adjacent[x] = new int[count[x]];
+			steps[x] = new int[count[x]];
+			if (count[x] > count[test])
+				test = x;
+		}
+		testLetter = test;
+		
+		int[] filled = new int[26];
+		for (int i = 0; i < this.crib.length(); i++){
+			int plain = letter(this.crib.charAt(i));
+			int cipher = letter(this.ciphertext.charAt(offset + i));
+			adjacent[plain][filled[plain]] = cipher;
+			steps[plain][filled[plain]++] = offset + i + 1;
+			adjacent[cipher][filled[cipher]] = plain;
+			steps[cipher][filled[cipher]++] = offset + i + 1;
+		}
+		maxSteps = offset + this.crib.length();
+	}
+	
+	private static int letter(char c){
+		if (c < 'A' || c > 'Z')
+			throw new IllegalArgumentException("not a letter: " + c);
+		return c - 'A';
+	}
+	
+	/**
+	 * @return the crib (upper case)
+	 */
+	public String getCrib() {
+		return crib;
+	}
+	
+	/**
+	 * @return the ciphertext (upper case)
+	 */
+	public String getCiphertext() {
+		return ciphertext;
+	}
+	
+	/**
+	 * @return the position of the crib in the ciphertext
+	 */
+	public int getOffset() {
+		return offset;
+	}
+	
+	/**
+	 * @return the letter with the most edges
+	 */
+	public char getTestLetter(){
+		return (char)(testLetter + 'A');
+	}
+	
+	/**
+	 * @return the number of loops in the menu (edges - letters + connected groups). Menus with fewer loops give more stops
+	 */
+	public int getLoops(){
+		int[] group = new int[26];
+		for (int x = 0; x < 26; x++)
+			group[x] = x;
+		int edges = 0, letters = 0, groups = 0;
+		for (int x = 0; x < 26; x++){
+			if (adjacent[x].length > 0)
+				letters++;
+			for (int y : adjacent[x]){
+				edges++;
+				int a = find(group, x), b = find(group, y);
+				if (a != b)
+					group[a] = b;
+			}
+		}
+		for (int x = 0; x < 26; x++){
+			if (adjacent[x].length > 0 && find(group, x) == x)
+				groups++;
+		}
+		return edges / 2 - letters + groups;
+	}
+	
+	private static int find(int[] group, int x){
+		while (group[x] != x)
+			x = group[x];
+		return x;
+	}
+	
+	int testRegister(){
+		return testLetter;
+	}
+	
+	int[] adjacent(int letter){
+		return adjacent[letter];
+	}
+	
+	int[] steps(int letter){
+		return steps[letter];
+	}
+	
+	/**
+	 * @return the largest number of key presses of an edge
+	 */
+	int maxSteps(){
+		return maxSteps;
+	}
+	
+	@Override
+	public String toString(){
+		return crib + " / " + ciphertext.substring(offset, offset + crib.length()) + " at " + offset;
+	}
+}
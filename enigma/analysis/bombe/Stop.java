@@ -0,0 +1,93 @@
+package enigma.analysis.bombe;
+
+/**
+ * A stop of the Bombe: a rotor order and start positions where the menu is consistent with a plugboard pairing
+ * of the test letter. The plugboard pairs that follow from it are in {@link #getSteckers()}
+ */
+public final class Stop {
+	private final String[] rotorNames;
+	private final String reflectorName;
+	private final int[] positions;
+	private final char testLetter;
+	private final char stecker;
+	private final char[] steckers;
+	
+	Stop(String[] rotorNames, String reflectorName, int[] positions, char testLetter, char stecker, char[] steckers){
+		this.rotorNames = rotorNames.clone();
+		this.reflectorName = reflectorName;
+		this.positions = positions.clone();
+		this.testLetter = testLetter;
+		this.stecker = stecker;
+		this.steckers = steckers.clone();
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the name of the rotor
+	 */
+	public String getRotorName(int rotorNum){
+		return rotorNames[rotorNum];
+	}
+	
+	/**
+	 * @return the name of the reflector
+	 */
+	public String getReflectorName(){
+		return reflectorName;
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the position of the rotor at the start of the message (as a letter)
+	 */
+	public char getPosition(int rotorNum){
+		return (char)(positions[rotorNum] + 'A' - 1);
+	}
+	
+	/**
+	 * @return the test letter of the menu
+	 */
+	public char getTestLetter(){
+		return testLetter;
+	}
+	
+	/**
+	 * @return the letter the test letter is paired with on the plugboard (can be itself)
+	 */
+	public char getStecker(){
+		return stecker;
+	}
+	
+	/**
+	 * @return the plugboard pairs that follow from the stop: letter {@code x} is paired with {@code getSteckers()[x - 'A']}
+	 * or {@code 0} if it is not known
+	 */
+	public char[] getSteckers(){
+		return steckers.clone();
+	}
+	
+	/**
+	 * @return the stop in the syntax of SettingsParser (only the known plugboard pairs that are not a letter with itself,
+	 * without the plugboard if there are none: Settings.createConfig uses a plugboard without pairs)
+	 */
+	public String toSettings(){
+		String str = "";
+		for (int i = 0; i < 3; i++)
+			str += "<" + rotorNames[i] + ":" + (i + 1) + ":" + getPosition(i) + ">";
+		str += "<" + reflectorName + ">";
+		String pairs = "";
+		for (int x = 0; x < 26; x++){
+			if (steckers[x] != 0 && steckers[x] - 'A' > x)
+				pairs += "(" + (char)(x + 'A') + "," + steckers[x] + ")";
+		}
+		if (pairs.length() > 0)
+			str += "<" + pairs + ">";
+		return str;
+	}
+	
+	@Override
+	public String toString(){
+		return rotorNames[0] + " " + rotorNames[1] + " " + rotorNames[2] + " " + reflectorName + " at "
+				+ getPosition(0) + getPosition(1) + getPosition(2) + ": " + testLetter + "=" + stecker;
+	}
+}
@@ -0,0 +1,55 @@
+package enigma.analysis.catalog;
+
+/**
+ * A rotor order, reflector and ground setting found in a CharacteristicCatalog
+ */
+public final class CatalogMatch {
+	private final String[] rotorNames;
+	private final String reflectorName;
+	private final int[] positions;
+
+	CatalogMatch(String[] rotorNames, String reflectorName, int[] positions){
+		this.rotorNames = rotorNames.clone();
+		this.reflectorName = reflectorName;
+		this.positions = positions.clone();
+	}
+
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the name of the rotor
+	 */
+	public String getRotorName(int rotorNum){
+		return rotorNames[rotorNum];
+	}
+
+	/**
+	 * @return the name of the reflector
+	 */
+	public String getReflectorName(){
+		return reflectorName;
+	}
+
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the position of the rotor in the ground setting, before the first letter of the indicator (as a letter)
+	 */
+	public char getPosition(int rotorNum){
+		return (char)(positions[rotorNum] + 'A' - 1);
+	}
+
+	/**
+	 * @return the rotors and reflector in the syntax of SettingsParser (there is no plugboard: Settings.createConfig
+	 * uses a plugboard without pairs)
+	 */
+	public String toSettings(){
+		String str = "";
+		for (int i = 0; i < 3; i++)
+			str += "<" + rotorNames[i] + ":" + (i + 1) + ":" + getPosition(i) + ">";
+		return str + "<" + reflectorName + ">";
+	}
+
+	@Override
+	public String toString(){
+		return toSettings();
+	}
+}
@@ -0,0 +1,258 @@
+package enigma.analysis.catalog;
+
+import java.util.Arrays;
+
+import enigma.machine.ScramblerTable;
+
+/**
+ * The characteristic of a ground setting: the lengths of the cycles of the products AD, BE and CF, where A is the
+ * permutation that encrypts the first letter of a doubled indicator, B the second one and so on
+ * <p>
+ * The message key was encrypted twice at the ground setting of the day, so the first and the fourth letter of
+ * every indicator are encryptions of the same letter and AD maps the first letter of an indicator to the fourth one.
+ * The plugboard changes the products but not the lengths of their cycles, so the characteristic only depends on
+ * the rotor order, the reflector and the ground setting. A and D are involutions, so the cycles of AD come in pairs
+ * of the same length and each product is one of the 101 partitions of 13.
+ * <p>
+ * A characteristic is written as the lengths of the cycles of each product, longest first:
+ * {@code "10 10 2 2 1 1 / 13 13 / 9 9 3 3 1 1"}
+ * @see CharacteristicCatalog
+ */
+public final class Characteristic {
+	/**
+	 * Number of different cycle structures of one product (the partitions of 13)
+	 */
+	public static final int PRODUCTS = 101;
+	/**
+	 * Number of different characteristics
+	 */
+	public static final int CODES = PRODUCTS * PRODUCTS * PRODUCTS;
+
+	// a cycle structure is the number of cycles of each length in base 27 (cycles of length l count 27^(l - 1))
+	private static final long[] POWERS = new long[13];
+	// the cycle structures of half of the cycles of a product (the partitions of 13), sorted
+	private static final long[] PARTITIONS;
+
+	static {
+		POWERS[0] = 1;
+		for (int l = 1; l < 13; l++)
+			POWERS[l] = POWERS[l - 1] * 27;
+		PARTITIONS = new long[PRODUCTS];
+		if (partitions(13, 13, 0, 0) != PRODUCTS)
+			throw new AssertionError();
+		Arrays.sort(PARTITIONS);
+	}
+
+	/**
+	 * Adds the partitions of {@code rest} into parts of at most {@code max} to those of PARTITIONS
+	 * @return the number of partitions in PARTITIONS
+	 */
+	private static int partitions(int rest, int max, long structure, int count){
+		if (rest == 0){
+			PARTITIONS[count] = structure;
+			return count + 1;
+		}
+		for (int part = Math.min(rest, max); part >= 1; part--)
+			count = partitions(rest - part, part, structure + POWERS[part - 1], count);
+		return count;
+	}
+
+	private final int code;
+
+	Characteristic(int code){
+		if (code < 0 || code >= CODES)
+			throw new IllegalArgumentException("invalid code " + code);
+		this.code = code;
+	}
+
+	/**
+	 * Works out the characteristic from the indicators of one day. Every letter has to be the first letter
+	 * (and the second and the third) of at least one indicator, which usually takes 60 - 80 indicators
+	 * @param indicators the doubled indicators (6 letters each, upper or lower case)
+	 * @return the characteristic
+	 * @throws IllegalArgumentException if an indicator is not 6 letters, the indicators don't give all of AD, BE and CF
+	 * or they can't come from the same ground setting
+	 */
+	public static Characteristic of(String[] indicators){
+		int[][] products = new int[3][26];
+		for (int[] product : products)
+			Arrays.fill(product, -1);
+
+		for (String indicator : indicators){
+			if (indicator.length() != 6)
+				throw new IllegalArgumentException("indicator " + indicator + " is not 6 letters");
+			for (int k = 0; k < 3; k++){
+				int first = letter(indicator, k);
+				int second = letter(indicator, k + 3);
+				if (products[k][first] >= 0 && products[k][first] != second)
+					throw new IllegalArgumentException("indicator " + indicator + " doesn't match the ones before");
+				products[k][first] = second;
+			}
+		}
+
+		int code = 0;
+		for (int k = 0; k < 3; k++){
+			for (int x = 0; x < 26; x++){
+				if (products[k][x] < 0)
+					throw new IllegalArgumentException("no indicator with " + (char)(x + 'A') + " as letter " + (k + 1));
+			}
+			int product = product(products[k]);
+			if (product < 0)
+				throw new IllegalArgumentException("the indicators can't come from the same ground setting");
+			code = code * PRODUCTS + product;
+		}
+		return new Characteristic(code);
+	}
+
+	/**
+	 * @return the letter (0 - 25) at index i
+	 */
+	private static int letter(String indicator, int i){
+		char c = indicator.charAt(i);
+		if (c >= 'A' && c <= 'Z')
+			return c - 'A';
+		if (c >= 'a' && c <= 'z')
+			return c - 'a';
+		throw new IllegalArgumentException("indicator " + indicator + " is not 6 letters");
+	}
+
+	/**
+	 * Parses a characteristic written like toString()
+	 * @param characteristic the lengths of the cycles of AD, BE and CF separated by {@code '/'}
+	 * @return the characteristic
+	 * @throws IllegalArgumentException if a product is not a valid cycle structure
+	 */
+	public static Characteristic parse(String characteristic){
+		String[] products = characteristic.split("/");
+		if (products.length != 3)
+			throw new IllegalArgumentException("invalid characteristic " + characteristic);
+		int code = 0;
+		for (String product : products){
+			long structure = 0;
+			int total = 0;
+			for (String length : product.trim().split("\\s+")){
+				int l;
+				try {
+					l = Integer.parseInt(length);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("invalid characteristic " + characteristic, e);
+				}
+				if (l < 1 || l > 13)
+					throw new IllegalArgumentException("invalid characteristic " + characteristic);
+				structure += POWERS[l - 1];
+				total += l;
+			}
+			int index = total == 26 ? index(half(structure)) : -1;
+			if (index < 0)
+				throw new IllegalArgumentException("invalid characteristic " + characteristic);
+			code = code * PRODUCTS + index;
+		}
+		return new Characteristic(code);
+	}
+
+	/**
+	 * Works out the characteristic of a ground setting without making a machine
+	 * @param table the rotor order and reflector
+	 * @param start the state of the rotors before the first letter of the indicator
+	 * @param product room for a permutation (26 ints)
+	 * @return the code of the characteristic
+	 */
+	static int code(ScramblerTable table, int start, int[] product){
+		int[] states = new int[6];
+		int state = start;
+		for (int i = 0; i < 6; i++){
+			state = table.next(state);
+			states[i] = state;
+		}
+
+		int code = 0;
+		for (int k = 0; k < 3; k++){
+			for (int x = 0; x < 26; x++)
+				product[x] = table.map(states[k + 3], table.map(states[k], x));
+			code = code * PRODUCTS + product(product);
+		}
+		return code;
+	}
+
+	/**
+	 * @param permutation a permutation of 0 - 25
+	 * @return the index of its cycle structure or -1 if it is not a product of two involutions without fixed points
+	 */
+	static int product(int[] permutation){
+		long structure = 0;
+		int visited = 0;
+		for (int x = 0; x < 26; x++){
+			if ((visited >>> x & 1) != 0)
+				continue;
+			int length = 0;
+			int y = x;
+			do {
+				visited |= 1 << y;
+				y = permutation[y];
+				length++;
+			} while (y != x && length <= 13);
+			if (y != x)
+				return -1;
+			structure += POWERS[length - 1];
+		}
+		return index(half(structure));
+	}
+	
+	/**
+	 * The cycles of a product of two involutions without fixed points come in pairs of the same length,
+	 * so the number of cycles of every length (every digit in base 27) has to be even. Then the structure is twice
+	 * the structure of one cycle of each pair without carries
+	 * @return half of the structure or -1 if a length has an odd number of cycles
+	 */
+	private static long half(long structure){
+		for (long rest = structure; rest != 0; rest /= 27){
+			if (rest % 27 % 2 != 0)
+				return -1;
+		}
+		return structure / 2;
+	}
+
+	/**
+	 * @return the index of a partition of 13 or -1 (also for -1)
+	 */
+	private static int index(long half){
+		int index = Arrays.binarySearch(PARTITIONS, half);
+		return index < 0 ? -1 : index;
+	}
+
+	/**
+	 * @return a number between 0 and {@code CODES - 1} that is different for every characteristic
+	 */
+	public int getCode(){
+		return code;
+	}
+
+	@Override
+	public boolean equals(Object obj){
+		return obj instanceof Characteristic && ((Characteristic)obj).code == code;
+	}
+
+	@Override
+	public int hashCode(){
+		return code;
+	}
+
+	@Override
+	public String toString(){
+		String str = "";
+		int[] products = {code / (PRODUCTS * PRODUCTS), code / PRODUCTS % PRODUCTS, code % PRODUCTS};
+		for (int k = 0; k < 3; k++){
+			if (k > 0)
+				str += " / ";
+			String lengths = "";
+			long half = PARTITIONS[products[k]];
+			for (int l = 13; l >= 1; l--){
+				long count = half / POWERS[l - 1] % 27;
+				for (long i = 0; i < 2 * count; i++)
+					lengths += (lengths.isEmpty() ? "" : " ") + l;
+			}
+			str += lengths;
+		}
+		return str;
+	}
+}
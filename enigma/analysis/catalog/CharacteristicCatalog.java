@@ -0,0 +1,258 @@
+package enigma.analysis.catalog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import enigma.machine.ScramblerTable;
+
+/**
+ * Rejewski's catalog: the characteristic of every ground setting of every rotor order, indexed by characteristic
+ * <p>
+ * The catalog is built once with {@link #build(String[], String[], Path, ForkJoinPool)}. Each rotor order (and reflector)
+ * is a task that builds a ScramblerTable from the Rotor and Reflector wiring and works out the characteristic of all
+ * the {@code 26^3} ground settings from it, stepping the rotors exactly like an EnigmaMachine with the default
+ * Stepping.COG_WHEEL (indicators of machines with other steppings don't match the catalog).
+ * <p>
+ * The file is a header (the magic number {@code "RCAT"}, the format version, the number of rotor orders and the names of
+ * the rotors and reflector of each one), then {@code Characteristic.CODES + 1} ints: the index of the first ground setting
+ * of each characteristic, and then all the ground settings (rotor order * {@code POSITIONS} + state) sorted by characteristic.
+ * A query is two reads of the mapped offsets and then only the ground settings that match are read.
+ * A catalog is immutable and thread safe
+ * @see Characteristic
+ */
+public final class CharacteristicCatalog {
+	/**
+	 * The first 4 bytes of a catalog file ({@code "RCAT"})
+	 */
+	public static final int MAGIC = 0x52434154;
+	/**
+	 * The version of the file format
+	 */
+	public static final int VERSION = 1;
+
+	private final String[][] orders; // the 3 rotors and the reflector of each rotor order
+	private final ByteBuffer offsets;
+	private final ByteBuffer settings;
+
+	private CharacteristicCatalog(String[][] orders, ByteBuffer offsets, ByteBuffer settings){
+		this.orders = orders;
+		this.offsets = offsets;
+		this.settings = settings;
+	}
+
+	/**
+	 * Maps a catalog file. The file must not be changed while it is mapped
+	 * @param file the file
+	 * @return the catalog
+	 * @throws IOException if the file can't be read or is not a catalog
+	 */
+	public static CharacteristicCatalog open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			try {
+				if (map.getInt() != MAGIC || map.getInt() != VERSION)
+					throw new IOException(file + " is not a catalog");
+				String[][] orders = new String[map.getInt()][4];
+				for (String[] order : orders){
+					for (int i = 0; i < 4; i++){
+						byte[] name = new byte[map.getShort() & 0xFFFF];
+						map.get(name);
+						order[i] = new String(name, StandardCharsets.UTF_8);
+					}
+				}
+				long offsetsSize = 4L * (Characteristic.CODES + 1);
+				if (map.remaining() != offsetsSize + 4L * orders.length * ScramblerTable.POSITIONS)
+					throw new IOException(file + " is not a catalog");
+
+				ByteBuffer offsets = map.slice();
+				offsets.limit((int)offsetsSize);
+				map.position(map.position() + (int)offsetsSize);
+				return new CharacteristicCatalog(orders, offsets, map.slice());
+			} catch (RuntimeException e) {
+				// BufferUnderflowException or a negative size
+				throw new IOException(file + " is not a catalog", e);
+			}
+		} finally {
+			// the mapping stays valid after the channel is closed
+			channel.close();
+		}
+	}
+
+	/**
+	 * Same as build(String[], String[], Path, ForkJoinPool) on the common ForkJoinPool
+	 * @param rotorNames the rotors. Every order of 3 different rotors is in the catalog
+	 * @param reflectorNames the reflectors
+	 * @param file the file (created or overwritten)
+	 * @throws IOException if the file can't be written
+	 */
+	public static void build(String[] rotorNames, String[] reflectorNames, Path file) throws IOException {
+		build(rotorNames, reflectorNames, file, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Works out the characteristics of all the ground settings and writes the catalog. Returns after the file is written
+	 * @param rotorNames the rotors. Every order of 3 different rotors is in the catalog
+	 * @param reflectorNames the reflectors
+	 * @param file the file (created or overwritten)
+	 * @param pool the pool the rotor orders are computed in
+	 * @throws IOException if the file can't be written
+	 * @throws IllegalArgumentException if there are less than 3 rotors, no reflectors or a name is not valid
+	 */
+	public static void build(String[] rotorNames, String[] reflectorNames, Path file, ForkJoinPool pool) throws IOException {
+		if (rotorNames.length < 3 || reflectorNames.length == 0)
+			throw new IllegalArgumentException();
+
+		List<String[]> orders = new ArrayList<String[]>();
+		for (String reflector : reflectorNames){
+			for (int l = 0; l < rotorNames.length; l++){
+				for (int m = 0; m < rotorNames.length; m++){
+					for (int r = 0; r < rotorNames.length; r++){
+						if (l == m || m == r || l == r)
+							continue;
+						orders.add(new String[] {rotorNames[l], rotorNames[m], rotorNames[r], reflector});
+					}
+				}
+			}
+		}
+
+		List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>();
+		for (final String[] order : orders){
+			tasks.add(new Callable<int[]>() {
+				public int[] call() {
+					return codes(order);
+				}
+			});
+		}
+		int[][] codes = new int[orders.size()][];
+		try {
+			List<Future<int[]>> futures = pool.invokeAll(tasks);
+			for (int i = 0; i < codes.length; i++)
+				codes[i] = futures.get(i).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while building the catalog", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+
+		// counting sort: the ground settings of a characteristic start after those of all the smaller ones
+		int[] next = new int[Characteristic.CODES + 1];
+		for (int[] order : codes){
+			for (int code : order)
+				next[code + 1]++;
+		}
+		for (int code = 0; code < Characteristic.CODES; code++)
+			next[code + 1] += next[code];
+
+		int headerSize = 12;
+		for (String[] order : orders){
+			for (String name : order)
+				headerSize += 2 + name.getBytes(StandardCharsets.UTF_8).length;
+		}
+		long offsetsSize = 4L * (Characteristic.CODES + 1);
+		long size = headerSize + offsetsSize + 4L * orders.size() * ScramblerTable.POSITIONS;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("too many rotor orders");
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			map.putInt(MAGIC).putInt(VERSION).putInt(orders.size());
+			for (String[] order : orders){
+				for (String name : order){
+					byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+					map.putShort((short)bytes.length).put(bytes);
+				}
+			}
+			for (int offset : next)
+				map.putInt(offset);
+
+			ByteBuffer settings = map.slice();
+			for (int i = 0; i < codes.length; i++){
+				int[] order = codes[i];
+				for (int state = 0; state < ScramblerTable.POSITIONS; state++)
+					settings.putInt(next[order[state]]++ << 2, i * ScramblerTable.POSITIONS + state);
+			}
+			map.force();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @param order the 3 rotors and the reflector
+	 * @return the code of the characteristic of every ground setting
+	 */
+	private static int[] codes(String[] order){
+		ScramblerTable table = ScramblerTable.build(order[0], order[1], order[2], order[3]);
+		int[] codes = new int[ScramblerTable.POSITIONS];
+		int[] product = new int[26];
+		for (int state = 0; state < ScramblerTable.POSITIONS; state++)
+			codes[state] = Characteristic.code(table, state, product);
+		return codes;
+	}
+
+	/**
+	 * @return the number of rotor orders (times the number of reflectors)
+	 */
+	public int getOrderCount(){
+		return orders.length;
+	}
+
+	/**
+	 * @return the number of ground settings in the catalog
+	 */
+	public int size(){
+		return orders.length * ScramblerTable.POSITIONS;
+	}
+
+	/**
+	 * @param characteristic a characteristic
+	 * @return the number of ground settings that have it
+	 */
+	public int count(Characteristic characteristic){
+		int code = characteristic.getCode();
+		return offsets.getInt((code + 1) << 2) - offsets.getInt(code << 2);
+	}
+
+	/**
+	 * Finds all the ground settings with a characteristic
+	 * @param characteristic the characteristic (for example from {@link Characteristic#of(String[])})
+	 * @return the rotor orders and ground settings, by rotor order and then position
+	 */
+	public List<CatalogMatch> find(Characteristic characteristic){
+		int code = characteristic.getCode();
+		int from = offsets.getInt(code << 2);
+		int to = offsets.getInt((code + 1) << 2);
+
+		List<CatalogMatch> matches = new ArrayList<CatalogMatch>(to - from);
+		String[] rotors = new String[3];
+		int[] positions = new int[3];
+		for (int i = from; i < to; i++){
+			int setting = settings.getInt(i << 2);
+			String[] order = orders[setting / ScramblerTable.POSITIONS];
+			int state = setting % ScramblerTable.POSITIONS;
+			for (int r = 0; r < 3; r++){
+				rotors[r] = order[r];
+				positions[r] = ScramblerTable.position(state, r);
+			}
+			matches.add(new CatalogMatch(rotors, order[3], positions));
+		}
+		return matches;
+	}
+}
@@ -0,0 +1,280 @@
+package enigma.analysis.hillclimb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+import enigma.analysis.NgramScorer;
+import enigma.machine.ScramblerTable;
+import enigma.metrics.SearchProgressEvent;
+
+/**
+ * Finds the key of a message from the ciphertext only
+ * <p>
+ * First every start position of every rotor order (and reflector) is decrypted without a plugboard and scored
+ * by the index of coincidence, the best start positions of each order are kept. Each of those candidates is a restart:
+ * the ring settings of the right and middle rotors are climbed (keeping the wiring of the start state, see
+ * PlugboardClimber) and the plugboard is hill climbed with a PlugboardClimber, both first by the index of coincidence
+ * and then by the n-gram score.
+ * The rotor orders and the restarts are tasks of a ForkJoinPool, so the restarts of one order run on all the workers
+ * <p>
+ * The ring setting of the left rotor is always A and the rotors step like Stepping.COG_WHEEL
+ */
+public class CiphertextOnlySolver {
+	// the rotor at the left of the one whose ring setting is climbed is also tried a step before and after (see climbRingSettings)
+	private static final int[] SHIFTS = {0, -1, 1};
+	
+	private final String[] rotorNames;
+	private final String[] reflectorNames;
+	private final NgramScorer scorer;
+	private int candidates = 8;
+	
+	/**
+	 * @param rotorNames the rotors to try. Every order of 3 different rotors is searched
+	 * @param reflectorNames the reflectors to try
+	 * @param scorer the n-gram scores of the language of the plaintext
+	 * @throws IllegalArgumentException if there are less than 3 rotors or no reflectors
+	 */
+	public CiphertextOnlySolver(String[] rotorNames, String[] reflectorNames, NgramScorer scorer){
+		if (rotorNames.length < 3 || reflectorNames.length == 0)
+			throw new IllegalArgumentException();
+		if (scorer == null)
+			throw new NullPointerException();
+		this.rotorNames = rotorNames.clone();
+		this.reflectorNames = reflectorNames.clone();
+		this.scorer = scorer;
+	}
+	
+	/**
+	 * The index of coincidence without a plugboard does not rank the right start position well for short messages with
+	 * many plugboard pairs, more candidates find those keys but take longer
+	 * @param candidates the number of start positions of each rotor order whose plugboard is climbed (8 by default)
+	 * @throws IllegalArgumentException if candidates is not positive
+	 */
+	public void setCandidates(int candidates){
+		if (candidates < 1)
+			throw new IllegalArgumentException();
+		this.candidates = candidates;
+	}
+	
+	/**
+	 * @return the number of start positions of each rotor order whose plugboard is climbed
+	 */
+	public int getCandidates(){
+		return candidates;
+	}
+	
+	/**
+	 * Same as solve(String, ForkJoinPool) on a new ForkJoinPool with a worker for every processor
+	 * (the common pool leaves one out), which is shut down at the end
+	 * @param ciphertext the message
+	 * @return the solutions, best first
+	 */
+	public List<Solution> solve(String ciphertext){
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try {
+			return solve(ciphertext, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Searches all rotor orders. Characters that are not letters are ignored
+	 * @param ciphertext the message
+	 * @param pool the pool the search runs in
+	 * @return one solution for every candidate, best n-gram score first
+	 */
+	public List<Solution> solve(String ciphertext, ForkJoinPool pool){
+		final int[] cipher = letters(ciphertext);
+		
+		List<Callable<List<Solution>>> tasks = new ArrayList<Callable<List<Solution>>>();
+		for (final String reflector : reflectorNames){
+			for (int l = 0; l < rotorNames.length; l++){
+				for (int m = 0; m < rotorNames.length; m++){
+					for (int r = 0; r < rotorNames.length; r++){
+						if (l == m || m == r || l == r)
+							continue;
+						final String[] order = {rotorNames[l], rotorNames[m], rotorNames[r]};
+						tasks.add(new Callable<List<Solution>>() {
+							public List<Solution> call() {
+								return search(order, reflector, cipher);
+							}
+						});
+					}
+				}
+			}
+		}
+		
+		List<Solution> solutions = new ArrayList<Solution>();
+		try {
+			for (Future<List<Solution>> future : pool.invokeAll(tasks))
+				solutions.addAll(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while searching", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		Collections.sort(solutions, new Comparator<Solution>() {
+			public int compare(Solution a, Solution b) {
+				return Double.compare(b.getScore(), a.getScore());
+			}
+		});
+		return solutions;
+	}
+	
+	/**
+	 * Searches one rotor order. The restarts are forked, so they run on the other workers of the pool
+	 * @param order names of the rotors (left to right)
+	 * @param reflector name of the reflector
+	 * @param cipher the ciphertext letters (0 - 25)
+	 * @return a solution for each of the best start positions
+	 */
+	List<Solution> search(final String[] order, final String reflector, final int[] cipher){
+		// one event for the whole rotor order, most of the time is spent on the positions in bestStarts
+		SearchProgressEvent progress = new SearchProgressEvent("CiphertextOnlySolver", order, reflector, ScramblerTable.POSITIONS);
+		final ScramblerTable table = ScramblerTable.build(order[0], order[1], order[2], reflector);
+		List<RecursiveTask<Solution>> restarts = new ArrayList<RecursiveTask<Solution>>();
+		for (final int start : bestStarts(table, cipher, candidates)){
+			restarts.add(new RecursiveTask<Solution>() {
+				protected Solution compute() {
+					return restart(order, reflector, table, start, cipher);
+				}
+			});
+		}
+		List<Solution> solutions = new ArrayList<Solution>();
+		for (RecursiveTask<Solution> restart : RecursiveTask.invokeAll(restarts))
+			solutions.add(restart.join());
+		progress.next(ScramblerTable.POSITIONS);
+		return solutions;
+	}
+	
+	/**
+	 * Climbs the plugboard and the ring settings of one candidate
+	 * @param start the start state at ring setting A
+	 * @return the solution
+	 */
+	private Solution restart(String[] order, String reflector, ScramblerTable table, int start, int[] cipher){
+		PlugboardClimber climber = new PlugboardClimber(table, start, cipher);
+		// the pairs a climb finds in the letters where the rotors turn at the wrong time are wrong,
+		// so the ring settings are climbed before the plugboard and again after each plugboard climb
+		climbRingSettings(climber, null);
+		climber.climbIndexOfCoincidence();
+		climbRingSettings(climber, null);
+		climber.climb(scorer);
+		climbRingSettings(climber, scorer);
+		double score = climber.climb(scorer);
+		int[] positions = new int[3];
+		int[] ringSettings = new int[3];
+		for (int i = 0; i < 3; i++){
+			positions[i] = climber.startPosition(i);
+			ringSettings[i] = climber.ringSetting(i);
+		}
+		return new Solution(order, reflector, positions, ringSettings, climber.plugboard(), climber.plaintext(), score);
+	}
+	
+	/**
+	 * Tries every ring setting of the right rotor and then of the middle one with the plugboard of the climber and
+	 * keeps the one with the best fitness (the first one if they are the same, so A if no turn changes it).
+	 * The candidates are ranked with the rotors turning at ring setting A, so the rotor at the left of the one
+	 * whose ring setting is climbed can be a step before or after: every ring setting is also tried with those two
+	 * @param scorer the n-gram scores or {@code null} for the index of coincidence
+	 */
+	static void climbRingSettings(PlugboardClimber climber, NgramScorer scorer){
+		for (int rotorNum = 2; rotorNum >= 1; rotorNum--){
+			int start = climber.start();
+			int bestStart = start, bestRing = 1;
+			double bestFitness = Double.NEGATIVE_INFINITY;
+			for (int ring = 1; ring <= 26; ring++){
+				for (int shift : SHIFTS){
+					int[] positions = new int[3];
+					for (int i = 0; i < 3; i++)
+						positions[i] = ScramblerTable.position(start, i);
+					positions[rotorNum - 1] = (positions[rotorNum - 1] + shift + 25) % 26 + 1;
+					int candidate = ScramblerTable.state(positions[0], positions[1], positions[2]);
+					if (rotorNum == 2)
+						climber.setStart(candidate, climber.ringSetting(1), ring);
+					else
+						climber.setStart(candidate, ring, climber.ringSetting(2));
+					double fitness = fitness(climber, scorer);
+					if (fitness > bestFitness){
+						bestFitness = fitness;
+						bestStart = candidate;
+						bestRing = ring;
+					}
+				}
+			}
+			if (rotorNum == 2)
+				climber.setStart(bestStart, climber.ringSetting(1), bestRing);
+			else
+				climber.setStart(bestStart, bestRing, climber.ringSetting(2));
+		}
+	}
+	
+	private static double fitness(PlugboardClimber climber, NgramScorer scorer){
+		return scorer == null ? climber.indexOfCoincidence() : climber.score(scorer);
+	}
+	
+	/**
+	 * @return the count start states whose decryption without a plugboard has the highest index of coincidence
+	 */
+	static int[] bestStarts(ScramblerTable table, int[] cipher, int count){
+		count = Math.min(count, ScramblerTable.POSITIONS);
+		// the best so far, worst first (sum of count * (count - 1) is in the same order as the index of coincidence)
+		long[] bestPairs = new long[count];
+		int[] bestStarts = new int[count];
+		for (int k = 0; k < count; k++)
+			bestPairs[k] = -1;
+		int[] counts = new int[26];
+		
+		for (int start = 0; start < ScramblerTable.POSITIONS; start++){
+			for (int x = 0; x < 26; x++)
+				counts[x] = 0;
+			long pairs = 0;
+			int state = start;
+			for (int i = 0; i < cipher.length; i++){
+				state = table.next(state);
+				pairs += 2 * counts[table.map(state, cipher[i])]++;
+			}
+			if (pairs <= bestPairs[0])
+				continue;
+			// insert and drop the worst
+			int k = 0;
+			while (k + 1 < count && bestPairs[k + 1] < pairs){
+				bestPairs[k] = bestPairs[k + 1];
+				bestStarts[k] = bestStarts[k + 1];
+				k++;
+			}
+			bestPairs[k] = pairs;
+			bestStarts[k] = start;
+		}
+		return bestStarts;
+	}
+	
+	/**
+	 * @return the letters of text (0 - 25), upper and lower case
+	 */
+	private static int[] letters(String text){
+		int[] letters = new int[text.length()];
+		int n = 0;
+		for (int i = 0; i < text.length(); i++){
+			char c = text.charAt(i);
+			if (c >= 'A' && c <= 'Z')
+				letters[n++] = c - 'A';
+			else if (c >= 'a' && c <= 'z')
+				letters[n++] = c - 'a';
+		}
+		int[] result = new int[n];
+		System.arraycopy(letters, 0, result, 0, n);
+		return result;
+	}
+}
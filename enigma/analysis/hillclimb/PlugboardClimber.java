@@ -0,0 +1,419 @@
+package enigma.analysis.hillclimb;
+
+import enigma.analysis.NgramScorer;
+import enigma.machine.ScramblerTable;
+
+/**
+ * Hill climbs the plugboard of a ciphertext for fixed rotors and start positions
+ * <p>
+ * A move pairs two letters (taking them out of their old pairs) or unpairs them. A move is kept if it makes
+ * the fitness of the decryption better. The scrambler of every position of the message is fixed, so a move
+ * only changes the positions where the ciphertext letter or the letter coming out of the scrambler is one of
+ * the (at most 4) letters the move touches. The positions are kept in buckets by both letters, and the fitness
+ * is only updated for those positions (and the n-grams that contain them) instead of decrypting and scoring
+ * the whole message again.
+ * <p>
+ * The table has the rotors at ring setting A. A ring setting turns the wiring of a rotor against its position, so
+ * the climber keeps the wiring of the start state and moves the start positions with the ring settings of the middle
+ * and right rotors (see {@link #setRingSettings(int, int)}): only the letters where the rotors turn the next one change.
+ * The ring setting of the left rotor turns nothing and can't be told apart from its start position, it stays at A.
+ * <p>
+ * A climber is used by one thread
+ */
+public final class PlugboardClimber {
+	private static final double EPSILON = 1e-9;
+	
+	private final ScramblerTable table;
+	private int start;
+	private final int[] cipher;
+	private final int[] states;
+	private final int length;
+	
+	private int middleRing = 1;
+	private int rightRing = 1;
+	
+	private final int[] plug = new int[26];
+	// inner[i] is the output of the scrambler at position i and plain[i] = plug[inner[i]]
+	private final int[] inner;
+	private final int[] plain;
+	
+	// positions by ciphertext letter (never change) and by inner letter (rebuilt after every move that is kept)
+	private final int[][] byCipher;
+	private final int[][] byInner;
+	private final int[] byInnerCount = new int[26];
+	
+	// letter counts of plain and the sum of count * (count - 1) (for the index of coincidence).
+	// Only updated by the moves of the index of coincidence climb, counted again after an n-gram climb
+	private final int[] counts = new int[26];
+	private long pairs;
+	
+	// scratch for a move
+	private final int[] affected;
+	private final int[] newInner;
+	private final int[] oldPlain;
+	private int affectedCount;
+	private final int[] windows;
+	private final int[] mark;
+	private int stamp;
+	
+	/**
+	 * @param table the scrambler of the rotor order
+	 * @param start the state of the rotors before the first letter at ring setting A (see {@link ScramblerTable#state(int, int, int)})
+	 * @param cipher the ciphertext letters (0 - 25)
+	 */
+	public PlugboardClimber(ScramblerTable table, int start, int[] cipher){
+		this.table = table;
+		this.start = start;
+		this.cipher = cipher.clone();
+		this.length = cipher.length;
+		
+		states = new int[length];
+		step();
+		
+		int[] cipherCount = new int[26];
+		for (int c : this.cipher)
+			cipherCount[c]++;
+		byCipher = new int[26][];
+		byInner = new int[26][];
+		for (int x = 0; x < 26; x++){
+			byCipher[x] = new int[cipherCount[x]];
+			byInner[x] = new int[length];
+			cipherCount[x] = 0;
+		}
+		for (int i = 0; i < length; i++)
+			byCipher[this.cipher[i]][cipherCount[this.cipher[i]]++] = i;
+		
+		inner = new int[length];
+		plain = new int[length];
+		affected = new int[length];
+		newInner = new int[length];
+		oldPlain = new int[length];
+		windows = new int[length];
+		mark = new int[length];
+		
+		for (int x = 0; x < 26; x++)
+			plug[x] = x;
+		decrypt();
+	}
+	
+	/**
+	 * Fills states: the rotors step at their positions with the ring settings and the table is looked up
+	 * at the positions of the wiring (the same as the start state at ring setting A)
+	 */
+	private void step(){
+		int middleShift = middleRing - 1, rightShift = rightRing - 1;
+		int state = ScramblerTable.state(ScramblerTable.position(start, 0), startPosition(1), startPosition(2));
+		for (int i = 0; i < length; i++){
+			state = table.next(state);
+			int middle = (state / 26 % 26 - middleShift + 26) % 26;
+			int right = (state % 26 - rightShift + 26) % 26;
+			states[i] = (state / 26 / 26 * 26 + middle) * 26 + right;
+		}
+	}
+	
+	/**
+	 * Changes the ring settings of the middle and right rotors and decrypts the message again with the same plugboard.
+	 * The wiring of the rotors stays at the start state, so the start positions move with the ring settings
+	 * (see {@link #startPosition(int)})
+	 * @param middleRing the ring setting of the middle rotor (1 - 26)
+	 * @param rightRing the ring setting of the right rotor (1 - 26)
+	 * @throws IllegalArgumentException if a ring setting is not between 1 and 26
+	 */
+	public void setRingSettings(int middleRing, int rightRing){
+		setStart(start, middleRing, rightRing);
+	}
+	
+	/**
+	 * Changes the start state and the ring settings of the middle and right rotors and decrypts the message again
+	 * with the same plugboard
+	 * @param start the state of the wiring before the first letter (the start state at ring setting A)
+	 * @param middleRing the ring setting of the middle rotor (1 - 26)
+	 * @param rightRing the ring setting of the right rotor (1 - 26)
+	 * @throws IllegalArgumentException if a ring setting is not between 1 and 26 or the state is not valid
+	 */
+	public void setStart(int start, int middleRing, int rightRing){
+		if (middleRing < 1 || middleRing > 26 || rightRing < 1 || rightRing > 26)
+			throw new IllegalArgumentException();
+		if (start < 0 || start >= ScramblerTable.POSITIONS)
+			throw new IllegalArgumentException();
+		this.start = start;
+		this.middleRing = middleRing;
+		this.rightRing = rightRing;
+		step();
+		decrypt();
+	}
+	
+	/**
+	 * @return the state of the wiring before the first letter (the start state at ring setting A)
+	 */
+	public int start(){
+		return start;
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the ring setting of the rotor (1 - 26, the left rotor is always at 1)
+	 */
+	public int ringSetting(int rotorNum){
+		switch (rotorNum){
+		case 0: return 1;
+		case 1: return middleRing;
+		case 2: return rightRing;
+		default: throw new IndexOutOfBoundsException();
+		}
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the position of the rotor before the first letter with the current ring settings (1 - 26)
+	 */
+	public int startPosition(int rotorNum){
+		return (ScramblerTable.position(start, rotorNum) - 1 + ringSetting(rotorNum) - 1) % 26 + 1;
+	}
+	
+	/**
+	 * Decrypts the whole message with the current plugboard
+	 */
+	private void decrypt(){
+		for (int i = 0; i < length; i++){
+			inner[i] = table.map(states[i], plug[cipher[i]]);
+			plain[i] = plug[inner[i]];
+		}
+		countLetters();
+		bucketInner();
+	}
+	
+	private void countLetters(){
+		for (int x = 0; x < 26; x++)
+			counts[x] = 0;
+		pairs = 0;
+		for (int i = 0; i < length; i++)
+			pairs += 2 * counts[plain[i]]++;
+	}
+	
+	private void bucketInner(){
+		for (int x = 0; x < 26; x++)
+			byInnerCount[x] = 0;
+		for (int i = 0; i < length; i++)
+			byInner[inner[i]][byInnerCount[inner[i]]++] = i;
+	}
+	
+	/**
+	 * @return the index of coincidence of the current decryption
+	 */
+	public double indexOfCoincidence(){
+		if (length < 2)
+			return 0;
+		return (double)pairs / ((long)length * (length - 1));
+	}
+	
+	/**
+	 * @param scorer the n-gram scores
+	 * @return the sum of the scores of all the n-grams of the current decryption
+	 */
+	public double score(NgramScorer scorer){
+		double score = 0;
+		for (int j = 0; j + scorer.order() <= length; j++)
+			score += scorer.score(window(j, scorer.order()));
+		return score;
+	}
+	
+	/**
+	 * Climbs with the index of coincidence as the fitness until no move makes it better
+	 * @return the index of coincidence at the end
+	 */
+	public double climbIndexOfCoincidence(){
+		climbWith(null);
+		return indexOfCoincidence();
+	}
+	
+	/**
+	 * Climbs with the n-gram score as the fitness until no move makes it better
+	 * @param scorer the n-gram scores
+	 * @return the score at the end
+	 */
+	public double climb(NgramScorer scorer){
+		if (scorer == null)
+			throw new NullPointerException();
+		climbWith(scorer);
+		countLetters();
+		return score(scorer);
+	}
+	
+	/**
+	 * @param scorer the n-gram scores or {@code null} for the index of coincidence
+	 */
+	private void climbWith(NgramScorer scorer){
+		boolean better = true;
+		while (better){
+			better = false;
+			for (int a = 0; a < 26; a++){
+				for (int b = a + 1; b < 26; b++){
+					if (tryMove(a, b, scorer))
+						better = true;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Pairs a and b (or unpairs them if they are paired) and keeps the move if it makes the fitness better
+	 * @return true if the move was kept
+	 */
+	private boolean tryMove(int a, int b, NgramScorer scorer){
+		int oldA = plug[a], oldB = plug[b];
+		
+		// apply the move
+		if (oldA == b){
+			plug[a] = a;
+			plug[b] = b;
+		} else {
+			plug[oldA] = oldA;
+			plug[oldB] = oldB;
+			plug[a] = b;
+			plug[b] = a;
+		}
+		
+		// the positions that change are the ones with a touched letter in the ciphertext or out of the scrambler
+		stamp++;
+		affectedCount = 0;
+		addAffected(a);
+		addAffected(b);
+		if (oldA != a && oldA != b)
+			addAffected(oldA);
+		if (oldB != a && oldB != b && oldB != oldA)
+			addAffected(oldB);
+		
+		long pairsBefore = pairs;
+		double delta;
+		if (scorer == null)
+			delta = iocDelta();
+		else
+			delta = ngramDelta(scorer);
+		
+		if (delta > EPSILON){
+			for (int k = 0; k < affectedCount; k++)
+				inner[affected[k]] = newInner[k];
+			bucketInner();
+			return true;
+		}
+		
+		// undo
+		for (int k = 0; k < affectedCount; k++){
+			int i = affected[k];
+			if (scorer == null && plain[i] != oldPlain[k]){
+				counts[plain[i]]--;
+				counts[oldPlain[k]]++;
+			}
+			plain[i] = oldPlain[k];
+		}
+		pairs = pairsBefore;
+		plug[a] = oldA;
+		plug[oldA] = a;
+		plug[b] = oldB;
+		plug[oldB] = b;
+		return false;
+	}
+	
+	/**
+	 * Adds the positions with letter x in the ciphertext or out of the scrambler to affected (once)
+	 * with the new output of the scrambler
+	 */
+	private void addAffected(int x){
+		for (int i : byCipher[x])
+			addAffectedPosition(i);
+		for (int n = 0; n < byInnerCount[x]; n++)
+			addAffectedPosition(byInner[x][n]);
+	}
+	
+	private void addAffectedPosition(int i){
+		if (mark[i] == stamp)
+			return;
+		mark[i] = stamp;
+		newInner[affectedCount] = table.map(states[i], plug[cipher[i]]);
+		affected[affectedCount++] = i;
+	}
+	
+	/**
+	 * Changes plain of the affected positions to the new decryption and updates the letter counts
+	 * @return the change in the index of coincidence (times {@code length * (length - 1)})
+	 */
+	private double iocDelta(){
+		long before = pairs;
+		for (int k = 0; k < affectedCount; k++){
+			int i = affected[k];
+			int newPlain = plug[newInner[k]];
+			oldPlain[k] = plain[i];
+			if (newPlain != plain[i]){
+				pairs -= 2 * --counts[plain[i]];
+				pairs += 2 * counts[newPlain]++;
+				plain[i] = newPlain;
+			}
+		}
+		return pairs - before;
+	}
+	
+	/**
+	 * Changes plain of the affected positions to the new decryption
+	 * @return the change in the n-gram score
+	 */
+	private double ngramDelta(NgramScorer scorer){
+		int n = scorer.order();
+		
+		// the n-grams that contain an affected position
+		stamp++;
+		int windowCount = 0;
+		for (int k = 0; k < affectedCount; k++){
+			int i = affected[k];
+			int first = Math.max(0, i - n + 1);
+			int last = Math.min(i, length - n);
+			for (int j = first; j <= last; j++){
+				if (mark[j] != stamp){
+					mark[j] = stamp;
+					windows[windowCount++] = j;
+				}
+			}
+		}
+		
+		double before = 0;
+		for (int w = 0; w < windowCount; w++)
+			before += scorer.score(window(windows[w], n));
+		
+		for (int k = 0; k < affectedCount; k++){
+			oldPlain[k] = plain[affected[k]];
+			plain[affected[k]] = plug[newInner[k]];
+		}
+		
+		double after = 0;
+		for (int w = 0; w < windowCount; w++)
+			after += scorer.score(window(windows[w], n));
+		return after - before;
+	}
+	
+	/**
+	 * @return the index of the n-gram of plain that starts at j
+	 */
+	private int window(int j, int n){
+		int index = 0;
+		for (int k = j; k < j + n; k++)
+			index = index * 26 + plain[k];
+		return index;
+	}
+	
+	/**
+	 * @return the current plugboard: letter x is paired with {@code plugboard()[x]} (0 - 25)
+	 */
+	public int[] plugboard(){
+		return plug.clone();
+	}
+	
+	/**
+	 * @return the current decryption (upper case)
+	 */
+	public String plaintext(){
+		char[] text = new char[length];
+		for (int i = 0; i < length; i++)
+			text[i] = (char)(plain[i] + 'A');
+		return new String(text);
+	}
+}
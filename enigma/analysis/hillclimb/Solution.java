@@ -0,0 +1,101 @@
+package enigma.analysis.hillclimb;
+
+/**
+ * A key found by the CiphertextOnlySolver and the decryption it gives
+ */
+public final class Solution {
+	private final String[] rotorNames;
+	private final String reflectorName;
+	private final int[] positions;
+	private final int[] ringSettings;
+	private final int[] plugboard;
+	private final String plaintext;
+	private final double score;
+	
+	Solution(String[] rotorNames, String reflectorName, int[] positions, int[] ringSettings, int[] plugboard, String plaintext, double score){
+		this.rotorNames = rotorNames.clone();
+		this.reflectorName = reflectorName;
+		this.positions = positions.clone();
+		this.ringSettings = ringSettings.clone();
+		this.plugboard = plugboard.clone();
+		this.plaintext = plaintext;
+		this.score = score;
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the name of the rotor
+	 */
+	public String getRotorName(int rotorNum){
+		return rotorNames[rotorNum];
+	}
+	
+	/**
+	 * @return the name of the reflector
+	 */
+	public String getReflectorName(){
+		return reflectorName;
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the position of the rotor at the start of the message (as a letter)
+	 */
+	public char getPosition(int rotorNum){
+		return (char)(positions[rotorNum] + 'A' - 1);
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the ring setting of the rotor (as a letter, always A for the left rotor)
+	 */
+	public char getRingSetting(int rotorNum){
+		return (char)(ringSettings[rotorNum] + 'A' - 1);
+	}
+	
+	/**
+	 * @param letter a letter (upper case)
+	 * @return the letter it is paired with on the plugboard (itself if it is not paired)
+	 */
+	public char getPair(char letter){
+		return (char)(plugboard[letter - 'A'] + 'A');
+	}
+	
+	/**
+	 * @return the decryption of the letters of the ciphertext (upper case)
+	 */
+	public String getPlaintext(){
+		return plaintext;
+	}
+	
+	/**
+	 * @return the n-gram score of the plaintext
+	 */
+	public double getScore(){
+		return score;
+	}
+	
+	/**
+	 * @return the key in the syntax of SettingsParser (with the ring settings, without the plugboard if there are no pairs:
+	 * Settings.createConfig uses a plugboard without pairs)
+	 */
+	public String toSettings(){
+		String str = "";
+		for (int i = 0; i < 3; i++)
+			str += "<" + rotorNames[i] + ":" + (i + 1) + ":" + getPosition(i) + ":" + getRingSetting(i) + ">";
+		str += "<" + reflectorName + ">";
+		String pairs = "";
+		for (int x = 0; x < 26; x++){
+			if (plugboard[x] > x)
+				pairs += "(" + (char)(x + 'A') + "," + (char)(plugboard[x] + 'A') + ")";
+		}
+		if (pairs.length() > 0)
+			str += "<" + pairs + ">";
+		return str;
+	}
+	
+	@Override
+	public String toString(){
+		return String.format("%.2f %s %s", score, toSettings(), plaintext);
+	}
+}
@@ -0,0 +1,53 @@
+package enigma.analysis.search;
+
+import java.util.function.Consumer;
+
+import enigma.analysis.bombe.Bombe;
+import enigma.analysis.bombe.Menu;
+import enigma.analysis.bombe.Stop;
+
+/**
+ * A KeySearch that runs a Bombe on the start positions of each unit. The results are the stops
+ * @see Bombe#search(String[], String, Menu, int, int, Consumer)
+ */
+public class BombeSearch implements KeySearch {
+	private final Menu menu;
+
+	/**
+	 * @param menu the menu
+	 */
+	public BombeSearch(Menu menu){
+		this.menu = menu;
+	}
+
+	/**
+	 * Makes the search from the arguments given by getArguments() (in a worker JVM)
+	 * @param args the crib, the ciphertext and the offset of the crib
+	 * @throws IllegalArgumentException if the arguments are not valid
+	 */
+	public BombeSearch(String[] args){
+		this(menu(args));
+	}
+
+	private static Menu menu(String[] args){
+		if (args.length != 3)
+			throw new IllegalArgumentException("expected the crib, the ciphertext and the offset");
+		try {
+			return new Menu(args[0], args[1], Integer.parseInt(args[2]));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid offset " + args[2], e);
+		}
+	}
+
+	public void search(WorkUnit unit, final Consumer<String> results){
+		Bombe.search(unit.getRotorNames(), unit.getReflectorName(), menu, unit.getFrom(), unit.getTo(), new Consumer<Stop>() {
+			public void accept(Stop stop) {
+				results.accept(stop.toSettings());
+			}
+		});
+	}
+
+	public String[] getArguments(){
+		return new String[] {menu.getCrib(), menu.getCiphertext(), Integer.toString(menu.getOffset())};
+	}
+}
@@ -0,0 +1,26 @@
+package enigma.analysis.search;
+
+import java.util.function.Consumer;
+
+/**
+ * What a SearchScheduler runs on each unit of the keyspace
+ * <p>
+ * To run in worker JVMs, an implementation needs a public constructor that takes a {@code String[]}:
+ * a worker makes its copy of the search with the arguments returned by {@link #getArguments()}
+ * @see SearchScheduler
+ * @see BombeSearch
+ */
+public interface KeySearch {
+
+	/**
+	 * Searches a unit. Called by any number of threads at the same time
+	 * @param unit the unit
+	 * @param results called for every key found, in the syntax of SettingsParser
+	 */
+	public void search(WorkUnit unit, Consumer<String> results);
+
+	/**
+	 * @return the arguments of the constructor that makes the same search
+	 */
+	public String[] getArguments();
+}
@@ -0,0 +1,119 @@
+package enigma.analysis.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * An append-only file of the units of a search that are done
+ * <p>
+ * The file is text: the first line names the search ({@code "enigma-search <job>"}) and then there is one line
+ * with the id of every unit that is done. A line is forced to the disk before complete(int) returns, so after a crash
+ * the file has every unit that was completed. A line cut by the crash is removed when the file is opened again.
+ * <p>
+ * A checkpoint can be used by any number of threads
+ * @see SearchScheduler
+ */
+public final class SearchCheckpoint implements Closeable {
+	private final FileChannel channel;
+	private final BitSet done = new BitSet();
+	private int doneCount;
+
+	private SearchCheckpoint(FileChannel channel){
+		this.channel = channel;
+	}
+
+	/**
+	 * Opens a checkpoint and reads the units that are done. The file is created if it doesn't exist
+	 * @param file the file
+	 * @param job what identifies the search (the units have to be the same every time the search is run)
+	 * @return the checkpoint
+	 * @throws IOException if the file can't be read or written or it is the checkpoint of another search
+	 */
+	public static SearchCheckpoint open(Path file, String job) throws IOException {
+		String header = "enigma-search " + job + "\n";
+		byte[] data = Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			SearchCheckpoint checkpoint = new SearchCheckpoint(channel);
+			// everything after the last complete line is thrown away
+			int end = data.length;
+			while (end > 0 && data[end - 1] != '\n')
+				end--;
+			String text = new String(data, 0, end, StandardCharsets.UTF_8);
+
+			if (text.isEmpty()){
+				channel.truncate(0);
+				channel.write(ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8)), 0);
+			} else {
+				if (!text.startsWith(header))
+					throw new IOException(file + " is not a checkpoint of this search");
+				for (String line : text.substring(header.length()).split("\n")){
+					if (line.isEmpty())
+						continue;
+					try {
+						checkpoint.mark(Integer.parseInt(line));
+					} catch (NumberFormatException e) {
+						throw new IOException(file + " is not a checkpoint of this search", e);
+					}
+				}
+				channel.truncate(end);
+			}
+			channel.force(false);
+			channel.position(channel.size());
+			return checkpoint;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void mark(int unit){
+		if (unit < 0)
+			throw new NumberFormatException("negative unit " + unit);
+		if (!done.get(unit)){
+			done.set(unit);
+			doneCount++;
+		}
+	}
+
+	/**
+	 * @param unit the id of a unit
+	 * @return {@code true} if the unit is done
+	 */
+	public synchronized boolean isDone(int unit){
+		return done.get(unit);
+	}
+
+	/**
+	 * @return the number of units that are done
+	 */
+	public synchronized int getDoneCount(){
+		return doneCount;
+	}
+
+	/**
+	 * Appends a unit and forces it to the disk. Should only be called after all the results of the unit were handled
+	 * @param unit the id of the unit
+	 * @throws IOException if the file can't be written
+	 */
+	public synchronized void complete(int unit) throws IOException {
+		if (done.get(unit))
+			return;
+		ByteBuffer line = ByteBuffer.wrap((unit + "\n").getBytes(StandardCharsets.UTF_8));
+		while (line.hasRemaining())
+			channel.write(line);
+		channel.force(false);
+		mark(unit);
+	}
+
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+}
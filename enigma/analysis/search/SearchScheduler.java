@@ -0,0 +1,250 @@
+package enigma.analysis.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs a KeySearch on all the units of a keyspace in worker threads or worker JVMs, and remembers the units
+ * that are done in a SearchCheckpoint so a search that was stopped (or crashed) goes on where it was
+ * <p>
+ * Every worker takes the next unit that is not done, searches it, gives the results to the sink and then appends the unit
+ * to the checkpoint. If the search is stopped between the results of a unit and its checkpoint, the unit is searched again
+ * the next time and the sink gets its results twice.
+ * <p>
+ * A worker JVM is started with the same java and class path as this one and runs SearchWorker. It gets the name and the
+ * arguments of the KeySearch and then the units through its standard input and sends the results back through its
+ * standard output. If a worker fails (an exception or a JVM that dies), its unit goes back to the queue for the other workers
+ * and run throws after they are done
+ * @see WorkUnit#split(String[], String[], int)
+ * @see SearchWorker
+ */
+public class SearchScheduler {
+	// messages from a worker JVM
+	static final int RESULT = 'R';
+	static final int DONE = 'D';
+
+	private final KeySearch search;
+	private final List<WorkUnit> units;
+	private final Path checkpointFile;
+
+	/**
+	 * @param search the search run on every unit
+	 * @param units the units (numbered from 0 in order, for example by WorkUnit.split)
+	 * @param checkpointFile the checkpoint (created if it doesn't exist)
+	 * @throws IllegalArgumentException if the units are not numbered in order
+	 */
+	public SearchScheduler(KeySearch search, List<WorkUnit> units, Path checkpointFile){
+		for (int i = 0; i < units.size(); i++){
+			if (units.get(i).getId() != i)
+				throw new IllegalArgumentException("unit " + i + " has id " + units.get(i).getId());
+		}
+		this.search = search;
+		this.units = new ArrayList<WorkUnit>(units);
+		this.checkpointFile = checkpointFile;
+	}
+
+	/**
+	 * @return what identifies the search in the checkpoint: a hash of the search, its arguments and the units
+	 */
+	String job(){
+		StringBuilder str = new StringBuilder(search.getClass().getName());
+		for (String arg : search.getArguments())
+			str.append('\n').append(arg);
+		for (WorkUnit unit : units)
+			str.append('\n').append(unit);
+		// 64 bit FNV-1a
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < str.length(); i++){
+			hash ^= str.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return units.size() + " " + Long.toHexString(hash);
+	}
+
+	/**
+	 * Searches all the units that are not done in worker threads. Returns when all of them are done
+	 * @param threads the number of threads
+	 * @param sink called for every result (by one thread at a time)
+	 * @return the number of units searched
+	 * @throws IOException if the checkpoint can't be read or written
+	 * @throws IllegalStateException if a worker failed (the units that are done stay in the checkpoint)
+	 */
+	public int runThreads(int threads, Consumer<String> sink) throws IOException {
+		return run(threads, false, sink);
+	}
+
+	/**
+	 * Searches all the units that are not done in worker JVMs. Returns when all of them are done
+	 * @param processes the number of JVMs
+	 * @param sink called for every result (by one thread at a time)
+	 * @return the number of units searched
+	 * @throws IOException if the checkpoint can't be read or written
+	 * @throws IllegalStateException if a worker failed (the units that are done stay in the checkpoint)
+	 */
+	public int runProcesses(int processes, Consumer<String> sink) throws IOException {
+		return run(processes, true, sink);
+	}
+
+	private int run(int workers, final boolean processes, final Consumer<String> sink) throws IOException {
+		if (workers < 1)
+			throw new IllegalArgumentException("no workers");
+		final SearchCheckpoint checkpoint = SearchCheckpoint.open(checkpointFile, job());
+		try {
+			final ConcurrentLinkedQueue<WorkUnit> queue = new ConcurrentLinkedQueue<WorkUnit>();
+			for (WorkUnit unit : units){
+				if (!checkpoint.isDone(unit.getId()))
+					queue.add(unit);
+			}
+			final AtomicInteger searched = new AtomicInteger();
+			final Throwable[] failure = new Throwable[1];
+
+			List<Thread> threads = new ArrayList<Thread>();
+			for (int i = 0; i < workers; i++){
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						try {
+							if (processes)
+								runProcess(queue, checkpoint, sink, searched);
+							else
+								runThread(queue, checkpoint, sink, searched);
+						} catch (Throwable e) {
+							synchronized (failure){
+								if (failure[0] == null)
+									failure[0] = e;
+							}
+						}
+					}
+				}, "search-worker-" + i);
+				thread.start();
+				threads.add(thread);
+			}
+			for (Thread thread : threads)
+				join(thread);
+
+			if (failure[0] != null || checkpoint.getDoneCount() < units.size())
+				throw new IllegalStateException(units.size() - checkpoint.getDoneCount() + " units were not searched", failure[0]);
+			return searched.get();
+		} finally {
+			checkpoint.close();
+		}
+	}
+
+	private static void join(Thread thread){
+		while (true){
+			try {
+				thread.join();
+				return;
+			} catch (InterruptedException e) {
+				// the workers can't be stopped in the middle of a unit, the checkpoint is consistent after they are done
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Searches units in the current thread until the queue is empty
+	 */
+	private void runThread(ConcurrentLinkedQueue<WorkUnit> queue, SearchCheckpoint checkpoint, final Consumer<String> sink,
+			AtomicInteger searched) throws IOException {
+		WorkUnit unit;
+		while ((unit = queue.poll()) != null){
+			boolean done = false;
+			try {
+				search.search(unit, new Consumer<String>() {
+					public void accept(String result) {
+						synchronized (sink){
+							sink.accept(result);
+						}
+					}
+				});
+				checkpoint.complete(unit.getId());
+				done = true;
+			} finally {
+				// the unit goes back for the other workers
+				if (!done)
+					queue.add(unit);
+			}
+			searched.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Starts a worker JVM and sends it units until the queue is empty
+	 */
+	private void runProcess(ConcurrentLinkedQueue<WorkUnit> queue, SearchCheckpoint checkpoint, Consumer<String> sink,
+			AtomicInteger searched) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), SearchWorker.class.getName());
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Process process = builder.start();
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+			DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+			String[] args = search.getArguments();
+			out.writeUTF(search.getClass().getName());
+			out.writeInt(args.length);
+			for (String arg : args)
+				out.writeUTF(arg);
+
+			WorkUnit unit;
+			while ((unit = queue.poll()) != null){
+				boolean done = false;
+				try {
+					SearchWorker.writeUnit(out, unit);
+					out.flush();
+					int message;
+					while ((message = in.readUnsignedByte()) == RESULT){
+						String result = in.readUTF();
+						synchronized (sink){
+							sink.accept(result);
+						}
+					}
+					if (message != DONE || in.readInt() != unit.getId())
+						throw new IOException("invalid message from the worker");
+					checkpoint.complete(unit.getId());
+					done = true;
+				} finally {
+					// the worker died (or the sink failed): the unit goes back for the other workers
+					if (!done)
+						queue.add(unit);
+				}
+				searched.incrementAndGet();
+			}
+			// the worker exits at the end of its input
+			out.close();
+		} finally {
+			process.destroy();
+		}
+	}
+
+	/**
+	 * @return the number of units
+	 */
+	public int getUnitCount(){
+		return units.size();
+	}
+
+	/**
+	 * Reads the checkpoint
+	 * @return the number of units that are done
+	 * @throws IOException if the checkpoint can't be read or is the checkpoint of another search
+	 */
+	public int getDoneCount() throws IOException {
+		SearchCheckpoint checkpoint = SearchCheckpoint.open(checkpointFile, job());
+		try {
+			return checkpoint.getDoneCount();
+		} finally {
+			checkpoint.close();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package enigma.analysis.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * The main class of a worker JVM started by SearchScheduler.runProcesses
+ * <p>
+ * The input starts with the class name of the KeySearch and its arguments and then has the units, one after the other.
+ * For every unit the worker writes its results (the byte {@code 'R'} and the result) and then the byte {@code 'D'} and the id
+ * of the unit. Strings are written with {@code DataOutput.writeUTF}. The worker exits at the end of its input.
+ * Anything else the search prints goes to the standard error
+ * @see SearchScheduler
+ */
+public class SearchWorker {
+
+	public static void main(String[] args) throws Exception {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+		System.setOut(System.err);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+
+		String className = in.readUTF();
+		String[] searchArgs = new String[in.readInt()];
+		for (int i = 0; i < searchArgs.length; i++)
+			searchArgs[i] = in.readUTF();
+		KeySearch search = (KeySearch)Class.forName(className).getConstructor(String[].class).newInstance((Object)searchArgs);
+
+		WorkUnit unit;
+		while ((unit = readUnit(in)) != null){
+			search.search(unit, new Consumer<String>() {
+				public void accept(String result) {
+					try {
+						out.writeByte(SearchScheduler.RESULT);
+						out.writeUTF(result);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			});
+			out.writeByte(SearchScheduler.DONE);
+			out.writeInt(unit.getId());
+			out.flush();
+		}
+	}
+
+	/**
+	 * Writes a unit for readUnit
+	 */
+	static void writeUnit(DataOutputStream out, WorkUnit unit) throws IOException {
+		out.writeInt(unit.getId());
+		for (int i = 0; i < 3; i++)
+			out.writeUTF(unit.getRotorName(i));
+		out.writeUTF(unit.getReflectorName());
+		out.writeInt(unit.getFrom());
+		out.writeInt(unit.getTo());
+	}
+
+	/**
+	 * @return the next unit or {@code null} at the end of the input
+	 */
+	static WorkUnit readUnit(DataInputStream in) throws IOException {
+		int id;
+		try {
+			id = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		String[] rotors = {in.readUTF(), in.readUTF(), in.readUTF()};
+		String reflector = in.readUTF();
+		int from = in.readInt();
+		int to = in.readInt();
+		return new WorkUnit(id, rotors, reflector, from, to);
+	}
+}
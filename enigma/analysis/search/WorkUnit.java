@@ -0,0 +1,122 @@
+package enigma.analysis.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import enigma.machine.ScramblerTable;
+
+/**
+ * A part of the keyspace of a search: one rotor order, one reflector and a block of start positions
+ * <p>
+ * The units of a search are numbered in the order {@link #split(String[], String[], int)} makes them, and the
+ * number is what a checkpoint records, so the same arguments always have to give the same units
+ */
+public final class WorkUnit {
+	private final int id;
+	private final String[] rotorNames;
+	private final String reflectorName;
+	private final int from;
+	private final int to;
+
+	/**
+	 * @param id the number of the unit in its search
+	 * @param rotorNames names of the rotors (left to right)
+	 * @param reflectorName name of the reflector
+	 * @param from the first start state (see {@link ScramblerTable#state(int, int, int)})
+	 * @param to the state after the last one
+	 * @throws IllegalArgumentException if there are not 3 rotors or the range is not inside {@code [0, ScramblerTable.POSITIONS)}
+	 */
+	public WorkUnit(int id, String[] rotorNames, String reflectorName, int from, int to){
+		if (rotorNames.length != 3)
+			throw new IllegalArgumentException("a unit has 3 rotors");
+		if (from < 0 || from > to || to > ScramblerTable.POSITIONS)
+			throw new IllegalArgumentException("invalid range [" + from + ", " + to + ")");
+		this.id = id;
+		this.rotorNames = rotorNames.clone();
+		this.reflectorName = reflectorName;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Splits the keyspace into units: every order of 3 different rotors with every reflector, and the start positions
+	 * of each in {@code blocks} blocks of (almost) the same size
+	 * @param rotorNames the rotors
+	 * @param reflectorNames the reflectors
+	 * @param blocks number of blocks of start positions of each rotor order
+	 * @return the units numbered from 0
+	 * @throws IllegalArgumentException if there are less than 3 rotors, no reflectors or blocks is not between 1 and {@code POSITIONS}
+	 */
+	public static List<WorkUnit> split(String[] rotorNames, String[] reflectorNames, int blocks){
+		if (rotorNames.length < 3 || reflectorNames.length == 0 || blocks < 1 || blocks > ScramblerTable.POSITIONS)
+			throw new IllegalArgumentException();
+
+		List<WorkUnit> units = new ArrayList<WorkUnit>();
+		for (String reflector : reflectorNames){
+			for (int l = 0; l < rotorNames.length; l++){
+				for (int m = 0; m < rotorNames.length; m++){
+					for (int r = 0; r < rotorNames.length; r++){
+						if (l == m || m == r || l == r)
+							continue;
+						String[] order = {rotorNames[l], rotorNames[m], rotorNames[r]};
+						for (int b = 0; b < blocks; b++){
+							int from = (int)((long)ScramblerTable.POSITIONS * b / blocks);
+							int to = (int)((long)ScramblerTable.POSITIONS * (b + 1) / blocks);
+							units.add(new WorkUnit(units.size(), order, reflector, from, to));
+						}
+					}
+				}
+			}
+		}
+		return units;
+	}
+
+	/**
+	 * @return the number of the unit in its search
+	 */
+	public int getId(){
+		return id;
+	}
+
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the name of the rotor
+	 */
+	public String getRotorName(int rotorNum){
+		return rotorNames[rotorNum];
+	}
+
+	/**
+	 * @return the names of the rotors (left to right)
+	 */
+	public String[] getRotorNames(){
+		return rotorNames.clone();
+	}
+
+	/**
+	 * @return the name of the reflector
+	 */
+	public String getReflectorName(){
+		return reflectorName;
+	}
+
+	/**
+	 * @return the first start state of the unit
+	 */
+	public int getFrom(){
+		return from;
+	}
+
+	/**
+	 * @return the state after the last start state of the unit
+	 */
+	public int getTo(){
+		return to;
+	}
+
+	@Override
+	public String toString(){
+		return "#" + id + " " + rotorNames[0] + " " + rotorNames[1] + " " + rotorNames[2] + " " + reflectorName
+				+ " [" + from + ", " + to + ")";
+	}
+}
@@ -0,0 +1,221 @@
+package enigma.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import enigma.analysis.NgramTable;
+import enigma.analysis.bombe.Menu;
+import enigma.analysis.catalog.Characteristic;
+import enigma.analysis.hillclimb.PlugboardClimber;
+import enigma.analysis.search.BombeSearch;
+import enigma.analysis.search.WorkUnit;
+import enigma.commandline.settings.Settings;
+import enigma.commandline.settings.SettingsParser;
+import enigma.commandline.settings.SettingsParserException;
+import enigma.machine.EnigmaMachine;
+import enigma.machine.Plugboard;
+import enigma.machine.Reflector;
+import enigma.machine.Rotor;
+import enigma.machine.ScramblerTable;
+
+/**
+ * Checks that the keys found by the analysis can be read back by SettingsParser and Settings.createConfig,
+ * also the keys without plugboard pairs (a message without a plugboard gives Bombe stops without pairs).
+ * The stops are the results of a BombeSearch, like the ones a SearchScheduler writes to its checkpoint.
+ * Also checks the index of coincidence of a PlugboardClimber against its plaintext after the climbs and that a
+ * climber with the ring settings of a key decrypts its messages, and that Characteristic.parse only reads cycle lengths
+ * that come in pairs
+ * <p>
+ * Usage: {@code java enigma.benchmark.AnalysisChecks [keys [seed]]}. Prints every key that doesn't match and exits with 1 if there is one
+ */
+public class AnalysisChecks {
+	private static final String CRIB = "WETTERVORHERSAGEBISKAYA";
+
+	private final Random random;
+	private int checks;
+	private int failures;
+
+	private AnalysisChecks(long seed){
+		this.random = new Random(seed);
+	}
+
+	public static void main(String[] args){
+		int keys = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		AnalysisChecks checks = new AnalysisChecks(seed);
+
+		checks.checkSettings("<I:1:A><II:2:B><III:3:C><Reflector B>", "without plugboard");
+		checks.checkSettings("<I:1:A><II:2:B><III:3:C><Reflector B><(A,B)>", "with a pair");
+		checks.checkCharacteristic("13 13/12 12 1 1/10 10 2 2 1 1", true);
+		checks.checkCharacteristic("1 1 1 2 3 3 3 3 3 3 3/13 13/13 13", false);
+		checks.checkCharacteristic("2 2 2 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1/13 13/13 13", false);
+		for (int i = 0; i < keys; i++){
+			checks.checkStopsWithoutPairs();
+			checks.checkClimber();
+			checks.checkRingSettings();
+		}
+
+		System.out.println(checks.checks + " checks, " + checks.failures + " failed");
+		if (checks.failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * A message encrypted without plugboard pairs: every stop is replayed from toSettings() and one of them
+	 * decrypts the crib
+	 */
+	private void checkStopsWithoutPairs(){
+		char[] positions = new char[3];
+		for (int i = 0; i < 3; i++)
+			positions[i] = (char)('A' + random.nextInt(26));
+		Rotor[] rotors = {Rotor.createRotor("I", null), Rotor.createRotor("II", null), Rotor.createRotor("III", null)};
+		for (int i = 0; i < 3; i++)
+			rotors[i].setCurrentPos(positions[i]);
+		EnigmaMachine machine = new EnigmaMachine(rotors, Reflector.createReflectorType("Reflector B"), new Plugboard());
+		machine.switchRotor(0, rotors[0]); // connects the rotors
+		String ciphertext = machine.encrypt(CRIB);
+		String key = new String(positions);
+
+		// the stops as a SearchScheduler gets them from a worker
+		final List<String> stops = new ArrayList<String>();
+		WorkUnit unit = new WorkUnit(0, new String[] {"I", "II", "III"}, "Reflector B", 0, ScramblerTable.POSITIONS);
+		new BombeSearch(new Menu(CRIB, ciphertext)).search(unit, new Consumer<String>() {
+			public void accept(String stop) {
+				stops.add(stop);
+			}
+		});
+
+		boolean found = false;
+		for (String stop : stops){
+			String plaintext = decrypt(stop, ciphertext, "stop of " + key);
+			if (CRIB.equals(plaintext))
+				found = true;
+		}
+		checks++;
+		if (!found){
+			failures++;
+			System.out.println("FAILED no stop of " + key + " decrypts the crib (" + stops.size() + " stops)");
+		}
+	}
+
+	/**
+	 * An n-gram climb and then an index of coincidence climb of the same climber
+	 */
+	private void checkClimber(){
+		float[] scores = new float[26 * 26 * 26 * 26];
+		for (int i = 0; i < scores.length; i++)
+			scores[i] = -random.nextFloat() * 10;
+		int[] cipher = new int[200 + random.nextInt(200)];
+		for (int i = 0; i < cipher.length; i++)
+			cipher[i] = random.nextInt(26);
+		ScramblerTable table = ScramblerTable.build("I", "II", "III", "Reflector B");
+		PlugboardClimber climber = new PlugboardClimber(table, random.nextInt(ScramblerTable.POSITIONS), cipher);
+
+		climber.climb(new NgramTable(4, scores));
+		checkIndexOfCoincidence(climber, "after climb(NgramScorer)");
+		climber.climbIndexOfCoincidence();
+		checkIndexOfCoincidence(climber, "after climbIndexOfCoincidence() after climb(NgramScorer)");
+	}
+
+	/**
+	 * A message encrypted with ring settings on the middle and right rotors: a climber at the state of the wiring
+	 * (the positions less the ring settings) with the same ring settings gives the plaintext and the positions of the key
+	 */
+	private void checkRingSettings(){
+		String[] names = {"I", "II", "III"};
+		int[] positions = new int[3];
+		int[] rings = {1, 1 + random.nextInt(26), 1 + random.nextInt(26)};
+		String key = "";
+		for (int i = 0; i < 3; i++){
+			positions[i] = 1 + random.nextInt(26);
+			key += "<" + names[i] + ":" + (i + 1) + ":" + (char)('A' + positions[i] - 1) + ":" + (char)('A' + rings[i] - 1) + ">";
+		}
+		key += "<Reflector B>";
+		char[] plain = new char[300];
+		for (int i = 0; i < plain.length; i++)
+			plain[i] = (char)('A' + random.nextInt(26));
+		String plaintext = new String(plain);
+		String ciphertext = decrypt(key, plaintext, "key " + key);
+		if (ciphertext == null)
+			return;
+		
+		int[] cipher = new int[ciphertext.length()];
+		for (int i = 0; i < cipher.length; i++)
+			cipher[i] = ciphertext.charAt(i) - 'A';
+		int[] wiring = new int[3];
+		for (int i = 0; i < 3; i++)
+			wiring[i] = (positions[i] - rings[i] + 26) % 26 + 1;
+		ScramblerTable table = ScramblerTable.build(names[0], names[1], names[2], "Reflector B");
+		PlugboardClimber climber = new PlugboardClimber(table, ScramblerTable.state(wiring[0], wiring[1], wiring[2]), cipher);
+		climber.setRingSettings(rings[1], rings[2]);
+		
+		checks++;
+		boolean samePositions = true;
+		for (int i = 0; i < 3; i++)
+			samePositions &= climber.startPosition(i) == positions[i];
+		if (!plaintext.equals(climber.plaintext()) || !samePositions){
+			failures++;
+			System.out.println("FAILED ring settings of " + key + ": " + climber.plaintext() + " at "
+					+ climber.startPosition(0) + " " + climber.startPosition(1) + " " + climber.startPosition(2));
+		}
+	}
+	
+	private void checkIndexOfCoincidence(PlugboardClimber climber, String name){
+		String plaintext = climber.plaintext();
+		int[] counts = new int[26];
+		long pairs = 0;
+		for (int i = 0; i < plaintext.length(); i++)
+			pairs += 2 * counts[plaintext.charAt(i) - 'A']++;
+		double expected = (double)pairs / ((long)plaintext.length() * (plaintext.length() - 1));
+
+		checks++;
+		if (climber.indexOfCoincidence() != expected){
+			failures++;
+			System.out.println("FAILED index of coincidence " + name + ": " + climber.indexOfCoincidence() + " instead of " + expected);
+		}
+	}
+
+	/**
+	 * @param valid true if every length of each product has an even number of cycles (parse must give it back
+	 * like it was written), false if parse must throw
+	 */
+	private void checkCharacteristic(String characteristic, boolean valid){
+		String parsed;
+		try {
+			// toString() writes spaces around the '/'
+			parsed = Characteristic.parse(characteristic).toString().replace(" / ", "/");
+		} catch (IllegalArgumentException e) {
+			parsed = null;
+		}
+		String expected = valid ? characteristic : null;
+		checks++;
+		if (expected == null ? parsed != null : !expected.equals(parsed)){
+			failures++;
+			System.out.println("FAILED characteristic " + characteristic + ": " + parsed);
+		}
+	}
+	
+	private void checkSettings(String settings, String name){
+		decrypt(settings, CRIB, name);
+	}
+
+	/**
+	 * @return the decryption of the ciphertext with the settings or null if they can't be read back
+	 */
+	private String decrypt(String settings, String ciphertext, String name){
+		checks++;
+		try {
+			return Settings.createConfig(SettingsParser.parse(settings)).newMachine().encrypt(ciphertext);
+		} catch (SettingsParserException e) {
+			failures++;
+			System.out.println("FAILED " + name + ": " + settings + " " + e);
+			return null;
+		} catch (RuntimeException e) {
+			failures++;
+			System.out.println("FAILED " + name + ": " + settings + " " + e);
+			return null;
+		}
+	}
+}
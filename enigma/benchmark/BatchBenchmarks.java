@@ -0,0 +1,70 @@
+package enigma.benchmark;
+
+import java.util.Random;
+
+import enigma.machine.EnigmaBatch;
+import enigma.machine.EnigmaMachine;
+import enigma.machine.MachineConfig;
+import enigma.machine.Reflector;
+import enigma.machine.Rotor;
+
+/**
+ * Benchmarks of EnigmaBatch against one EnigmaMachine per message
+ * <p>
+ * Usage: {@code java enigma.benchmark.BatchBenchmarks [filter]}.
+ * Every operation encrypts 1024 messages of 128 chars, each with a different key, and the number
+ * of messages per second is printed after the benchmark
+ * @see Benchmark
+ */
+public class BatchBenchmarks {
+	private static final int MESSAGES = 1024;
+	private static final int LENGTH = 128;
+	
+	public static void main(String[] args){
+		Benchmark bench = new Benchmark(args.length > 0 ? args[0] : null);
+		
+		Random random = new Random(1024);
+		String[] rotorNames = {"I", "II", "III", "IV", "V", "VI", "VII", "VIII"};
+		MachineConfig[] configs = new MachineConfig[MESSAGES];
+		final EnigmaMachine[] machines = new EnigmaMachine[MESSAGES];
+		for (int i = 0; i < MESSAGES; i++){
+			Rotor[] rotors = new Rotor[3];
+			int first = random.nextInt(rotorNames.length);
+			for (int k = 0; k < 3; k++){
+				// 3 different rotors
+				rotors[k] = Rotor.createRotor(rotorNames[(first + k * (1 + i % 2)) % rotorNames.length], null);
+				rotors[k].setCurrentPos((char)('A' + random.nextInt(26)));
+			}
+			EnigmaMachine machine = new EnigmaMachine(rotors, Reflector.createReflectorType("Reflector B"),
+					MachineBenchmarks.newPlugboard(random.nextInt(14)));
+			machine.switchRotor(2, rotors[2]); // connects the rotors
+			configs[i] = MachineConfig.of(machine);
+			machines[i] = configs[i].newMachine();
+		}
+		final EnigmaBatch batch = new EnigmaBatch(configs);
+		
+		final char[][] messages = new char[MESSAGES][];
+		for (int i = 0; i < MESSAGES; i++)
+			messages[i] = MachineBenchmarks.newMessage(LENGTH).toCharArray();
+		
+		report(bench.run("EnigmaMachine.encrypt(char[]) x" + MESSAGES, new Benchmark.Operation() {
+			public long run() {
+				for (int i = 0; i < MESSAGES; i++)
+					machines[i].encrypt(messages[i], 0, messages[i].length);
+				return messages[0][0];
+			}
+		}));
+		
+		report(bench.run("EnigmaBatch.encrypt x" + MESSAGES, new Benchmark.Operation() {
+			public long run() {
+				batch.encrypt(messages);
+				return messages[0][0];
+			}
+		}));
+	}
+	
+	private static void report(Benchmark.Result result){
+		if (result != null)
+			System.out.println(String.format("    %.0f messages/s", result.getOpsPerSecond() * MESSAGES));
+	}
+}
@@ -0,0 +1,207 @@
+package enigma.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small benchmark harness (no dependencies) used by the benchmarks in this package
+ * <p>
+ * Every benchmark is an Operation that is run in a loop: first for a few warmup rounds (to let the JIT compile it)
+ * and then for a few measured rounds. Each round runs for about the same time. The result reports:
+ * <ul>
+ * 		<li> ops/s: average number of operations per second over the measured rounds (and the error, {@code (max - min) / 2})
+ * 		<li> B/op: bytes allocated (on the heap) by the benchmark thread per operation
+ * 		<li> MB/s: allocation rate
+ * </ul>
+ * Allocation is measured with {@code com.sun.management.ThreadMXBean}. If the JVM doesn't support it, it is reported as -1
+ */
+public final class Benchmark {
+	
+	/**
+	 * An operation to measure
+	 */
+	public interface Operation {
+		/**
+		 * Runs the operation once
+		 * @return any value that depends on the work done so the JIT can't remove it
+		 */
+		long run();
+	}
+	
+	/**
+	 * The result of a benchmark
+	 */
+	public static final class Result {
+		private final String name;
+		private final double opsPerSecond;
+		private final double error;
+		private final double bytesPerOp;
+		
+		Result(String name, double opsPerSecond, double error, double bytesPerOp){
+			this.name = name;
+			this.opsPerSecond = opsPerSecond;
+			this.error = error;
+			this.bytesPerOp = bytesPerOp;
+		}
+		
+		/**
+		 * @return the name of the benchmark
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return operations per second
+		 */
+		public double getOpsPerSecond() {
+			return opsPerSecond;
+		}
+		
+		/**
+		 * @return half of the difference between the fastest and slowest round (ops/s)
+		 */
+		public double getError() {
+			return error;
+		}
+		
+		/**
+		 * @return bytes allocated per operation or -1 if allocation can't be measured
+		 */
+		public double getBytesPerOp() {
+			return bytesPerOp;
+		}
+		
+		/**
+		 * @return allocation rate in MB/s or -1 if allocation can't be measured
+		 */
+		public double getAllocationRate() {
+			if (bytesPerOp < 0)
+				return -1;
+			return bytesPerOp * opsPerSecond / (1024 * 1024);
+		}
+		
+		@Override
+		public String toString(){
+			return String.format("%-48s %16.1f +- %12.1f ops/s %12.2f B/op %10.2f MB/s",
+					name, opsPerSecond, error, bytesPerOp, getAllocationRate());
+		}
+	}
+	
+	// sink for the values returned by the operations
+	private static volatile long sink;
+	
+	private final int warmupRounds;
+	private final int measuredRounds;
+	private final long roundNanos;
+	private final String filter;
+	private final List<Result> results = new ArrayList<Result>();
+	
+	/**
+	 * Creates a harness with 5 warmup rounds and 5 measured rounds of 1 second
+	 * @param filter only benchmarks with a name that contains filter are run. Can be {@code null}
+	 */
+	public Benchmark(String filter){
+		this(5, 5, 1000, filter);
+	}
+	
+	/**
+	 * @param warmupRounds number of rounds that are not measured
+	 * @param measuredRounds number of measured rounds
+	 * @param roundMillis how long a round is
+	 * @param filter only benchmarks with a name that contains filter are run. Can be {@code null}
+	 */
+	public Benchmark(int warmupRounds, int measuredRounds, long roundMillis, String filter){
+		if (warmupRounds < 0 || measuredRounds < 1 || roundMillis < 1)
+			throw new IllegalArgumentException();
+		this.warmupRounds = warmupRounds;
+		this.measuredRounds = measuredRounds;
+		this.roundNanos = roundMillis * 1000000;
+		this.filter = filter;
+	}
+	
+	/**
+	 * Runs a benchmark (if it matches the filter) and prints its result
+	 * @param name the name of the benchmark
+	 * @param op the operation to measure
+	 * @return the result or {@code null} if the benchmark was filtered out
+	 */
+	public Result run(String name, Operation op){
+		if (filter != null && !name.contains(filter))
+			return null;
+		
+		for (int i = 0; i < warmupRounds; i++)
+			round(op);
+		
+		double min = Double.MAX_VALUE, max = 0, total = 0;
+		long totalOps = 0, totalBytes = 0;
+		for (int i = 0; i < measuredRounds; i++){
+			long bytesBefore = allocatedBytes();
+			long start = System.nanoTime();
+			long ops = round(op);
+			long time = System.nanoTime() - start;
+			long bytesAfter = allocatedBytes();
+			
+			double opsPerSecond = ops * 1e9 / time;
+			min = Math.min(min, opsPerSecond);
+			max = Math.max(max, opsPerSecond);
+			total += opsPerSecond;
+			totalOps += ops;
+			if (bytesBefore < 0 || totalBytes < 0)
+				totalBytes = -1;
+			else
+				totalBytes += bytesAfter - bytesBefore;
+		}
+		
+		Result result = new Result(name, total / measuredRounds, (max - min) / 2,
+				totalBytes < 0 ? -1 : (double)totalBytes / totalOps);
+		results.add(result);
+		System.out.println(result);
+		return result;
+	}
+	
+	/**
+	 * @return the results of all the benchmarks run so far
+	 */
+	public List<Result> getResults(){
+		return results;
+	}
+	
+	/**
+	 * Runs op for about roundNanos
+	 * @return the number of times op ran
+	 */
+	private long round(Operation op){
+		long ops = 0;
+		long value = 0;
+		// the time is checked after every batch. Batches grow until they take 10us so checking the time doesn't cost much
+		int batch = 1;
+		long now = System.nanoTime();
+		long end = now + roundNanos;
+		do {
+			long batchStart = now;
+			for (int i = 0; i < batch; i++)
+				value += op.run();
+			ops += batch;
+			now = System.nanoTime();
+			if (now - batchStart < 10000 && batch < (1 << 20))
+				batch *= 2;
+		} while (now < end);
+		sink = value;
+		return ops;
+	}
+	
+	/**
+	 * @return the bytes allocated so far by the current thread or -1 if it is not supported
+	 */
+	private static long allocatedBytes(){
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,48 @@
+package enigma.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import enigma.analysis.bombe.Bombe;
+import enigma.analysis.bombe.Menu;
+import enigma.analysis.bombe.Stop;
+import enigma.machine.EnigmaMachine;
+
+/**
+ * Benchmarks for the Bombe
+ * <p>
+ * Usage: {@code java enigma.benchmark.BombeBenchmarks [filter]}.
+ * Reports the time of a search of one rotor order (in the harness) and then runs a full search of rotors I - V
+ * on all cores and prints the positions and stops per second
+ * @see Benchmark
+ */
+public class BombeBenchmarks {
+	
+	public static void main(String[] args){
+		Benchmark bench = new Benchmark(3, 3, 2000, args.length > 0 ? args[0] : null);
+		
+		String plain = "WETTERVORHERSAGEBISKAYA";
+		EnigmaMachine machine = MachineBenchmarks.newMachine();
+		final Menu menu = new Menu(plain, machine.encrypt(plain));
+		final Bombe bombe = new Bombe(new String[] {"I", "II", "III", "IV", "V"}, new String[] {"Reflector B"});
+		final AtomicLong stops = new AtomicLong();
+		final Consumer<Stop> counter = new Consumer<Stop>() {
+			public void accept(Stop stop) {
+				stops.incrementAndGet();
+			}
+		};
+		
+		bench.run("Bombe.search one rotor order", new Benchmark.Operation() {
+			public long run() {
+				return Bombe.search(new String[] {"I", "II", "III"}, "Reflector B", menu, counter);
+			}
+		});
+		
+		stops.set(0);
+		long start = System.nanoTime();
+		long positions = bombe.run(menu, counter);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("Bombe.run %d orders: %.0f positions/s, %.1f stops/s (%d stops in %.2fs)",
+				bombe.getOrderCount(), positions / seconds, stops.get() / seconds, stops.get(), seconds));
+	}
+}
@@ -0,0 +1,84 @@
+package enigma.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import enigma.io.EnigmaInputStream;
+import enigma.io.EnigmaReader;
+import enigma.machine.EnigmaMachine;
+
+/**
+ * Checks that skipping in an EnigmaReader or EnigmaInputStream moves the rotors like reading the skipped chars,
+ * for any order of skip sizes (also a skip of 0 or 1 before a larger one)
+ * <p>
+ * Usage: {@code java enigma.benchmark.IoChecks}. Prints every check that fails and exits with 1 if there is one
+ */
+public class IoChecks {
+	private int checks;
+	private int failures;
+
+	public static void main(String[] args) throws IOException {
+		IoChecks checks = new IoChecks();
+		String message = MachineBenchmarks.newMessage(40000);
+
+		checks.checkSkips(message, new long[] {0, 10});
+		checks.checkSkips(message, new long[] {1, 100, 20000});
+		checks.checkSkips(message, new long[] {10, 0, 0, 9000, 50000});
+
+		System.out.println(checks.checks + " checks, " + checks.failures + " failed");
+		if (checks.failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Skips the sizes one after the other (reading one char after each skip) and compares the rest of the output
+	 * with the same part of the whole message encrypted at once
+	 */
+	private void checkSkips(String message, long[] skips) throws IOException {
+		String expected = MachineBenchmarks.newMachine().encrypt(message);
+		String name = Arrays.toString(skips);
+
+		EnigmaReader reader = new EnigmaReader(new StringReader(message), MachineBenchmarks.newMachine());
+		StringBuilder chars = new StringBuilder();
+		StringBuilder readerExpected = new StringBuilder();
+		int pos = 0;
+		for (long skip : skips){
+			long skipped = reader.skip(skip);
+			pos += skipped;
+			int next = reader.read();
+			if (next != -1){
+				chars.append((char)next);
+				readerExpected.append(expected.charAt(pos++));
+			}
+		}
+		check("EnigmaReader skips " + name, readerExpected.toString(), chars.toString());
+
+		byte[] bytes = message.getBytes(StandardCharsets.US_ASCII);
+		EnigmaMachine machine = MachineBenchmarks.newMachine();
+		EnigmaInputStream stream = new EnigmaInputStream(new ByteArrayInputStream(bytes), machine);
+		StringBuilder read = new StringBuilder();
+		StringBuilder streamExpected = new StringBuilder();
+		pos = 0;
+		for (long skip : skips){
+			long skipped = stream.skip(skip);
+			pos += skipped;
+			int next = stream.read();
+			if (next != -1){
+				read.append((char)next);
+				streamExpected.append(expected.charAt(pos++));
+			}
+		}
+		check("EnigmaInputStream skips " + name, streamExpected.toString(), read.toString());
+	}
+
+	private void check(String name, String expected, String actual){
+		checks++;
+		if (!expected.equals(actual)){
+			failures++;
+			System.out.println("FAILED " + name + ": " + actual + " instead of " + expected);
+		}
+	}
+}
@@ -0,0 +1,405 @@
+package enigma.benchmark;
+
+import java.util.Random;
+
+import enigma.commandline.settings.ConfigCache;
+import enigma.commandline.settings.Settings;
+import enigma.commandline.settings.SettingsParser;
+import enigma.commandline.settings.SettingsParserException;
+import enigma.machine.EnigmaMachine;
+import enigma.machine.EnigmaMachineStepper;
+import enigma.machine.EnigmaSession;
+import enigma.machine.EnigmaTrace;
+import enigma.machine.MachineConfig;
+import enigma.machine.Plugboard;
+import enigma.machine.Reflector;
+import enigma.machine.Rotor;
+import enigma.machine.Stepping;
+import enigma.service.EnigmaService;
+
+/**
+ * Benchmarks for the parts in enigma.machine and the machine itself
+ * <p>
+ * Usage: {@code java enigma.benchmark.MachineBenchmarks [filter]}.
+ * Only the benchmarks with a name that contains filter are run. Rotor.translateRightToLeft(char) is also run with the
+ * String.indexOf lookup the wiring tables replaced, as a baseline
+ * @see Benchmark
+ */
+public class MachineBenchmarks {
+	
+	/**
+	 * A stepper that lets every stage go through
+	 */
+	static class PassThroughStepper implements EnigmaMachineStepper {
+		public boolean start(char input) { return true; }
+		public boolean afterRotate(char input) { return true; }
+		public boolean afterPlugboard1(char input, char output) { return true; }
+		public boolean afterRightToLeftRotor3(char input, char[] rotorOutput) { return true; }
+		public boolean afterRightToLeftRotor2(char input, char[] rotorOutput) { return true; }
+		public boolean afterRightToLeftRotor1(char input, char[] rotorOutput) { return true; }
+		public boolean afterReflector(char input, char reflectorOutput) { return true; }
+		public boolean afterLeftToRightRotor1(char input, char[] rotorOutput) { return true; }
+		public boolean afterLeftToRightRotor2(char input, char[] rotorOutput) { return true; }
+		public boolean afterLeftToRightRotor3(char input, char[] rotorOutput) { return true; }
+		public boolean afterPlugboard2(char input, char output) { return true; }
+		public void end(char output) { }
+	}
+	
+	/**
+	 * @return a machine with rotors I, II, III at positions A, B, C, reflector B and 10 plugboard pairs
+	 */
+	static EnigmaMachine newMachine(){
+		Rotor[] rotors = new Rotor[3];
+		rotors[0] = Rotor.createRotor("I", null);
+		rotors[1] = Rotor.createRotor("II", null);
+		rotors[2] = Rotor.createRotor("III", null);
+		rotors[0].setCurrentPos('A');
+		rotors[1].setCurrentPos('B');
+		rotors[2].setCurrentPos('C');
+		
+		EnigmaMachine machine = new EnigmaMachine(rotors, Reflector.createReflectorType("Reflector B"), newPlugboard(10));
+		machine.switchRotor(2, rotors[2]); // connects the rotors
+		return machine;
+	}
+	
+	/**
+	 * @param rotorNames the names of the rotors from left to right
+	 * @param reflectorName the name of the reflector
+	 * @return a machine with the rotors at positions A, B, C, ..., the reflector and 10 plugboard pairs
+	 */
+	static EnigmaMachine newMachine(String[] rotorNames, String reflectorName){
+		Rotor[] rotors = new Rotor[rotorNames.length];
+		for (int i = 0; i < rotors.length; i++){
+			rotors[i] = Rotor.createRotor(rotorNames[i], null);
+			rotors[i].setCurrentPos((char)('A' + i));
+		}
+		
+		EnigmaMachine machine = new EnigmaMachine(rotors, Reflector.createReflectorType(reflectorName), newPlugboard(10));
+		machine.switchRotor(0, rotors[0]); // connects the rotors
+		return machine;
+	}
+	
+	/**
+	 * @param pairs number of pairs (0 - 13)
+	 * @return a plugboard with the first {@code pairs} pairs of AB, CD, EF, ...
+	 */
+	static Plugboard newPlugboard(int pairs){
+		Plugboard plugboard = new Plugboard();
+		for (int i = 0; i < pairs; i++)
+			plugboard.changeSettings((char)('A' + 2 * i), (char)('A' + 2 * i + 1));
+		return plugboard;
+	}
+	
+	/**
+	 * @param length length of the message
+	 * @return a message made of words of random letters (upper and lower case) separated by spaces and punctuation
+	 */
+	static String newMessage(int length){
+		Random random = new Random(length);
+		StringBuilder message = new StringBuilder(length);
+		while (message.length() < length){
+			int next = random.nextInt(32);
+			if (next < 20)
+				message.append((char)('A' + random.nextInt(26)));
+			else if (next < 28)
+				message.append((char)('a' + random.nextInt(26)));
+			else
+				message.append(" ., \n".charAt(next - 28));
+		}
+		return message.toString();
+	}
+	
+	public static void main(String[] args) throws SettingsParserException{
+		Benchmark bench = new Benchmark(args.length > 0 ? args[0] : null);
+		
+		final EnigmaMachine machine = newMachine();
+		final String letters = newMessage(4096);
+		bench.run("EnigmaMachine.encrypt(char)", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return machine.encrypt(letters.charAt(i));
+			}
+		});
+		
+		final EnigmaMachine compiledMachine = newMachine();
+		compiledMachine.compile();
+		bench.run("EnigmaMachine.encrypt(char) compiled", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return compiledMachine.encrypt(letters.charAt(i));
+			}
+		});
+		
+		for (final Stepping stepping : new Stepping[] {Stepping.DOUBLE_STEP, Stepping.ODOMETER}){
+			final EnigmaMachine steppingMachine = newMachine();
+			steppingMachine.setStepping(stepping);
+			bench.run("EnigmaMachine.encrypt(char) " + stepping, new Benchmark.Operation() {
+				int i = 0;
+				public long run() {
+					i = (i + 1) & 4095;
+					return steppingMachine.encrypt(letters.charAt(i));
+				}
+			});
+		}
+		for (final Stepping stepping : Stepping.values()){
+			final EnigmaMachine advancedMachine = newMachine();
+			advancedMachine.setStepping(stepping);
+			bench.run("EnigmaMachine.advance(long) 1M " + stepping, new Benchmark.Operation() {
+				public long run() {
+					advancedMachine.advance(1 << 20);
+					return advancedMachine.getRotor(0).getCurrentPos();
+				}
+			});
+		}
+		
+		// the same letters through 4 rotors (M4) and 5 rotors (the loop for any number)
+		final EnigmaMachine m4Machine = newMachine(new String[] {"BETA", "I", "II", "III"}, "Reflector B Thin");
+		bench.run("EnigmaMachine.encrypt(char) M4", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return m4Machine.encrypt(letters.charAt(i));
+			}
+		});
+		final EnigmaMachine compiledM4Machine = newMachine(new String[] {"BETA", "I", "II", "III"}, "Reflector B Thin");
+		compiledM4Machine.compile();
+		bench.run("EnigmaMachine.encrypt(char) M4 compiled", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return compiledM4Machine.encrypt(letters.charAt(i));
+			}
+		});
+		final EnigmaMachine fiveRotorMachine = newMachine(new String[] {"I", "II", "III", "IV", "V"}, "Reflector B");
+		bench.run("EnigmaMachine.encrypt(char) 5 rotors", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return fiveRotorMachine.encrypt(letters.charAt(i));
+			}
+		});
+		
+		final EnigmaMachine stepperMachine = newMachine();
+		stepperMachine.setStepper(new PassThroughStepper());
+		bench.run("EnigmaMachine.encrypt(char) stepper", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return stepperMachine.encrypt(letters.charAt(i));
+			}
+		});
+		
+		final EnigmaMachine tracedMachine = newMachine();
+		tracedMachine.setTrace(new EnigmaTrace(1 << 16));
+		bench.run("EnigmaMachine.encrypt(char) trace", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return tracedMachine.encrypt(letters.charAt(i));
+			}
+		});
+		
+		for (final int size : new int[] {64, 4096, 1 << 20}){
+			final String message = newMessage(size);
+			bench.run("EnigmaMachine.encrypt(String) " + sizeName(size), new Benchmark.Operation() {
+				public long run() {
+					return machine.encrypt(message).charAt(0);
+				}
+			});
+			bench.run("EnigmaMachine.encrypt(String) " + sizeName(size) + " compiled", new Benchmark.Operation() {
+				public long run() {
+					return compiledMachine.encrypt(message).charAt(0);
+				}
+			});
+			bench.run("EnigmaMachine.encrypt(String) " + sizeName(size) + " stepper", new Benchmark.Operation() {
+				public long run() {
+					return stepperMachine.encrypt(message).charAt(0);
+				}
+			});
+			bench.run("EnigmaMachine.encrypt(String) " + sizeName(size) + " trace", new Benchmark.Operation() {
+				public long run() {
+					return tracedMachine.encrypt(message).charAt(0);
+				}
+			});
+			
+			final char[] src = message.toCharArray();
+			final char[] dst = new char[size];
+			bench.run("EnigmaMachine.encrypt(char[]) " + sizeName(size), new Benchmark.Operation() {
+				public long run() {
+					machine.encrypt(src, 0, dst, 0, src.length);
+					return dst[0];
+				}
+			});
+			bench.run("EnigmaMachine.encrypt(char[]) " + sizeName(size) + " M4", new Benchmark.Operation() {
+				public long run() {
+					m4Machine.encrypt(src, 0, dst, 0, src.length);
+					return dst[0];
+				}
+			});
+		}
+		
+		final String largeMessage = newMessage(16 << 20);
+		bench.run("EnigmaMachine.encrypt(String) 16MB", new Benchmark.Operation() {
+			public long run() {
+				return machine.encrypt(largeMessage).charAt(0);
+			}
+		});
+		bench.run("EnigmaMachine.parallelEncrypt(String) 16MB", new Benchmark.Operation() {
+			public long run() {
+				return machine.parallelEncrypt(largeMessage).charAt(0);
+			}
+		});
+		
+		final Settings[] settings = SettingsParser.parse("<I:1:A><II:2:B><III:3:C><Reflector B><(A,B)(C,D)(E,F)(G,H)(I,J)(K,L)(M,N)(O,P)(Q,R)(S,T)>");
+		bench.run("Settings.apply new machine", new Benchmark.Operation() {
+			public long run() {
+				EnigmaMachine newMachine = new EnigmaMachine();
+				Settings.apply(newMachine, settings);
+				return newMachine.getRotor(0).getCurrentPos();
+			}
+		});
+		bench.run("Settings.createConfig", new Benchmark.Operation() {
+			public long run() {
+				return Settings.createConfig(settings).getStartPosition(0);
+			}
+		});
+		final ConfigCache cache = new ConfigCache(256);
+		bench.run("ConfigCache.get hit", new Benchmark.Operation() {
+			public long run() {
+				return cache.get(settings).getStartPosition(0);
+			}
+		});
+		final MachineConfig config = Settings.createConfig(settings);
+		bench.run("MachineConfig.newSession", new Benchmark.Operation() {
+			public long run() {
+				return config.newSession().getPosition(0);
+			}
+		});
+		bench.run("MachineConfig.newMachine", new Benchmark.Operation() {
+			public long run() {
+				return config.newMachine().getRotor(0).getCurrentPos();
+			}
+		});
+		final EnigmaSession session = config.newSession();
+		bench.run("EnigmaSession.encrypt(char)", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return session.encrypt(letters.charAt(i));
+			}
+		});
+		
+		final EnigmaService service = new EnigmaService(16);
+		final String shortMessage = newMessage(64);
+		bench.run("EnigmaService.encrypt(String) 64B", new Benchmark.Operation() {
+			public long run() {
+				return service.encrypt(config, shortMessage).charAt(0);
+			}
+		});
+		
+		// rotors with 2 notches so the middle and left rotors turn twice per turn of the one on their right
+		final Rotor left = Rotor.createRotor("VI", null);
+		final Rotor middle = Rotor.createRotor("VII", left);
+		final Rotor right = Rotor.createRotor("VIII", middle);
+		bench.run("Rotor.rotate VI-VII-VIII", new Benchmark.Operation() {
+			public long run() {
+				right.rotate();
+				return right.getCurrentPos();
+			}
+		});
+		
+		final Rotor rotor = Rotor.createRotor("I", null);
+		rotor.setCurrentPos('K');
+		for (int i = 0; i < letters.length(); i++){
+			if (translateIndexOf(rotor.getCurrentPos(), letters.charAt(i)) != rotor.translateRightToLeft(letters.charAt(i)))
+				throw new IllegalStateException("the indexOf baseline doesn't translate like rotor I");
+		}
+		bench.run("Rotor.translateRightToLeft(char)", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return rotor.translateRightToLeft(letters.charAt(i));
+			}
+		});
+		bench.run("Rotor.translateRightToLeft(char) indexOf baseline", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return translateIndexOf(rotor.getCurrentPos(), letters.charAt(i));
+			}
+		});
+		bench.run("Rotor.translateRightToLeftSteps(char)", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				char[] steps = rotor.translateRightToLeftSteps(letters.charAt(i));
+				return steps == null ? 0 : steps[4];
+			}
+		});
+		
+		for (final int pairs : new int[] {0, 10, 13}){
+			final Plugboard plugboard = newPlugboard(pairs);
+			bench.run("Plugboard.map " + pairs + " pairs", new Benchmark.Operation() {
+				int i = 0;
+				public long run() {
+					i = (i + 1) & 4095;
+					return plugboard.map(letters.charAt(i));
+				}
+			});
+		}
+		
+		final Reflector reflector = Reflector.createReflectorType("Reflector B");
+		bench.run("Reflector.map", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return reflector.map(letters.charAt(i));
+			}
+		});
+	}
+	
+	/**
+	 * @return size as 64B, 4KB, 1MB...
+	 */
+	/**
+	 * Rotor.translateRightToLeft(char) of rotor I as it was before the wiring tables: the letter is looked up with
+	 * String.indexOf in the wiring. Only the baseline of the benchmark of the tables
+	 * @param currPos the position of the rotor (1 - 26)
+	 */
+	private static char translateIndexOf(int currPos, char input){
+		String leftSide = "EKMFLGDQVZNTOWYHXUSPAIBRCJ";
+		String rightSide = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+		int intChar = (int)input;
+		boolean wasUpperCase = false;
+		if (intChar >= 'A' && intChar <= 'Z'){
+			wasUpperCase = true;
+		} else if (intChar < 'a' || intChar > 'z'){
+			return input;
+		} else {
+			intChar -= 'a' - 'A';
+		}
+		
+		intChar += currPos - 1;
+		if (intChar > 'Z')
+			intChar -= 'Z' - 'A' + 1;
+		
+		intChar = (int)leftSide.charAt(rightSide.indexOf(intChar));
+		
+		intChar -= currPos - 1;
+		if (intChar < 'A')
+			intChar += 'Z' - 'A' + 1;
+		
+		return wasUpperCase ? (char)intChar : (char)(intChar + 'a' - 'A');
+	}
+	
+	static String sizeName(int size){
+		if (size >= 1 << 20)
+			return (size >> 20) + "MB";
+		else if (size >= 1 << 10)
+			return (size >> 10) + "KB";
+		else
+			return size + "B";
+	}
+}
@@ -0,0 +1,287 @@
+package enigma.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import enigma.machine.EnigmaMachine;
+import enigma.machine.MachineConfig;
+import enigma.machine.Plugboard;
+import enigma.machine.Reflector;
+import enigma.machine.Rotor;
+import enigma.machine.ScramblerTable;
+import enigma.machine.Stepping;
+import enigma.service.EnigmaService;
+
+/**
+ * Checks that the fast paths of EnigmaMachine encrypt like the slow ones on random keys: the machine without a stepper
+ * like the machine with one, Stepping.COG_WHEEL like Rotor.rotate(), advance(long) like stepping one letter at a time, and the compiled machine like the plain one (also after its ring settings, rotors or reflector
+ * are changed in the middle of a message), and an EnigmaService like new machines while it drops the pools of old configs
+ * <p>
+ * Usage: {@code java enigma.benchmark.MachineChecks [keys [seed]]}. Prints every key that doesn't match and exits with 1 if there is one
+ */
+public class MachineChecks {
+	private static final String[] ROTORS = {"I", "II", "III", "IV", "V", "VI", "VII", "VIII"};
+	private static final String[] REFLECTORS = {"Reflector A", "Reflector B", "Reflector C"};
+
+	private final Random random;
+	private int checks;
+	private int failures;
+
+	private MachineChecks(long seed){
+		this.random = new Random(seed);
+	}
+
+	public static void main(String[] args){
+		int keys = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		MachineChecks checks = new MachineChecks(seed);
+
+		for (int i = 0; i < keys; i++){
+			checks.checkStepper();
+			checks.checkCogWheel();
+			checks.checkAdvanceDoubleStep();
+			checks.checkCompiled();
+			checks.checkCompiledChanges();
+			checks.checkCompiledM4();
+		}
+		checks.checkParallel();
+		checks.checkService();
+
+		System.out.println(checks.checks + " checks, " + checks.failures + " failed");
+		if (checks.failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Without a stepper the machine doesn't go through the steps of the rotors, with one it does
+	 */
+	private void checkStepper(){
+		String[] names = randomRotors(3);
+		int[] positions = randomLetters(3);
+		int[] rings = randomLetters(3);
+		String reflector = REFLECTORS[random.nextInt(REFLECTORS.length)];
+		String message = MachineBenchmarks.newMessage(500 + random.nextInt(500));
+
+		EnigmaMachine fast = newMachine(names, positions, rings, reflector);
+		EnigmaMachine stepped = newMachine(names, positions, rings, reflector);
+		stepped.setStepper(new MachineBenchmarks.PassThroughStepper());
+		check("stepper " + key(names, positions, rings, reflector), stepped.encrypt(message), fast.encrypt(message));
+	}
+
+	/**
+	 * Stepping.COG_WHEEL turns the rotors like rotate() of the rotor at the right, with 3 to 5 rotors
+	 */
+	private void checkCogWheel(){
+		int count = 3 + random.nextInt(3);
+		String[] names = randomRotors(count);
+		int[] positions = randomLetters(count);
+		int[] rings = randomLetters(count);
+		EnigmaMachine machine = newMachine(names, positions, rings, "Reflector B");
+		EnigmaMachine rotated = newMachine(names, positions, rings, "Reflector B");
+
+		StringBuilder expected = new StringBuilder(), actual = new StringBuilder();
+		for (int i = 0; i < 26 * 26 * 2; i++){
+			machine.encrypt('A');
+			rotated.getRotor(count - 1).rotate();
+			for (int r = 0; r < count; r++){
+				expected.append((char)('A' + rotated.getRotor(r).getCurrentPos() - 1));
+				actual.append((char)('A' + machine.getRotor(r).getCurrentPos() - 1));
+			}
+		}
+		check("cog wheel " + key(names, positions, rings, "Reflector B"), expected.toString(), actual.toString());
+	}
+
+	/**
+	 * advance(long) with Stepping.DOUBLE_STEP moves the rotors like encrypting the letters one by one, also for more
+	 * letters than the positions take to repeat, with 3 to 5 rotors
+	 */
+	private void checkAdvanceDoubleStep(){
+		int count = 3 + random.nextInt(3);
+		String[] names = randomRotors(count);
+		int[] positions = randomLetters(count);
+		int[] rings = randomLetters(count);
+		EnigmaMachine advanced = newMachine(names, positions, rings, "Reflector B");
+		EnigmaMachine stepped = newMachine(names, positions, rings, "Reflector B");
+		advanced.setStepping(Stepping.DOUBLE_STEP);
+		stepped.setStepping(Stepping.DOUBLE_STEP);
+
+		int n = ScramblerTable.POSITIONS + random.nextInt(3 * ScramblerTable.POSITIONS);
+		advanced.advance(n);
+		for (int i = 0; i < n; i++)
+			stepped.encrypt('A');
+		StringBuilder expected = new StringBuilder(), actual = new StringBuilder();
+		for (int r = 0; r < count; r++){
+			expected.append((char)('A' + stepped.getRotor(r).getCurrentPos() - 1));
+			actual.append((char)('A' + advanced.getRotor(r).getCurrentPos() - 1));
+		}
+		check("advance " + n + " double step " + key(names, positions, rings, "Reflector B"), expected.toString(), actual.toString());
+	}
+
+	/**
+	 * Compiled before the first letter, with every stepping
+	 */
+	private void checkCompiled(){
+		String[] names = randomRotors(3);
+		int[] positions = randomLetters(3);
+		int[] rings = randomLetters(3);
+		String reflector = REFLECTORS[random.nextInt(REFLECTORS.length)];
+		String message = MachineBenchmarks.newMessage(2000);
+
+		for (Stepping stepping : Stepping.values()){
+			EnigmaMachine plain = newMachine(names, positions, rings, reflector);
+			EnigmaMachine compiled = newMachine(names, positions, rings, reflector);
+			plain.setStepping(stepping);
+			compiled.setStepping(stepping);
+			compiled.compile();
+			check("compiled " + stepping + " " + key(names, positions, rings, reflector), plain.encrypt(message), compiled.encrypt(message));
+		}
+	}
+
+	/**
+	 * The parts are changed after the compiled table was built: the ring settings, a rotor and the reflector
+	 */
+	private void checkCompiledChanges(){
+		String[] names = randomRotors(3);
+		int[] positions = randomLetters(3);
+		int[] rings = randomLetters(3);
+		String reflector = REFLECTORS[random.nextInt(REFLECTORS.length)];
+		String key = key(names, positions, rings, reflector);
+
+		EnigmaMachine plain = newMachine(names, positions, rings, reflector);
+		EnigmaMachine compiled = newMachine(names, positions, rings, reflector);
+		compiled.compile();
+		String message = MachineBenchmarks.newMessage(300);
+		check("compiled " + key, plain.encrypt(message), compiled.encrypt(message));
+
+		for (int i = 0; i < 3; i++){
+			int ring = random.nextInt(26) + 1;
+			plain.getRotor(i).setRingSetting(ring);
+			compiled.getRotor(i).setRingSetting(ring);
+		}
+		check("compiled after ring settings " + key, plain.encrypt(message), compiled.encrypt(message));
+
+		int rotorNum = random.nextInt(3);
+		String name = ROTORS[random.nextInt(ROTORS.length)];
+		plain.switchRotor(rotorNum, Rotor.createRotor(name, null));
+		compiled.switchRotor(rotorNum, Rotor.createRotor(name, null));
+		check("compiled after rotor " + (rotorNum + 1) + " " + name + " " + key, plain.encrypt(message), compiled.encrypt(message));
+
+		String other = REFLECTORS[random.nextInt(REFLECTORS.length)];
+		plain.switchReflector(Reflector.createReflectorType(other));
+		compiled.switchReflector(Reflector.createReflectorType(other));
+		check("compiled after " + other + " " + key, plain.encrypt(message), compiled.encrypt(message));
+	}
+
+	/**
+	 * The M4 (BETA or GAMMA folded into a thin reflector), also after the thin rotor is moved
+	 */
+	private void checkCompiledM4(){
+		String[] names = randomRotors(4);
+		names[0] = random.nextBoolean() ? "BETA" : "GAMMA";
+		int[] positions = randomLetters(4);
+		int[] rings = randomLetters(4);
+		String reflector = random.nextBoolean() ? "Reflector B Thin" : "Reflector C Thin";
+		String key = key(names, positions, rings, reflector);
+
+		EnigmaMachine plain = newMachine(names, positions, rings, reflector);
+		EnigmaMachine compiled = newMachine(names, positions, rings, reflector);
+		compiled.compile();
+		String message = MachineBenchmarks.newMessage(300);
+		check("compiled M4 " + key, plain.encrypt(message), compiled.encrypt(message));
+
+		int pos = random.nextInt(26) + 1;
+		plain.getRotor(0).setCurrentPos(pos);
+		compiled.getRotor(0).setCurrentPos(pos);
+		check("compiled M4 after moving " + names[0] + " " + key, plain.encrypt(message), compiled.encrypt(message));
+	}
+
+	/**
+	 * parallelEncrypt of a compiled machine like encrypt of a plain one
+	 */
+	private void checkParallel(){
+		String[] names = randomRotors(3);
+		int[] positions = randomLetters(3);
+		int[] rings = randomLetters(3);
+		String reflector = REFLECTORS[random.nextInt(REFLECTORS.length)];
+		String message = MachineBenchmarks.newMessage(EnigmaMachine.PARALLEL_THRESHOLD * 8);
+
+		EnigmaMachine plain = newMachine(names, positions, rings, reflector);
+		EnigmaMachine compiled = newMachine(names, positions, rings, reflector);
+		compiled.compile();
+		char[] src = message.toCharArray();
+		char[] dst = new char[src.length];
+		compiled.parallelEncrypt(src, 0, dst, 0, src.length, new ForkJoinPool(4));
+		check("parallel compiled " + key(names, positions, rings, reflector), plain.encrypt(message), new String(dst));
+	}
+
+	/**
+	 * An EnigmaService with more configs than maxConfigs encrypts like new machines and keeps at most maxConfigs pools
+	 */
+	private void checkService(){
+		EnigmaService service = new EnigmaService(2, 4, ForkJoinPool.commonPool());
+		String message = MachineBenchmarks.newMessage(200);
+		for (int i = 0; i < 12; i++){
+			String[] names = randomRotors(3);
+			int[] positions = randomLetters(3);
+			int[] rings = randomLetters(3);
+			String reflector = REFLECTORS[random.nextInt(REFLECTORS.length)];
+			MachineConfig config = MachineConfig.of(newMachine(names, positions, rings, reflector));
+			String expected = newMachine(names, positions, rings, reflector).encrypt(message);
+			for (int j = 0; j < 3; j++)
+				check("service " + key(names, positions, rings, reflector), expected, service.encrypt(config, message));
+			check("service configs after " + (i + 1), String.valueOf(Math.min(i + 1, 4)), String.valueOf(service.configCount()));
+		}
+	}
+
+	private void check(String name, String expected, String actual){
+		checks++;
+		if (!expected.equals(actual)){
+			failures++;
+			int i = 0;
+			while (expected.charAt(i) == actual.charAt(i))
+				i++;
+			System.out.println("FAILED " + name + ": differs at " + i);
+		}
+	}
+
+	/**
+	 * @return a machine with the rotors (from left to right), connected, and 10 plugboard pairs
+	 */
+	private static EnigmaMachine newMachine(String[] names, int[] positions, int[] rings, String reflector){
+		Rotor[] rotors = new Rotor[names.length];
+		for (int i = 0; i < rotors.length; i++){
+			rotors[i] = Rotor.createRotor(names[i], null);
+			rotors[i].setCurrentPos(positions[i]);
+			rotors[i].setRingSetting(rings[i]);
+		}
+
+		Plugboard plugboard = MachineBenchmarks.newPlugboard(10);
+		EnigmaMachine machine = new EnigmaMachine(rotors, Reflector.createReflectorType(reflector), plugboard);
+		machine.switchRotor(0, rotors[0]); // connects the rotors
+		return machine;
+	}
+
+	private String[] randomRotors(int count){
+		String[] names = new String[count];
+		for (int i = 0; i < count; i++)
+			names[i] = ROTORS[random.nextInt(ROTORS.length)];
+		return names;
+	}
+
+	/**
+	 * @return {@code count} positions or ring settings (1 - 26)
+	 */
+	private int[] randomLetters(int count){
+		int[] letters = new int[count];
+		for (int i = 0; i < count; i++)
+			letters[i] = random.nextInt(26) + 1;
+		return letters;
+	}
+
+	private static String key(String[] names, int[] positions, int[] rings, String reflector){
+		String key = "";
+		for (int i = 0; i < names.length; i++)
+			key += "<" + names[i] + ":" + (i + 1) + ":" + (char)('A' + positions[i] - 1) + ":" + (char)('A' + rings[i] - 1) + ">";
+		return key + "<" + reflector + ">";
+	}
+}
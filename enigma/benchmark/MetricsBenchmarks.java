@@ -0,0 +1,58 @@
+package enigma.benchmark;
+
+import enigma.machine.EnigmaMachine;
+import enigma.metrics.EnigmaMetrics;
+
+/**
+ * Benchmarks of EnigmaMachine with and without metrics
+ * <p>
+ * Usage: {@code java enigma.benchmark.MetricsBenchmarks [filter]}.
+ * The machines without metrics should be as fast as the same benchmarks in MachineBenchmarks
+ * @see Benchmark
+ */
+public class MetricsBenchmarks {
+	
+	public static void main(String[] args){
+		Benchmark bench = new Benchmark(args.length > 0 ? args[0] : null);
+		
+		final EnigmaMachine machine = MachineBenchmarks.newMachine();
+		final EnigmaMachine measuredMachine = MachineBenchmarks.newMachine();
+		EnigmaMetrics metrics = new EnigmaMetrics("benchmark");
+		measuredMachine.setMetrics(metrics);
+		
+		final String letters = MachineBenchmarks.newMessage(4096);
+		bench.run("EnigmaMachine.encrypt(char) no metrics", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return machine.encrypt(letters.charAt(i));
+			}
+		});
+		bench.run("EnigmaMachine.encrypt(char) metrics", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 1) & 4095;
+				return measuredMachine.encrypt(letters.charAt(i));
+			}
+		});
+		
+		for (final int size : new int[] {64, 4096}){
+			final char[] src = MachineBenchmarks.newMessage(size).toCharArray();
+			final char[] dst = new char[size];
+			bench.run("EnigmaMachine.encrypt(char[]) " + MachineBenchmarks.sizeName(size) + " no metrics", new Benchmark.Operation() {
+				public long run() {
+					machine.encrypt(src, 0, dst, 0, src.length);
+					return dst[0];
+				}
+			});
+			bench.run("EnigmaMachine.encrypt(char[]) " + MachineBenchmarks.sizeName(size) + " metrics", new Benchmark.Operation() {
+				public long run() {
+					measuredMachine.encrypt(src, 0, dst, 0, src.length);
+					return dst[0];
+				}
+			});
+		}
+		
+		System.out.println(metrics);
+	}
+}
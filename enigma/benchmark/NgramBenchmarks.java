@@ -0,0 +1,56 @@
+package enigma.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import enigma.analysis.MappedNgramTable;
+import enigma.analysis.NgramTable;
+
+/**
+ * Benchmarks for the quadgram scorers
+ * <p>
+ * Usage: {@code java enigma.benchmark.NgramBenchmarks [filter]}.
+ * Scores 4096 random quadgrams with the table on the heap and with the same table mapped from a file
+ * @see Benchmark
+ */
+public class NgramBenchmarks {
+	
+	public static void main(String[] args) throws IOException {
+		Benchmark bench = new Benchmark(args.length > 0 ? args[0] : null);
+		
+		Random random = new Random(42);
+		float[] scores = new float[26 * 26 * 26 * 26];
+		for (int i = 0; i < scores.length; i++)
+			scores[i] = -random.nextFloat() * 10;
+		final int[] indexes = new int[4096];
+		for (int i = 0; i < indexes.length; i++)
+			indexes[i] = random.nextInt(scores.length);
+		
+		Path file = Files.createTempFile("quadgrams", ".bin");
+		file.toFile().deleteOnExit();
+		MappedNgramTable.write(file, 4, scores);
+		
+		// each benchmark has its own loop so the call to score is not shared (and polluted) between the two classes
+		final NgramTable heap = new NgramTable(4, scores);
+		final MappedNgramTable mapped = MappedNgramTable.open(file);
+		
+		bench.run("NgramTable.score 4096 quadgrams", new Benchmark.Operation() {
+			public long run() {
+				float sum = 0;
+				for (int index : indexes)
+					sum += heap.score(index);
+				return Float.floatToIntBits(sum);
+			}
+		});
+		bench.run("MappedNgramTable.score 4096 quadgrams", new Benchmark.Operation() {
+			public long run() {
+				float sum = 0;
+				for (int index : indexes)
+					sum += mapped.score(index);
+				return Float.floatToIntBits(sum);
+			}
+		});
+	}
+}
@@ -0,0 +1,122 @@
+package enigma.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import enigma.commandline.settings.Settings;
+import enigma.commandline.settings.SettingsParser;
+import enigma.commandline.settings.SettingsParserException;
+import enigma.keysheet.KeySheet;
+import enigma.keysheet.KeySheetWriter;
+
+/**
+ * Benchmarks for SettingsParser on a key sheet
+ * <p>
+ * Usage: {@code java enigma.benchmark.SettingsBenchmarks [filter]}.
+ * The key sheet has one key per line (3 rotors, a reflector and 10 plugboard pairs) and is parsed
+ * from a Reader and from a CharBuffer. The MB/s of chars parsed is printed after each benchmark.
+ * Then a key is made into a MachineConfig by parsing its line and by a lookup in a binary KeySheet
+ * @see Benchmark
+ */
+public class SettingsBenchmarks {
+	private static final int KEYS = 20000;
+	
+	public static void main(String[] args) throws SettingsParserException, IOException {
+		Benchmark bench = new Benchmark(args.length > 0 ? args[0] : null);
+		
+		final String sheet = newKeySheet(KEYS);
+		final long[] count = new long[1];
+		final Consumer<Settings> counter = new Consumer<Settings>() {
+			public void accept(Settings settings) {
+				count[0]++;
+			}
+		};
+		
+		report(bench.run("SettingsParser.parse(Reader) " + KEYS + " keys", new Benchmark.Operation() {
+			public long run() {
+				try {
+					SettingsParser.parse(new StringReader(sheet), counter);
+				} catch (SettingsParserException e) {
+					throw new IllegalStateException(e);
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				return count[0];
+			}
+		}), sheet.length());
+		
+		final char[] chars = sheet.toCharArray();
+		report(bench.run("SettingsParser.parse(CharBuffer) " + KEYS + " keys", new Benchmark.Operation() {
+			public long run() {
+				try {
+					SettingsParser.parse(CharBuffer.wrap(chars), counter);
+				} catch (SettingsParserException e) {
+					throw new IllegalStateException(e);
+				}
+				return count[0];
+			}
+		}), sheet.length());
+		
+		// the same keys in a binary key sheet, one day each
+		final String[] keys = sheet.split("\n");
+		final LocalDate firstDay = LocalDate.of(1942, 1, 1);
+		KeySheetWriter writer = new KeySheetWriter();
+		for (int i = 0; i < KEYS; i++)
+			writer.add(firstDay.plusDays(i), "Hydra", keys[i]);
+		Path file = Files.createTempFile("keysheet", ".bin");
+		file.toFile().deleteOnExit();
+		writer.write(file);
+		final KeySheet keySheet = KeySheet.open(file);
+		
+		bench.run("SettingsParser.parse + Settings.createConfig", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 7919) % KEYS;
+				try {
+					return Settings.createConfig(SettingsParser.parse(keys[i])).getStartPosition(0);
+				} catch (SettingsParserException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		bench.run("KeySheet.lookup", new Benchmark.Operation() {
+			int i = 0;
+			public long run() {
+				i = (i + 7919) % KEYS;
+				return keySheet.lookup(firstDay.plusDays(i), "Hydra").getStartPosition(0);
+			}
+		});
+	}
+	
+	/**
+	 * @return a key sheet of random keys, one per line
+	 */
+	static String newKeySheet(int keys){
+		Random random = new Random(keys);
+		String[] rotorNames = {"I", "II", "III", "IV", "V", "VI", "VII", "VIII"};
+		StringBuilder sheet = new StringBuilder(keys * 80);
+		for (int i = 0; i < keys; i++){
+			int first = random.nextInt(rotorNames.length);
+			for (int k = 0; k < 3; k++){
+				sheet.append('<').append(rotorNames[(first + k) % rotorNames.length]).append(':').append(k + 1).append(':')
+					.append((char)('A' + random.nextInt(26))).append('>');
+			}
+			sheet.append(random.nextBoolean() ? "<Reflector B>" : "<Reflector C>").append('<');
+			for (int p = 0; p < 10; p++)
+				sheet.append('(').append((char)('A' + 2 * p)).append(',').append((char)('B' + 2 * p)).append(')');
+			sheet.append(">\n");
+		}
+		return sheet.toString();
+	}
+	
+	private static void report(Benchmark.Result result, int chars){
+		if (result != null)
+			System.out.println(String.format("    %.1f MB/s", result.getOpsPerSecond() * chars / (1 << 20)));
+	}
+}
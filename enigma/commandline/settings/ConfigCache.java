@@ -0,0 +1,208 @@
+package enigma.commandline.settings;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import enigma.machine.MachineConfig;
+import enigma.machine.Plugboard;
+
+/**
+ * A bounded cache of the MachineConfigs made from settings
+ * <p>
+ * The key is a canonical form of what the settings do to a machine (the last name, position and ring setting set
+ * for every rotor, the last reflector and the wiring of the last plugboard), so settings written differently (other order,
+ * case, pairs) that make the same machine share one config. Settings without a plugboard get a plugboard without pairs
+ * from createConfig, so they have the same key as an empty plugboard part.
+ * <p>
+ * The configs are kept in stripes (up to twice the number of processors, at most maxSize) chosen by the hash of the key,
+ * each a map with its own lock and its part of {@code maxSize}, so threads looking up different keys rarely wait
+ * for each other. The least recently used config of a stripe is evicted when the stripe is full, which is close to
+ * the least recently used one of the whole cache. A stripe is only locked to look up or add a key, a config is made
+ * outside of the lock (two threads missing the same key at the same time can both make it, and the first one is kept).
+ * <p>
+ * The cache is thread safe
+ * @see Settings#createConfig(Settings[])
+ */
+public class ConfigCache {
+	private final int maxSize;
+	private final Map<String, MachineConfig>[] stripes;
+	private final int stripeMask;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	/**
+	 * @param maxSize the maximum number of configs kept
+	 * @throws IllegalArgumentException if maxSize is not positive
+	 */
+	@SuppressWarnings("unchecked")
+	public ConfigCache(int maxSize){
+		if (maxSize < 1)
+			throw new IllegalArgumentException();
+		this.maxSize = maxSize;
+		int stripes = Integer.highestOneBit(Math.max(1, Math.min(64, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+		stripes = Math.min(stripes, Integer.highestOneBit(maxSize));
+		this.stripes = new Map[stripes];
+		for (int i = 0; i < stripes; i++)
+			this.stripes[i] = newStripe(maxSize / stripes + (i < maxSize % stripes ? 1 : 0));
+		this.stripeMask = stripes - 1;
+	}
+	
+	/**
+	 * @return a map in access order that evicts the eldest entry when there are more than maxSize
+	 */
+	private Map<String, MachineConfig> newStripe(final int maxSize){
+		return new LinkedHashMap<String, MachineConfig>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, MachineConfig> eldest) {
+				if (size() > maxSize){
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	private Map<String, MachineConfig> stripe(String key){
+		int hash = key.hashCode();
+		return stripes[(hash ^ hash >>> 16) & stripeMask];
+	}
+	
+	/**
+	 * Returns the config made by the settings, from the cache if it is there
+	 * @param settings the settings (must set the 3 rotors and the reflector)
+	 * @return the config (shared by all the callers with the same settings)
+	 * @throws IllegalStateException if the settings don't set the rotors or the reflector
+	 */
+	public MachineConfig get(Settings[] settings){
+		String key = key(settings);
+		Map<String, MachineConfig> configs = stripe(key);
+		MachineConfig config;
+		synchronized (configs){
+			config = configs.get(key);
+		}
+		if (config != null){
+			hits.increment();
+			return config;
+		}
+		
+		misses.increment();
+		config = Settings.createConfig(settings);
+		synchronized (configs){
+			MachineConfig other = configs.get(key);
+			if (other != null)
+				return other;
+			configs.put(key, config);
+		}
+		return config;
+	}
+	
+	/**
+	 * @return the canonical form of the settings
+	 */
+	static String key(Settings[] settings){
+		// the settings that win for each part (the last ones)
+		RotorSettings[] rotors = new RotorSettings[3];
+		ReflectorSettings reflector = null;
+		PlugboardSettings plugboard = null;
+		for (Settings s : settings){
+			if (s instanceof RotorSettings){
+				// like switchRotor (createConfig throws for more than 3 rotors)
+				int rotorNum = ((RotorSettings)s).getRotorNum();
+				if (rotorNum >= rotors.length)
+					rotors = Arrays.copyOf(rotors, rotorNum + 1);
+				rotors[rotorNum] = (RotorSettings)s;
+			}
+			else if (s instanceof ReflectorSettings)
+				reflector = (ReflectorSettings)s;
+			else if (s instanceof PlugboardSettings)
+				plugboard = (PlugboardSettings)s;
+			else
+				throw new IllegalArgumentException("unknown settings: " + s.getClass().getName());
+		}
+		
+		StringBuilder key = new StringBuilder(64);
+		for (RotorSettings rotor : rotors){
+			if (rotor == null)
+				key.append('-');
+			else
+				key.append(rotor.getName()).append(':').append(Character.toUpperCase(rotor.getPos()))
+						.append(':').append(Character.toUpperCase(rotor.getRing()));
+			key.append(' ');
+		}
+		key.append(reflector == null ? "-" : reflector.getReflectorName()).append(' ');
+		// the same pairing as PlugboardSettings.apply, without plugboard settings createConfig uses a plugboard without pairs
+		Plugboard board = new Plugboard();
+		if (plugboard != null){
+			for (char[] pair : plugboard.getPairs())
+				board.changeSettings(pair[0], pair[1]);
+		}
+		for (char c = 'A'; c <= 'Z'; c++)
+			key.append(board.map(c));
+		return key.toString();
+	}
+	
+	/**
+	 * @return the maximum number of configs kept
+	 */
+	public int getMaxSize(){
+		return maxSize;
+	}
+	
+	/**
+	 * @return the number of configs in the cache
+	 */
+	public int size(){
+		int size = 0;
+		for (Map<String, MachineConfig> configs : stripes){
+			synchronized (configs){
+				size += configs.size();
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * @return the number of calls to get that found the config in the cache
+	 */
+	public long getHitCount(){
+		return hits.sum();
+	}
+	
+	/**
+	 * @return the number of calls to get that had to make the config
+	 */
+	public long getMissCount(){
+		return misses.sum();
+	}
+	
+	/**
+	 * @return the number of configs evicted because the cache was full
+	 */
+	public long getEvictionCount(){
+		return evictions.sum();
+	}
+	
+	/**
+	 * Removes all the configs (the counters are not reset)
+	 */
+	public void clear(){
+		for (Map<String, MachineConfig> configs : stripes){
+			synchronized (configs){
+				configs.clear();
+			}
+		}
+	}
+	
+	@Override
+	public String toString(){
+		return "ConfigCache size " + size() + "/" + maxSize + " hits " + getHitCount() + " misses " + getMissCount()
+				+ " evictions " + getEvictionCount();
+	}
+}
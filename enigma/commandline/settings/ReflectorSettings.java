@@ -12,7 +12,7 @@ public class ReflectorSettings extends Settings {
 		try{
 			Reflector.createReflectorType(this.reflectorName);
 		} catch(IllegalArgumentException e){
-			throw new SettingsParserException("Invalid reflector name, must be one of (\"Reflector A\", \"Reflector B\", or \"Reflector C\"", lexeme);
+			throw new SettingsParserException("Invalid reflector name, must be one of (\"Reflector A\", \"Reflector B\", \"Reflector C\", \"Reflector B Thin\", or \"Reflector C Thin\"", lexeme);
 		}
 	}
 
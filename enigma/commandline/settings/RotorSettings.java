@@ -8,22 +8,23 @@ public class RotorSettings extends Settings {
 	private String name;
 	private int rotorNum;
 	private char pos;
+	private char ring;
 
-	RotorSettings(String lexeme, String name, char rotorNum, char pos) throws SettingsParserException {
+	RotorSettings(String lexeme, String name, int rotorNum, char pos, char ring) throws SettingsParserException {
 		super(lexeme);
 		
 		this.name = name;
 		this.name = name.toUpperCase();
 		if (Rotor.createRotor(this.name, null) == null)
-			throw new SettingsParserException("invalid rotor name, must be one of (I, II, III, IV, V, VI, VII, or VIII");
+			throw new SettingsParserException("invalid rotor name, must be one of (I, II, III, IV, V, VI, VII, VIII, BETA, or GAMMA");
 
-		this.rotorNum = Integer.parseInt(Character.toString(rotorNum), 10);
-		if (this.rotorNum < 1 || this.rotorNum > 3)
-			throw new SettingsParserException("invalid rotor number, must be between 1 and 3 (inclusive)", lexeme);
+		if (rotorNum < 1 || rotorNum > EnigmaMachine.MAX_ROTORS)
+			throw new SettingsParserException("invalid rotor number, must be between 1 and " + EnigmaMachine.MAX_ROTORS + " (inclusive)", lexeme);
 		else
-			this.rotorNum--;
+			this.rotorNum = rotorNum - 1;
 
 		this.pos = pos;
+		this.ring = ring;
 	}
 
 	/**
@@ -47,10 +48,18 @@ public class RotorSettings extends Settings {
 		return pos;
 	}
 
+	/**
+	 * @return the ring setting ('A' if the settings don't have one)
+	 */
+	public char getRing() {
+		return ring;
+	}
+
 	@Override
 	void apply(EnigmaMachine machine) {
 		Rotor newRotor = Rotor.createRotor(name, null);
 		newRotor.setCurrentPos(pos);
+		newRotor.setRingSetting(ring);
 		machine.switchRotor(rotorNum, newRotor);
 	}
 
@@ -1,13 +1,60 @@
 package enigma.commandline.settings;
 
 import enigma.machine.EnigmaMachine;
+import enigma.machine.MachineConfig;
+import enigma.machine.Plugboard;
+import enigma.metrics.ConfigEvent;
 
 public abstract class Settings {
 	private String lexeme;
 	
 	public static void apply(EnigmaMachine enigma, Settings[] settings){
+		ConfigEvent event = new ConfigEvent();
+		event.begin();
 		for (Settings s : settings)
 			s.apply(enigma);
+		commit(event, settings, enigma, 0);
+	}
+	
+	/**
+	 * Applies the settings to a new machine and takes a snapshot of it. The config can be kept and shared
+	 * instead of applying the settings again for every new machine
+	 * <p>
+	 * Without plugboard settings the plugboard has no pairs, so a key without pairs (like {@code Stop.toSettings()}
+	 * of a stop without pairs) can be written without the plugboard
+	 * @param settings the settings (must set the 3 rotors and the reflector)
+	 * @return the config
+	 * @throws IllegalStateException if the settings don't set the rotors or the reflector
+	 * @throws IllegalArgumentException if the settings set more than 3 rotors
+	 * @see MachineConfig#newSession()
+	 */
+	public static MachineConfig createConfig(Settings[] settings){
+		ConfigEvent event = new ConfigEvent();
+		event.begin();
+		EnigmaMachine machine = new EnigmaMachine();
+		for (Settings s : settings)
+			s.apply(machine);
+		if (machine.getPlugboard() == null)
+			machine.switchPlugboard(new Plugboard());
+		MachineConfig config = MachineConfig.of(machine);
+		commit(event, settings, machine, config.getId());
+		return config;
+	}
+	
+	/**
+	 * Ends the event and commits it if it is enabled
+	 * @param machine the machine the settings were applied to
+	 * @param configId id of the config or 0
+	 */
+	private static void commit(ConfigEvent event, Settings[] settings, EnigmaMachine machine, int configId){
+		event.end();
+		if (event.shouldCommit()){
+			String[] names = new String[machine.getRotorCount()];
+			for (int i = 0; i < names.length; i++)
+				names[i] = machine.getRotor(i) == null ? null : machine.getRotor(i).getName();
+			event.set(settings.length, names, machine.getReflector() == null ? null : machine.getReflector().getName(), configId);
+			event.commit();
+		}
 	}
 	
 	Settings(String lexeme){
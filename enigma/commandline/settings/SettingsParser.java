@@ -1,121 +1,261 @@
 package enigma.commandline.settings;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.function.Consumer;
 
+/**
+ * Parses settings like {@code <I:1:A><II:2:B><III:3:C><Reflector B><(A,B)(C,D)>}
+ * <p>
+ * A rotor can have a ring setting as a fourth letter: {@code <I:1:A:B>} (ring setting B). Without it the ring setting is A
+ * <p>
+ * The rotor number can have more than one digit for machines with more than 3 rotors. The M4 is
+ * {@code <BETA:1:A><II:2:B><IV:3:C><I:4:D><Reflector B Thin><(A,B)>}
+ * <p>
+ * The parser is a DFA driven by tables of primitives: every char is put in a class with one lookup and
+ * the next state (and what to do with the char) is read from a table of states by classes. Each settings is
+ * given to a callback as soon as it is complete, so the input can be read from a Reader or a CharBuffer of
+ * any size (for example a key sheet with one key per line) in linear time.
+ * <p>
+ * The tables never change after the class is loaded and every call has its own state, so the parser can
+ * be used by any number of threads at the same time
+ */
 public class SettingsParser {
-	
-	static ArrayList<HashMap<Character, Integer>> nextState = null;
-	
-	private static int nextStateFunction(int state, char next){
-//		System.out.println("(state, next) = (" + state + ", " + next + ")");
-
-		if (nextState == null){
-			nextState = new ArrayList<HashMap<Character, Integer>>();
-			for (int i = 0; i < 15; i++){
-				nextState.add(new HashMap<Character, Integer>());
-			}
-			
-			nextState.get(0).put('<', 1);
-			nextState.get(1).put('(', 6);
-			nextState.get(2).put('>', 3);
-			nextState.get(2).put(':', 4);
-			nextState.get(3).put('<', 1);
-			nextState.get(5).put(':', 13);
-			nextState.get(7).put(',', 8);
-			nextState.get(9).put(')', 10);
-			nextState.get(10).put('(', 6);
-			nextState.get(10).put('>', 11);
-			nextState.get(11).put('<', 1);
-			nextState.get(12).put('<', 1);
-			nextState.get(14).put('>', 12);
-		}
-		
-		if (next == ' ' || next == '\n' || next == '\t')
-			return state;
-		
-		if (state == 4){
-			if (next >= '1' && next <= '9')
-				return 5;
-		}
-		if (state == 1 || state == 6 || state == 8){
-			next = Character.toUpperCase(next);
-			if ((next >= 'A' && next <= 'Z') || (next >= '1' && next <= '9'))
-				return state + 1;
-		} 
-		if (state == 6 || state == 8 || state == 13){
-			next = Character.toUpperCase(next);
-			if ((next >= 'A' && next <= 'Z'))
-				return state + 1;
+
+	// classes of chars
+	private static final int OTHER = 0;
+	private static final int SPACE = 1; // ' ', '\n' and '\t'
+	private static final int LETTER = 2; // anything whose upper case is 'A' - 'Z'
+	private static final int DIGIT = 3; // '1' - '9'
+	private static final int OPEN_ANGLE = 4;
+	private static final int CLOSE_ANGLE = 5;
+	private static final int OPEN_PAREN = 6;
+	private static final int CLOSE_PAREN = 7;
+	private static final int COMMA = 8;
+	private static final int COLON = 9;
+	private static final int ZERO = 10; // only after the first digit of a rotor number
+	private static final int CLASSES = 11;
+
+	// what is done with a char after a transition
+	private static final int NONE = 0;
+	private static final int NAME = 1; // added to the name of a rotor or reflector
+	private static final int PAIR_FIRST = 2; // first letter of a plugboard pair
+	private static final int PAIR_SECOND = 3; // second letter of a plugboard pair
+	private static final int ROTOR_NUM = 4;
+	private static final int ROTOR_POS = 5;
+	private static final int ACCEPT_REFLECTOR = 6;
+	private static final int ACCEPT_ROTOR = 7;
+	private static final int ACCEPT_PLUGBOARD = 8;
+	private static final int ROTOR_RING = 9;
+
+	// 0 - 16 with 0, 3, 11, and 12 accepting. -1 is the error state
+	private static final int STATES = 17;
+	private static final int ERROR = -1;
+
+	private static final byte[] CHAR_CLASS = new byte[Character.MAX_VALUE + 1];
+	private static final int[][] NEXT_STATE = new int[STATES][CLASSES];
+	private static final int[][] ACTION = new int[STATES][CLASSES];
+
+	static {
+		for (int c = 0; c <= Character.MAX_VALUE; c++){
+			char upper = Character.toUpperCase((char)c);
+			if (c == ' ' || c == '\n' || c == '\t')
+				CHAR_CLASS[c] = SPACE;
+			else if (upper >= 'A' && upper <= 'Z')
+				CHAR_CLASS[c] = LETTER;
+			else if (c >= '1' && c <= '9')
+				CHAR_CLASS[c] = DIGIT;
+			else
+				CHAR_CLASS[c] = OTHER;
 		}
-		
-		if (state == 2){
-			next = Character.toUpperCase(next);
-			if (next >= 'A' && next <= 'Z' || (next >= '1' && next <= '9'))
-				return state;
+		CHAR_CLASS['<'] = OPEN_ANGLE;
+		CHAR_CLASS['>'] = CLOSE_ANGLE;
+		CHAR_CLASS['('] = OPEN_PAREN;
+		CHAR_CLASS[')'] = CLOSE_PAREN;
+		CHAR_CLASS[','] = COMMA;
+		CHAR_CLASS[':'] = COLON;
+		CHAR_CLASS['0'] = ZERO;
+
+		for (int state = 0; state < STATES; state++){
+			for (int c = 0; c < CLASSES; c++)
+				NEXT_STATE[state][c] = ERROR;
+			// white space never changes the state
+			NEXT_STATE[state][SPACE] = state;
 		}
-		
-		if (state < 0 || state > 14)
-			return -1;
-		
-		if (nextState.get(state).containsKey(next))
-			return nextState.get(state).get(next);
-		else 
-			return -1;
-		
+
+		// rotor: <name:num:pos> or <name:num:pos:ring>, reflector: <name>
+		transition(0, OPEN_ANGLE, 1, NONE);
+		transition(1, LETTER, 2, NAME);
+		transition(1, DIGIT, 2, NAME);
+		transition(2, LETTER, 2, NAME);
+		transition(2, DIGIT, 2, NAME);
+		transition(2, SPACE, 2, NAME); // the name is trimmed at the end
+		transition(2, CLOSE_ANGLE, 3, ACCEPT_REFLECTOR);
+		transition(2, COLON, 4, NONE);
+		transition(3, OPEN_ANGLE, 1, NONE);
+		transition(4, DIGIT, 5, ROTOR_NUM);
+		transition(5, DIGIT, 5, ROTOR_NUM);
+		transition(5, ZERO, 5, ROTOR_NUM);
+		transition(5, COLON, 13, NONE);
+		transition(13, LETTER, 14, ROTOR_POS);
+		transition(14, CLOSE_ANGLE, 12, ACCEPT_ROTOR);
+		transition(14, COLON, 15, NONE);
+		transition(15, LETTER, 16, ROTOR_RING);
+		transition(16, CLOSE_ANGLE, 12, ACCEPT_ROTOR);
+		transition(12, OPEN_ANGLE, 1, NONE);
+
+		// plugboard: <(a,b)(c,d)...>
+		transition(1, OPEN_PAREN, 6, NONE);
+		transition(6, LETTER, 7, PAIR_FIRST);
+		transition(6, DIGIT, 7, PAIR_FIRST);
+		transition(7, COMMA, 8, NONE);
+		transition(8, LETTER, 9, PAIR_SECOND);
+		transition(8, DIGIT, 9, PAIR_SECOND);
+		transition(9, CLOSE_PAREN, 10, NONE);
+		transition(10, OPEN_PAREN, 6, NONE);
+		transition(10, CLOSE_ANGLE, 11, ACCEPT_PLUGBOARD);
+		transition(11, OPEN_ANGLE, 1, NONE);
 	}
-	
+
+	private static void transition(int state, int charClass, int next, int action){
+		NEXT_STATE[state][charClass] = next;
+		ACTION[state][charClass] = action;
+	}
+
+	/**
+	 * Parses all of the input
+	 * @param input the settings
+	 * @return the settings in the order they are in the input
+	 * @throws SettingsParserException if the input is not valid
+	 */
 	public static Settings[] parse(String input) throws SettingsParserException{
-		ArrayList<Settings> result = new ArrayList<Settings> ();
-
-		// parses input using a DFA
-		int state = 0; // 0 - 11 with 0, 3, 11, and 12 accepting. -1 is the error state
-		
-		String lexeme = "";
-		String name = "";
-		char rotorNum = '0';
-		char rotorPos = 'A';
-		ArrayList<char []> plugboardPairs = new ArrayList<char[]>();
-
-		for (char next : input.toCharArray()){
-			lexeme += next;
-			int prevState = state;
-			state = SettingsParser.nextStateFunction(state, next);
-
-			if ((prevState == 1 || prevState == 2) && state == 2){
-				name += next;
-			} if (prevState == 6 && state == 7){
-				plugboardPairs.add(new char[2]);
-				plugboardPairs.get(plugboardPairs.size()-1)[0] = next;
-			} if (prevState == 8 && state == 9){
-				plugboardPairs.get(plugboardPairs.size()-1)[1] = next;
-			} if (prevState == 4 && state == 5){
-				rotorNum = next;
-			} if (prevState == 13 && state == 14){
-				rotorPos = next;
+		final ArrayList<Settings> result = new ArrayList<Settings> ();
+		Parser parser = new Parser(new Consumer<Settings>() {
+			public void accept(Settings settings) {
+				result.add(settings);
+			}
+		});
+		parser.parse(input.toCharArray(), 0, input.length());
+		parser.end();
+		return result.toArray(new Settings[result.size()]);
+	}
+
+	/**
+	 * Parses everything that is left in the reader and gives each settings to the callback as soon as it is parsed.
+	 * The reader is not closed
+	 * @param input the settings
+	 * @param callback called for every settings in the order they are in the input (by the calling thread)
+	 * @throws SettingsParserException if the input is not valid. The settings before the error were already given to the callback
+	 * @throws IOException if the reader throws it
+	 */
+	public static void parse(Reader input, Consumer<Settings> callback) throws SettingsParserException, IOException {
+		Parser parser = new Parser(callback);
+		char[] buffer = new char[8192];
+		int read;
+		while ((read = input.read(buffer)) != -1)
+			parser.parse(buffer, 0, read);
+		parser.end();
+	}
+
+	/**
+	 * Parses the remaining chars of the buffer and gives each settings to the callback as soon as it is parsed.
+	 * The buffer is advanced to its limit
+	 * @param input the settings
+	 * @param callback called for every settings in the order they are in the input (by the calling thread)
+	 * @throws SettingsParserException if the input is not valid. The settings before the error were already given to the callback
+	 */
+	public static void parse(CharBuffer input, Consumer<Settings> callback) throws SettingsParserException {
+		Parser parser = new Parser(callback);
+		if (input.hasArray()){
+			parser.parse(input.array(), input.arrayOffset() + input.position(), input.remaining());
+			input.position(input.limit());
+		} else {
+			char[] buffer = new char[Math.min(8192, input.remaining())];
+			while (input.hasRemaining()){
+				int len = Math.min(buffer.length, input.remaining());
+				input.get(buffer, 0, len);
+				parser.parse(buffer, 0, len);
 			}
-			
-			// accepting states
-			if (prevState == 2 && state == 3){
-				result.add(new ReflectorSettings(lexeme, name.trim()));
-				lexeme = "";
-				name = "";
-			} else if (prevState == 14 && state == 12){
-				result.add(new RotorSettings(lexeme, name.trim(), rotorNum, rotorPos));
-				lexeme = "";
-				name = "";
-			} else if (prevState == 10 && state == 11){
-				result.add(new PlugboardSettings(lexeme, plugboardPairs.toArray(new char[plugboardPairs.size()-1][2])));
-				lexeme = "";
-				plugboardPairs = new ArrayList<char []>();
-			} else if (state == -1){
-				throw new SettingsParserException("invalid sequence encountered", lexeme);
+		}
+		parser.end();
+	}
+
+	/**
+	 * The state of one parse
+	 */
+	private static final class Parser {
+		private final Consumer<Settings> callback;
+		private int state = 0;
+
+		private final StringBuilder lexeme = new StringBuilder();
+		private final StringBuilder name = new StringBuilder();
+		private int rotorNum = 0;
+		private char rotorPos = 'A';
+		private char rotorRing = 'A';
+		private ArrayList<char []> plugboardPairs = new ArrayList<char[]>();
+
+		Parser(Consumer<Settings> callback){
+			this.callback = callback;
+		}
+
+		void parse(char[] input, int off, int len) throws SettingsParserException {
+			for (int i = off; i < off + len; i++){
+				char next = input[i];
+				lexeme.append(next);
+
+				int charClass = CHAR_CLASS[next];
+				int action = ACTION[state][charClass];
+				state = NEXT_STATE[state][charClass];
+
+				switch (action){
+				case NAME:
+					name.append(next);
+					break;
+				case PAIR_FIRST:
+					plugboardPairs.add(new char[] {next, 0});
+					break;
+				case PAIR_SECOND:
+					plugboardPairs.get(plugboardPairs.size()-1)[1] = next;
+					break;
+				case ROTOR_NUM:
+					// any number over 99 is invalid anyway
+					rotorNum = Math.min(rotorNum * 10 + next - '0', 100);
+					break;
+				case ROTOR_POS:
+					rotorPos = next;
+					break;
+				case ROTOR_RING:
+					rotorRing = next;
+					break;
+				case ACCEPT_REFLECTOR:
+					callback.accept(new ReflectorSettings(lexeme.toString(), name.toString().trim()));
+					lexeme.setLength(0);
+					name.setLength(0);
+					break;
+				case ACCEPT_ROTOR:
+					callback.accept(new RotorSettings(lexeme.toString(), name.toString().trim(), rotorNum, rotorPos, rotorRing));
+					lexeme.setLength(0);
+					name.setLength(0);
+					rotorNum = 0;
+					rotorRing = 'A';
+					break;
+				case ACCEPT_PLUGBOARD:
+					callback.accept(new PlugboardSettings(lexeme.toString(), plugboardPairs.toArray(new char[plugboardPairs.size()][])));
+					lexeme.setLength(0);
+					plugboardPairs = new ArrayList<char []>();
+					break;
+				default:
+					if (state == ERROR)
+						throw new SettingsParserException("invalid sequence encountered", lexeme.toString());
+				}
 			}
 		}
-		
-		if (state == 0 || state == 3 || state == 11 || state == 12)
-			return result.toArray(new Settings[result.size()-1]);
-		else
-			throw new SettingsParserException("invalid sequence encountered", lexeme);
+
+		void end() throws SettingsParserException {
+			if (state != 0 && state != 3 && state != 11 && state != 12)
+				throw new SettingsParserException("invalid sequence encountered", lexeme.toString());
+		}
 	}
 }
@@ -0,0 +1,77 @@
+package enigma.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import enigma.machine.EnigmaMachine;
+import enigma.machine.MachineConfig;
+
+/**
+ * Encrypts whole ASCII files using memory mapping
+ * <p>
+ * The input and the output are mapped in windows of {@link #WINDOW_SIZE} bytes and the machine encrypts
+ * directly from one mapped window to the other, so nothing is copied through the heap and files larger than 2GB work
+ * @see EnigmaMachine#encrypt(java.nio.ByteBuffer, java.nio.ByteBuffer)
+ */
+public class EnigmaFiles {
+	/**
+	 * Size of the parts of the files that are mapped at the same time
+	 */
+	public static final int WINDOW_SIZE = 64 << 20;
+	
+	private EnigmaFiles(){
+	}
+	
+	/**
+	 * Encrypts the file {@code in} into {@code out}. Bytes that are not ASCII letters are copied as they are.
+	 * {@code out} is created if it doesn't exist or overwritten if it does
+	 * @param in the file to encrypt
+	 * @param out where the result is written. Can't be the same file as {@code in}
+	 * @param machine the machine used to encrypt. Its parts must all exist
+	 * @return the number of bytes encrypted
+	 * @throws IOException if one of the files can't be read, written or mapped
+	 * @throws IllegalArgumentException if {@code in} and {@code out} are the same file
+	 * @throws IllegalStateException if any of the parts of the Machine is {@code null}
+	 */
+	public static long encrypt(Path in, Path out, EnigmaMachine machine) throws IOException {
+		if (Files.exists(out) && Files.isSameFile(in, out))
+			throw new IllegalArgumentException("in and out are the same file");
+		
+		FileChannel inChannel = FileChannel.open(in, StandardOpenOption.READ);
+		try {
+			FileChannel outChannel = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			try {
+				long size = inChannel.size();
+				for (long position = 0; position < size; position += WINDOW_SIZE){
+					long length = Math.min(WINDOW_SIZE, size - position);
+					MappedByteBuffer src = inChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+					MappedByteBuffer dst = outChannel.map(FileChannel.MapMode.READ_WRITE, position, length);
+					machine.encrypt(src, dst);
+				}
+				return size;
+			} finally {
+				outChannel.close();
+			}
+		} finally {
+			inChannel.close();
+		}
+	}
+	
+	/**
+	 * Same as encrypt(Path, Path, EnigmaMachine) with a new machine made from {@code config} (at its starting positions)
+	 * @param in the file to encrypt
+	 * @param out where the result is written. Can't be the same file as {@code in}
+	 * @param config the config of the machine
+	 * @return the number of bytes encrypted
+	 * @throws IOException if one of the files can't be read, written or mapped
+	 * @throws IllegalArgumentException if {@code in} and {@code out} are the same file
+	 */
+	public static long encrypt(Path in, Path out, MachineConfig config) throws IOException {
+		return encrypt(in, out, config.newMachine());
+	}
+}
@@ -0,0 +1,87 @@
+package enigma.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import enigma.machine.EnigmaMachine;
+
+/**
+ * An InputStream that encrypts the ASCII text read from another InputStream
+ * <p>
+ * Bytes that are not ASCII letters are passed through. The bytes are encrypted in place as they are read
+ * so memory use doesn't depend on the size of the input. The machine keeps its state between reads.
+ * <p>
+ * Skipped bytes are still encrypted (to move the rotors). mark and reset are not supported
+ * @see EnigmaMachine#encrypt(byte[], int, byte[], int, int)
+ */
+public class EnigmaInputStream extends FilterInputStream {
+	private final EnigmaMachine machine;
+	private byte[] skipBuffer;
+	
+	/**
+	 * @param in the stream to read from
+	 * @param machine the machine used to encrypt. Its parts must all exist while reading
+	 */
+	public EnigmaInputStream(InputStream in, EnigmaMachine machine){
+		super(in);
+		if (machine == null)
+			throw new NullPointerException();
+		this.machine = machine;
+	}
+	
+	/**
+	 * @return the machine used to encrypt
+	 */
+	public EnigmaMachine getMachine(){
+		return machine;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		int next = in.read();
+		if (next == -1)
+			return -1;
+		return machine.encrypt((char)next) & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = in.read(b, off, len);
+		if (read > 0)
+			machine.encrypt(b, off, read);
+		return read;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0)
+			return 0;
+		// grows up to BUFFER_SIZE when a later skip is larger
+		if (skipBuffer == null || skipBuffer.length < Math.min(n, EnigmaWriter.BUFFER_SIZE))
+			skipBuffer = new byte[(int)Math.min(n, EnigmaWriter.BUFFER_SIZE)];
+		
+		long skipped = 0;
+		while (skipped < n){
+			int read = read(skipBuffer, 0, (int)Math.min(n - skipped, skipBuffer.length));
+			if (read == -1)
+				break;
+			skipped += read;
+		}
+		return skipped;
+	}
+	
+	@Override
+	public boolean markSupported(){
+		return false;
+	}
+	
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+	
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("reset() not supported");
+	}
+}
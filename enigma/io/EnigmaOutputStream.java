@@ -0,0 +1,58 @@
+package enigma.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import enigma.machine.EnigmaMachine;
+
+/**
+ * An OutputStream that encrypts ASCII text before writing it to another OutputStream
+ * <p>
+ * Bytes that are not ASCII letters are passed through. Bytes are encrypted through a buffer that is reused
+ * for every write (the caller's arrays are not changed) so memory use doesn't depend on the size of the input.
+ * The machine keeps its state between writes
+ * @see EnigmaMachine#encrypt(byte[], int, byte[], int, int)
+ */
+public class EnigmaOutputStream extends FilterOutputStream {
+	private final EnigmaMachine machine;
+	private final byte[] buffer;
+	
+	/**
+	 * @param out the stream to write to
+	 * @param machine the machine used to encrypt. Its parts must all exist while writing
+	 */
+	public EnigmaOutputStream(OutputStream out, EnigmaMachine machine){
+		super(out);
+		if (machine == null)
+			throw new NullPointerException();
+		this.machine = machine;
+		this.buffer = new byte[EnigmaWriter.BUFFER_SIZE];
+	}
+	
+	/**
+	 * @return the machine used to encrypt
+	 */
+	public EnigmaMachine getMachine(){
+		return machine;
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		out.write(machine.encrypt((char)(b & 0xFF)));
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off > b.length - len)
+			throw new IndexOutOfBoundsException();
+		
+		while (len > 0){
+			int chunk = Math.min(len, buffer.length);
+			machine.encrypt(b, off, buffer, 0, chunk);
+			out.write(buffer, 0, chunk);
+			off += chunk;
+			len -= chunk;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package enigma.io;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import enigma.machine.EnigmaMachine;
+
+/**
+ * A Reader that encrypts everything read from another Reader
+ * <p>
+ * The chars are encrypted in place as they are read so memory use doesn't depend on the size of the input.
+ * The machine keeps its state between reads, so reading a stream in pieces gives the same result as
+ * {@link EnigmaMachine#encrypt(String)} on the whole input.
+ * <p>
+ * Skipped chars are still encrypted (to move the rotors). mark and reset are not supported
+ */
+public class EnigmaReader extends FilterReader {
+	private final EnigmaMachine machine;
+	private char[] skipBuffer;
+	
+	/**
+	 * @param in the Reader to read from
+	 * @param machine the machine used to encrypt. Its parts must all exist while reading
+	 */
+	public EnigmaReader(Reader in, EnigmaMachine machine){
+		super(in);
+		if (machine == null)
+			throw new NullPointerException();
+		this.machine = machine;
+	}
+	
+	/**
+	 * @return the machine used to encrypt
+	 */
+	public EnigmaMachine getMachine(){
+		return machine;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		int next = in.read();
+		if (next == -1)
+			return -1;
+		return machine.encrypt((char)next);
+	}
+	
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		int read = in.read(cbuf, off, len);
+		if (read > 0)
+			machine.encrypt(cbuf, off, read);
+		return read;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		if (n < 0)
+			throw new IllegalArgumentException("skip value is negative");
+		if (n == 0)
+			return 0;
+		// grows up to BUFFER_SIZE when a later skip is larger
+		if (skipBuffer == null || skipBuffer.length < Math.min(n, EnigmaWriter.BUFFER_SIZE))
+			skipBuffer = new char[(int)Math.min(n, EnigmaWriter.BUFFER_SIZE)];
+		
+		long skipped = 0;
+		while (skipped < n){
+			int read = read(skipBuffer, 0, (int)Math.min(n - skipped, skipBuffer.length));
+			if (read == -1)
+				break;
+			skipped += read;
+		}
+		return skipped;
+	}
+	
+	@Override
+	public boolean markSupported(){
+		return false;
+	}
+	
+	@Override
+	public void mark(int readAheadLimit) throws IOException {
+		throw new IOException("mark() not supported");
+	}
+	
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("reset() not supported");
+	}
+}
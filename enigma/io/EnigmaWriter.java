@@ -0,0 +1,78 @@
+package enigma.io;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import enigma.machine.EnigmaMachine;
+
+/**
+ * A Writer that encrypts everything before writing it to another Writer
+ * <p>
+ * Chars are encrypted through a buffer that is reused for every write (the caller's arrays are not changed)
+ * so memory use doesn't depend on the size of the input.
+ * The machine keeps its state between writes, so writing in pieces gives the same result as
+ * {@link EnigmaMachine#encrypt(String)} on the whole input
+ */
+public class EnigmaWriter extends FilterWriter {
+	/**
+	 * Size of the buffers used by the classes in this package
+	 */
+	static final int BUFFER_SIZE = 8192;
+	
+	private final EnigmaMachine machine;
+	private final char[] buffer;
+	
+	/**
+	 * @param out the Writer to write to
+	 * @param machine the machine used to encrypt. Its parts must all exist while writing
+	 */
+	public EnigmaWriter(Writer out, EnigmaMachine machine){
+		super(out);
+		if (machine == null)
+			throw new NullPointerException();
+		this.machine = machine;
+		this.buffer = new char[BUFFER_SIZE];
+	}
+	
+	/**
+	 * @return the machine used to encrypt
+	 */
+	public EnigmaMachine getMachine(){
+		return machine;
+	}
+	
+	@Override
+	public void write(int c) throws IOException {
+		out.write(machine.encrypt((char)c));
+	}
+	
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off > cbuf.length - len)
+			throw new IndexOutOfBoundsException();
+		
+		while (len > 0){
+			int chunk = Math.min(len, buffer.length);
+			machine.encrypt(cbuf, off, buffer, 0, chunk);
+			out.write(buffer, 0, chunk);
+			off += chunk;
+			len -= chunk;
+		}
+	}
+	
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off > str.length() - len)
+			throw new IndexOutOfBoundsException();
+		
+		while (len > 0){
+			int chunk = Math.min(len, buffer.length);
+			str.getChars(off, off + chunk, buffer, 0);
+			machine.encrypt(buffer, 0, chunk);
+			out.write(buffer, 0, chunk);
+			off += chunk;
+			len -= chunk;
+		}
+	}
+}
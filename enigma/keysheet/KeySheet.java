@@ -0,0 +1,179 @@
+package enigma.keysheet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import enigma.machine.EnigmaMachine;
+import enigma.machine.MachineConfig;
+import enigma.machine.Plugboard;
+import enigma.machine.Reflector;
+import enigma.machine.Rotor;
+
+/**
+ * A binary key sheet opened with memory mapping: the key of every network for every day
+ * <p>
+ * The file is written by KeySheetWriter. It has a header, the names of the networks (sorted) and then one entry
+ * of {@link #ENTRY_SIZE} bytes for every key, sorted by date and network. An entry holds the date (epoch day), the
+ * network (index in the names), the rotor order, the ring settings, the start positions, the reflector and the
+ * wiring of the plugboard. A lookup is a binary search in the mapped entries and only the entry found is read.
+ * <p>
+ * A key sheet is immutable and thread safe
+ * @see KeySheetWriter
+ */
+public final class KeySheet {
+	/**
+	 * The first 4 bytes of a key sheet file ({@code "EKSH"})
+	 */
+	public static final int MAGIC = 0x454B5348;
+	/**
+	 * The version of the file format
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * Size of an entry in bytes
+	 */
+	public static final int ENTRY_SIZE = 48;
+	
+	// the rotors and reflectors by the ids stored in the entries
+	static final String[] ROTOR_NAMES = {"I", "II", "III", "IV", "V", "VI", "VII", "VIII"};
+	static final String[] REFLECTOR_NAMES = {"Reflector A", "Reflector B", "Reflector C"};
+	
+	// offsets in an entry
+	static final int DAY = 0;
+	static final int NETWORK = 4;
+	static final int ROTORS = 8;
+	static final int RINGS = 11;
+	static final int POSITIONS = 14;
+	static final int REFLECTOR = 17;
+	static final int PLUGBOARD = 18;
+	
+	private final ByteBuffer entries;
+	private final int entryCount;
+	private final String[] networks;
+	
+	private KeySheet(ByteBuffer entries, int entryCount, String[] networks){
+		this.entries = entries;
+		this.entryCount = entryCount;
+		this.networks = networks;
+	}
+	
+	/**
+	 * Maps a key sheet file. The file must not be changed while it is mapped
+	 * @param file the file
+	 * @return the key sheet
+	 * @throws IOException if the file can't be read or is not a key sheet
+	 */
+	public static KeySheet open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			try {
+				if (map.getInt() != MAGIC || map.getInt() != VERSION)
+					throw new IOException(file + " is not a key sheet");
+				String[] networks = new String[map.getInt()];
+				int entryCount = map.getInt();
+				for (int i = 0; i < networks.length; i++){
+					byte[] name = new byte[map.getShort() & 0xFFFF];
+					map.get(name);
+					networks[i] = new String(name, StandardCharsets.UTF_8);
+				}
+				if (map.remaining() != (long)entryCount * ENTRY_SIZE)
+					throw new IOException(file + " is not a key sheet");
+				return new KeySheet(map.slice(), entryCount, networks);
+			} catch (RuntimeException e) {
+				// BufferUnderflowException or a negative size
+				throw new IOException(file + " is not a key sheet", e);
+			}
+		} finally {
+			// the mapping stays valid after the channel is closed
+			channel.close();
+		}
+	}
+	
+	/**
+	 * @return the number of keys
+	 */
+	public int size(){
+		return entryCount;
+	}
+	
+	/**
+	 * @return the names of the networks (sorted)
+	 */
+	public String[] getNetworks(){
+		return networks.clone();
+	}
+	
+	/**
+	 * Finds the key of a network for a day
+	 * @param date the day
+	 * @param network the name of the network
+	 * @return the config of the key (at its start positions) or {@code null} if there is no key for the day and network
+	 */
+	public MachineConfig lookup(LocalDate date, String network){
+		int entry = find(date, network);
+		if (entry < 0)
+			return null;
+		int offset = entry * ENTRY_SIZE;
+		
+		Rotor[] rotors = new Rotor[3];
+		for (int i = 0; i < 3; i++){
+			rotors[i] = Rotor.createRotor(ROTOR_NAMES[entries.get(offset + ROTORS + i)], null);
+			rotors[i].setCurrentPos((int)entries.get(offset + POSITIONS + i));
+			rotors[i].setRingSetting((int)entries.get(offset + RINGS + i));
+		}
+		Plugboard plugboard = new Plugboard();
+		for (int x = 0; x < 26; x++){
+			int y = entries.get(offset + PLUGBOARD + x);
+			if (y > x)
+				plugboard.changeSettings((char)(x + 'A'), (char)(y + 'A'));
+		}
+		EnigmaMachine machine = new EnigmaMachine(rotors, Reflector.createReflectorType(REFLECTOR_NAMES[entries.get(offset + REFLECTOR)]), plugboard);
+		machine.switchRotor(2, rotors[2]); // connects the rotors
+		return MachineConfig.of(machine);
+	}
+	
+	/**
+	 * @return whether there is a key for the day and network
+	 */
+	public boolean contains(LocalDate date, String network){
+		return find(date, network) >= 0;
+	}
+	
+	/**
+	 * @return the index of the entry or -1
+	 */
+	private int find(LocalDate date, String network){
+		int networkIndex = Arrays.binarySearch(networks, network);
+		if (networkIndex < 0)
+			return -1;
+		long key = key(date.toEpochDay(), networkIndex);
+		
+		int low = 0, high = entryCount - 1;
+		while (low <= high){
+			int mid = (low + high) >>> 1;
+			long midKey = key(entries.getInt(mid * ENTRY_SIZE + DAY), entries.getInt(mid * ENTRY_SIZE + NETWORK));
+			if (midKey < key)
+				low = mid + 1;
+			else if (midKey > key)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return the order of entries: by day and then by network
+	 */
+	static long key(long day, int network){
+		return day << 32 | network;
+	}
+}
@@ -0,0 +1,217 @@
+package enigma.keysheet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import enigma.commandline.settings.Settings;
+import enigma.commandline.settings.SettingsParser;
+import enigma.commandline.settings.SettingsParserException;
+import enigma.machine.EnigmaMachine;
+
+/**
+ * Collects keys and writes them as a binary key sheet (see KeySheet)
+ * <p>
+ * Keys are given as settings (in the syntax of SettingsParser) or as a text key sheet with one key per line:
+ * {@code <date> <network> <settings>}, for example {@code 1942-05-03 Hydra <I:1:A><II:2:B><III:3:C><Reflector B><(A,B)>}.
+ * The date is in ISO format, the network can't have white space, and empty lines or lines starting with {@code #} are skipped
+ * @see KeySheet
+ */
+public class KeySheetWriter {
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	
+	/**
+	 * Adds a key
+	 * @param date the day
+	 * @param network the name of the network
+	 * @param settings the settings of the key (must set the 3 rotors, the reflector and the plugboard)
+	 * @throws IllegalArgumentException if there already is a key for the day and network, the settings don't set
+	 * all the parts or a part can't be stored (a key sheet has exactly 3 rotors, so M4 keys with a fourth rotor
+	 * and a thin reflector can't be stored)
+	 */
+	public void add(LocalDate date, String network, Settings[] settings){
+		if (network.getBytes(StandardCharsets.UTF_8).length > 0xFFFF)
+			throw new IllegalArgumentException("network name too long");
+		
+		EnigmaMachine machine = new EnigmaMachine();
+		Settings.apply(machine, settings);
+		if (machine.getRotorCount() != 3)
+			throw new IllegalArgumentException("a key sheet has 3 rotors, not " + machine.getRotorCount());
+		if (machine.getRotor(0) == null || machine.getRotor(1) == null || machine.getRotor(2) == null
+				|| machine.getReflector() == null || machine.getPlugboard() == null)
+			throw new IllegalArgumentException("the settings must set the 3 rotors, the reflector and the plugboard");
+		if (machine.getReflector().getName().endsWith(" Thin"))
+			throw new IllegalArgumentException(machine.getReflector().getName() + " needs a fourth rotor, a key sheet has 3 rotors");
+		
+		byte[] data = new byte[KeySheet.ENTRY_SIZE];
+		for (int i = 0; i < 3; i++){
+			data[KeySheet.ROTORS + i] = (byte)indexOf(KeySheet.ROTOR_NAMES, machine.getRotor(i).getName());
+			data[KeySheet.RINGS + i] = (byte)machine.getRotor(i).getRingSetting();
+			data[KeySheet.POSITIONS + i] = (byte)machine.getRotor(i).getCurrentPos();
+		}
+		data[KeySheet.REFLECTOR] = (byte)indexOf(KeySheet.REFLECTOR_NAMES, machine.getReflector().getName());
+		for (int x = 0; x < 26; x++)
+			data[KeySheet.PLUGBOARD + x] = (byte)(machine.getPlugboard().map((char)(x + 'A')) - 'A');
+		
+		Entry entry = new Entry(date.toEpochDay(), network, data);
+		String key = date + " " + network;
+		if (entries.containsKey(key))
+			throw new IllegalArgumentException("there already is a key for " + key);
+		entries.put(key, entry);
+	}
+	
+	/**
+	 * Same as add(LocalDate, String, Settings[]) with the settings parsed by SettingsParser
+	 * @param date the day
+	 * @param network the name of the network
+	 * @param settings the settings of the key
+	 * @throws SettingsParserException if the settings are not valid
+	 * @throws IllegalArgumentException see add(LocalDate, String, Settings[])
+	 */
+	public void add(LocalDate date, String network, String settings) throws SettingsParserException {
+		add(date, network, SettingsParser.parse(settings));
+	}
+	
+	/**
+	 * Adds all the keys of a text key sheet. The reader is read until the end but not closed
+	 * @param keySheet the text key sheet (one key per line)
+	 * @return the number of keys added
+	 * @throws SettingsParserException if a line is not valid (its lexeme is the line)
+	 * @throws IOException if the reader throws it
+	 * @throws IllegalArgumentException see add(LocalDate, String, Settings[])
+	 */
+	public int addAll(Reader keySheet) throws SettingsParserException, IOException {
+		BufferedReader lines = new BufferedReader(keySheet);
+		int added = 0;
+		String line;
+		while ((line = lines.readLine()) != null){
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			
+			String[] fields = line.split("\\s+", 3);
+			if (fields.length < 3)
+				throw new SettingsParserException("expected <date> <network> <settings>", line);
+			LocalDate date;
+			try {
+				date = LocalDate.parse(fields[0]);
+			} catch (DateTimeParseException e) {
+				throw new SettingsParserException("invalid date", line);
+			}
+			add(date, fields[1], fields[2]);
+			added++;
+		}
+		return added;
+	}
+	
+	/**
+	 * @return the number of keys added
+	 */
+	public int size(){
+		return entries.size();
+	}
+	
+	/**
+	 * Writes all the keys to a file (created or overwritten)
+	 * @param file the file
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(Path file) throws IOException {
+		List<Entry> sorted = new ArrayList<Entry>(entries.values());
+		String[] networks = networks(sorted);
+		final Map<String, Integer> networkIndex = new HashMap<String, Integer>();
+		for (int i = 0; i < networks.length; i++)
+			networkIndex.put(networks[i], i);
+		Collections.sort(sorted, new Comparator<Entry>() {
+			public int compare(Entry a, Entry b) {
+				return Long.compare(KeySheet.key(a.day, networkIndex.get(a.network)), KeySheet.key(b.day, networkIndex.get(b.network)));
+			}
+		});
+		
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		try {
+			int headerSize = 16;
+			for (String network : networks)
+				headerSize += 2 + network.getBytes(StandardCharsets.UTF_8).length;
+			ByteBuffer header = ByteBuffer.allocate(headerSize);
+			header.putInt(KeySheet.MAGIC).putInt(KeySheet.VERSION).putInt(networks.length).putInt(sorted.size());
+			for (String network : networks){
+				byte[] name = network.getBytes(StandardCharsets.UTF_8);
+				header.putShort((short)name.length).put(name);
+			}
+			header.flip();
+			drain(channel, header);
+			
+			ByteBuffer buffer = ByteBuffer.allocate(KeySheet.ENTRY_SIZE * 1024);
+			for (Entry entry : sorted){
+				if (!buffer.hasRemaining()){
+					buffer.flip();
+					drain(channel, buffer);
+					buffer.clear();
+				}
+				ByteBuffer data = ByteBuffer.wrap(entry.data);
+				data.putInt(KeySheet.DAY, (int)entry.day);
+				data.putInt(KeySheet.NETWORK, networkIndex.get(entry.network));
+				buffer.put(entry.data);
+			}
+			buffer.flip();
+			drain(channel, buffer);
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * @return the names of the networks of the entries (sorted, without duplicates)
+	 */
+	private static String[] networks(List<Entry> entries){
+		Set<String> networks = new TreeSet<String>();
+		for (Entry entry : entries)
+			networks.add(entry.network);
+		return networks.toArray(new String[networks.size()]);
+	}
+	
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+	
+	private static int indexOf(String[] names, String name){
+		for (int i = 0; i < names.length; i++){
+			if (names[i].equals(name))
+				return i;
+		}
+		throw new IllegalArgumentException(name + " can't be stored in a key sheet");
+	}
+	
+	/**
+	 * A key before it is written. data is the entry without the day and the network
+	 */
+	private static final class Entry {
+		final long day;
+		final String network;
+		final byte[] data;
+		
+		Entry(long day, String network, byte[] data){
+			this.day = day;
+			this.network = network;
+			this.data = data;
+		}
+	}
+}
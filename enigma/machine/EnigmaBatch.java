@@ -0,0 +1,232 @@
+package enigma.machine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encrypts many independent messages (each with its own MachineConfig) at the same time
+ * <p>
+ * The state of every machine (a lane) is kept in parallel arrays instead of objects: the positions of the rotors,
+ * the full turn positions and an index into one array holding the wiring of all the configs. The messages are
+ * encrypted in lockstep, one letter of every message at a time, in separate simple loops over the lanes (read the
+ * letters, step the rotors, scramble, write the letters). The stepping loop has no branches and only works on int
+ * arrays so the JIT can vectorize it, the other loops are table lookups that stay in the cache because the tables
+ * of all the lanes are packed together (lanes with the same config share them).
+ * <p>
+ * Each lane encrypts exactly like an EnigmaSession of its config, so the rotors step like Stepping.COG_WHEEL. A batch is not thread safe
+ * @see MachineConfig
+ */
+public final class EnigmaBatch {
+	// offsets in the wiring of a config
+	private static final int RIGHT_TO_LEFT = 0;
+	private static final int LEFT_TO_RIGHT = 3 * 26;
+	private static final int REFLECTOR = 6 * 26;
+	private static final int PLUGBOARD = 7 * 26;
+	private static final int WIRING_SIZE = 8 * 26;
+	
+	private final MachineConfig[] configs;
+	private final int size;
+	
+	// the wiring of all the configs and where the wiring of each lane starts
+	private final int[] wiring;
+	private final int[] base;
+	private final int[] rightNotches;
+	private final int[] middleNotches;
+	// positions of the rotors (0 - 25)
+	private final int[] left;
+	private final int[] middle;
+	private final int[] right;
+	
+	// the letter of every lane in the current column (0 - 25) and 1 if the lane has a letter in it (0 if not)
+	private final int[] letter;
+	private final int[] active;
+	
+	/**
+	 * @param configs the config of every lane. The lanes start at the starting positions of their configs
+	 */
+	public EnigmaBatch(MachineConfig[] configs){
+		this.configs = configs.clone();
+		size = configs.length;
+		base = new int[size];
+		rightNotches = new int[size];
+		middleNotches = new int[size];
+		left = new int[size];
+		middle = new int[size];
+		right = new int[size];
+		letter = new int[size];
+		active = new int[size];
+		
+		Map<MachineConfig, Integer> bases = new HashMap<MachineConfig, Integer>();
+		for (int i = 0; i < size; i++){
+			Integer b = bases.get(configs[i]);
+			if (b == null){
+				b = bases.size() * WIRING_SIZE;
+				bases.put(configs[i], b);
+			}
+			base[i] = b;
+			rightNotches[i] = configs[i].rightNotches();
+			middleNotches[i] = configs[i].middleNotches();
+		}
+		
+		wiring = new int[bases.size() * WIRING_SIZE];
+		for (Map.Entry<MachineConfig, Integer> entry : bases.entrySet()){
+			MachineConfig config = entry.getKey();
+			int b = entry.getValue();
+			System.arraycopy(config.rightToLeftTable(), 0, wiring, b + RIGHT_TO_LEFT, 3 * 26);
+			System.arraycopy(config.leftToRightTable(), 0, wiring, b + LEFT_TO_RIGHT, 3 * 26);
+			System.arraycopy(config.reflectorTable(), 0, wiring, b + REFLECTOR, 26);
+			System.arraycopy(config.plugboardTable(), 0, wiring, b + PLUGBOARD, 26);
+		}
+		reset();
+	}
+	
+	/**
+	 * @return the number of lanes
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * @param lane the lane
+	 * @return the config of the lane
+	 */
+	public MachineConfig getConfig(int lane){
+		return configs[lane];
+	}
+	
+	/**
+	 * @param lane the lane
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the current position of the rotor (1 - 26)
+	 */
+	public int getPosition(int lane, int rotorNum){
+		switch (rotorNum){
+		case 0: return left[lane] + 1;
+		case 1: return middle[lane] + 1;
+		case 2: return right[lane] + 1;
+		default: throw new IndexOutOfBoundsException();
+		}
+	}
+	
+	/**
+	 * Moves the rotors of every lane back to the starting positions of its config
+	 */
+	public void reset(){
+		for (int i = 0; i < size; i++){
+			left[i] = configs[i].getStartPosition(0) - 1;
+			middle[i] = configs[i].getStartPosition(1) - 1;
+			right[i] = configs[i].getStartPosition(2) - 1;
+		}
+	}
+	
+	/**
+	 * Encrypts one message in every lane, in place. Anything that is not a letter is left as it is and doesn't
+	 * move the rotors (like {@link EnigmaSession#encrypt(char)}). The rotors of each lane are left where the message ended
+	 * @param messages the message of every lane ({@code messages[i]} for lane i). A {@code null} message is skipped
+	 * @throws IllegalArgumentException if there is not one message for every lane
+	 */
+	public void encrypt(char[][] messages){
+		if (messages.length != size)
+			throw new IllegalArgumentException("expected " + size + " messages but got " + messages.length);
+		
+		int columns = 0;
+		for (char[] message : messages){
+			if (message != null && message.length > columns)
+				columns = message.length;
+		}
+		
+		for (int k = 0; k < columns; k++){
+			read(messages, k);
+			step();
+			scramble();
+			write(messages, k);
+		}
+	}
+	
+	/**
+	 * Reads column k of the messages into letter and active
+	 */
+	private void read(char[][] messages, int k){
+		for (int i = 0; i < size; i++){
+			char[] message = messages[i];
+			int c = message != null && k < message.length ? message[k] : 0;
+			if (c >= 'A' && c <= 'Z'){
+				letter[i] = c - 'A';
+				active[i] = 1;
+			} else if (c >= 'a' && c <= 'z'){
+				letter[i] = c - 'a';
+				active[i] = 1;
+			} else {
+				letter[i] = 0;
+				active[i] = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Steps the rotors of the active lanes (like EnigmaSession, without branches)
+	 */
+	private void step(){
+		for (int i = 0; i < size; i++){
+			int a = active[i];
+			int r = right[i];
+			int m = middle[i];
+			int carryMiddle = a & rightNotches[i] >>> r;
+			int carryLeft = carryMiddle & middleNotches[i] >>> m;
+			
+			r += a;
+			m += carryMiddle;
+			int l = left[i] + carryLeft;
+			// x == 26 ? 0 : x without a branch ((25 - x) >> 31 is -1 only if x is 26)
+			right[i] = r - (26 & (25 - r) >> 31);
+			middle[i] = m - (26 & (25 - m) >> 31);
+			left[i] = l - (26 & (25 - l) >> 31);
+		}
+	}
+	
+	/**
+	 * Sends the letter of every lane through the plugboard, rotors, reflector and back
+	 */
+	private void scramble(){
+		final int[] wiring = this.wiring;
+		for (int i = 0; i < size; i++){
+			int b = base[i];
+			int l = left[i];
+			int m = middle[i];
+			int r = right[i];
+			int x = wiring[b + PLUGBOARD + letter[i]];
+			x = translate(wiring, b + RIGHT_TO_LEFT + 52, x, r);
+			x = translate(wiring, b + RIGHT_TO_LEFT + 26, x, m);
+			x = translate(wiring, b + RIGHT_TO_LEFT, x, l);
+			x = wiring[b + REFLECTOR + x];
+			x = translate(wiring, b + LEFT_TO_RIGHT, x, l);
+			x = translate(wiring, b + LEFT_TO_RIGHT + 26, x, m);
+			x = translate(wiring, b + LEFT_TO_RIGHT + 52, x, r);
+			letter[i] = wiring[b + PLUGBOARD + x];
+		}
+	}
+	
+	/**
+	 * Same as Rotor.translateRightToLeft(int, int) for the table that starts at {@code offset}
+	 */
+	private static int translate(int[] table, int offset, int letter, int shift){
+		letter += shift;
+		letter -= 26 & (25 - letter) >> 31;
+		letter = table[offset + letter] - shift;
+		return letter + (26 & letter >> 31);
+	}
+	
+	/**
+	 * Writes the letters of the active lanes to column k of the messages (keeping the case)
+	 */
+	private void write(char[][] messages, int k){
+		for (int i = 0; i < size; i++){
+			if (active[i] != 0){
+				char[] message = messages[i];
+				char c = message[k];
+				message[k] = (char)(letter[i] + (c >= 'a' ? 'a' : 'A'));
+			}
+		}
+	}
+}
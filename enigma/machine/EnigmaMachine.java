@@ -1,5 +1,19 @@
 package enigma.machine;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import enigma.metrics.EncryptEvent;
+import enigma.metrics.EnigmaMetrics;
+
 /**
  * Simulates an Enigma machine with the following structure:
  * {@code || reflector | rotor1 | rotor2 | rotor3 ||} 
@@ -17,7 +31,12 @@ package enigma.machine;
  * 		<li> plugboard
  * </ol>
  * <p>
- * Rotor3 turns before a char is encrypted
+ * Rotor3 turns before a char is encrypted. How the other rotors turn is set with {@link #setStepping(Stepping)}
+ * <p>
+ * The machine can also have any other number of rotors. {@code rotor[0]} is still the one at the left, the input goes
+ * through them from right to left and back, and every rotor turns the one on its left (except a fixed rotor, which is never turned).
+ * The naval M4 is {@code || thin reflector | BETA or GAMMA | rotor | rotor | rotor ||}.
+ * Machines with 3 and 4 rotors have their own code for the path of a letter, the others go through the rotors in a loop
  * <p>
  * More information can be found at EnigmaMachineStepper
  * @see EnigmaMachineStepper
@@ -25,28 +44,53 @@ package enigma.machine;
  *
  */
 public class EnigmaMachine {
-	private Rotor[] rotor; // 3 rotors
+	/**
+	 * Inputs shorter than this are encrypted sequentially by parallelEncrypt
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 16;
+	
+	/**
+	 * The most rotors a machine can have
+	 */
+	public static final int MAX_ROTORS = 16;
+	
+	private Rotor[] rotor; // 3 rotors unless the machine was made with another number
 	private Reflector reflector;
 	private Plugboard plugboard;
 	
+	private Stepping stepping = Stepping.COG_WHEEL;
 	private EnigmaMachineStepper stepper;
+	private EnigmaTrace trace;
+	private EnigmaMetrics metrics;
+	// the id of the MachineConfig the machine was made from (0 if none or a part was switched since), for EncryptEvent
+	private int configId;
+	
+	private boolean compiled; // compile() was called
+	private ScramblerTable scrambler; // built lazily in compiled mode, null when a part is switched
+	// the wiring tables of the rotors the table was built from. A ring setting gives a rotor new tables, so the table is built again
+	private int[][] scramblerTables;
+	// with 4 rotors the table is built with rotor[0] folded into the reflector at this position
+	private int foldedPos;
 	
 	private void connectRotors(){
-		if (rotor[0] != null && rotor[1] != null && rotor[2] != null){
-			rotor[2].setConnection(rotor[1]);
-			rotor[1].setConnection(rotor[0]);
+		for (Rotor r : rotor){
+			if (r == null)
+				return;
 		}
+		for (int i = rotor.length - 1; i > 0; i--)
+			rotor[i].setConnection(rotor[i - 1].isFixed() ? null : rotor[i - 1]);
 	}
 	
 	/**
 	 * Creates a new enigma machine with the parts passed in
-	 * @param rotors {@code rotor[i]} has 3 rotors. {@code rotor[0]} is the one at the left and {@code rotor[2]} is the one at the right. They don't have to be connected
+	 * @param rotors usually 3 rotors (4 for the M4). {@code rotor[0]} is the one at the left and {@code rotor[rotors.length - 1]} is the one at the right. They don't have to be connected
 	 * @param reflector the reflector
 	 * @param plugboard the plugboard
+	 * @throws IllegalArgumentException if there are no rotors or more than MAX_ROTORS
 	 */
 	public EnigmaMachine(Rotor[] rotors, Reflector reflector, Plugboard plugboard){
 		if (rotors != null){
-			if (rotors.length != 3)
+			if (rotors.length < 1 || rotors.length > MAX_ROTORS)
 				throw new IllegalArgumentException();
 			rotor = rotors;
 		} else{
@@ -70,15 +114,29 @@ public class EnigmaMachine {
 	public Rotor getRotor(int rotorNum) {
 		return rotor[rotorNum];
 	}
+	
+	/**
+	 * @return the number of rotors (3 unless the machine was made with another number or switchRotor added some)
+	 */
+	public int getRotorCount() {
+		return rotor.length;
+	}
 
 	/**
+	 * Switches a rotor and connects the rotors if none of them is {@code null}.
+	 * A rotor number after the last rotor adds rotors on the right (the ones in between are {@code null})
+	 * @param rotorNum the rotor (0 is the one at the left, less than MAX_ROTORS)
 	 * @param rotor the rotor to set
 	 */
 	public void switchRotor(int rotorNum, Rotor rotor) {
 		if (this.rotor == null)
 			this.rotor = new Rotor[3];
+		if (rotorNum >= this.rotor.length && rotorNum < MAX_ROTORS)
+			this.rotor = Arrays.copyOf(this.rotor, rotorNum + 1);
 		this.rotor[rotorNum] = rotor;
 		this.connectRotors();
+		this.scrambler = null;
+		this.configId = 0;
 	}
 
 	/**
@@ -93,6 +151,8 @@ public class EnigmaMachine {
 	 */
 	public void switchReflector(Reflector reflector) {
 		this.reflector = reflector;
+		this.scrambler = null;
+		this.configId = 0;
 	}
 
 	/**
@@ -107,6 +167,25 @@ public class EnigmaMachine {
 	 */
 	public void switchPlugboard(Plugboard plugboard){
 		this.plugboard = plugboard;
+		this.configId = 0;
+	}
+
+	/**
+	 * @return how the rotors turn
+	 */
+	public Stepping getStepping() {
+		return stepping;
+	}
+	
+	/**
+	 * Sets how the rotors turn. The positions are not changed
+	 * @param stepping the stepping ({@link Stepping#COG_WHEEL} by default)
+	 * @throws IllegalArgumentException if stepping is {@code null}
+	 */
+	public void setStepping(Stepping stepping) {
+		if (stepping == null)
+			throw new IllegalArgumentException();
+		this.stepping = stepping;
 	}
 
 	/**
@@ -117,24 +196,159 @@ public class EnigmaMachine {
 	}
 
 	/**
-	 * @param stepper the stepper to set
+	 * @param stepper the stepper to set. A machine with a stepper must have 3 rotors to encrypt
 	 */
 	public void setStepper(EnigmaMachineStepper stepper) {
 		this.stepper = stepper;
 	}
 
+	/**
+	 * @return the trace the letters are recorded in or {@code null}
+	 */
+	public EnigmaTrace getTrace() {
+		return trace;
+	}
+	
+	/**
+	 * Attaches a trace. Every letter encrypted while no stepper is attached is recorded in it
+	 * (the compiled table is not used while a trace is attached). A machine with a trace must have 3 rotors to encrypt
+	 * @param trace the trace or {@code null} to stop recording
+	 * @see EnigmaTrace
+	 */
+	public void setTrace(EnigmaTrace trace) {
+		this.trace = trace;
+	}
+
+	/**
+	 * @return the metrics the machine counts in or {@code null}
+	 */
+	public EnigmaMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Attaches metrics. Without metrics the machine doesn't count or time anything
+	 * @param metrics the metrics (can be shared with other machines) or {@code null} to stop counting
+	 * @see EnigmaMetrics
+	 */
+	public void setMetrics(EnigmaMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Switches the machine to compiled mode.
+	 * <p>
+	 * In compiled mode the path from rotor3 to the reflector and back is read from a table of all
+	 * {@code 26^3} rotor positions (about 450KB) instead of going through each rotor. The table is built
+	 * the first time it is needed and built again after {@link #switchRotor(int, Rotor)},
+	 * {@link #switchReflector(Reflector)} or a change to the ring setting of a rotor. Changing the position of a rotor doesn't need a new table.
+	 * <p>
+	 * With 4 rotors the table is only used if rotor[0] is never turned (like BETA and GAMMA in the M4): it is folded
+	 * into the reflector and the table is built again when its position changes. Other machines don't have a table.
+	 * <p>
+	 * The table is not used while a stepper or a trace is attached
+	 */
+	public void compile(){
+		this.compiled = true;
+	}
+	
+	/**
+	 * @return whether {@link #compile()} was called
+	 */
+	public boolean isCompiled(){
+		return compiled;
+	}
+	
 	/**
 	 * Encryptes the input. For this to work, all parts must exist (not {@code null}).
+	 * <p>
+	 * If there is no stepper attached, the input goes through {@link #encryptFast(char)}
+	 * which gives the same result without creating the intermediate steps of every rotor
 	 * @param input the input to be encrypted
 	 * @return the encrypted char
 	 * @throws IllegalStateException if any of the parts are {@code null}
 	 */
 	public char encrypt(char input){
-		if (rotor[0] == null || rotor[1] == null || rotor[2] == null)
-			throw new IllegalStateException();
+		checkParts();
+		
+		if (metrics != null)
+			metrics.recordChar((input >= 'A' && input <= 'Z') || (input >= 'a' && input <= 'z'));
+		if (stepper == null)
+			return encryptFast(input);
+		else
+			return encryptStepped(input);
+	}
+	
+	/**
+	 * @throws IllegalStateException if any of the parts are {@code null} or a stepper or a trace is attached to a machine without 3 rotors
+	 */
+	private void checkParts(){
+		Rotor[] rotor = this.rotor;
+		if (rotor.length == 3){
+			if (rotor[0] == null || rotor[1] == null || rotor[2] == null)
+				throw new IllegalStateException();
+		} else {
+			for (Rotor r : rotor){
+				if (r == null)
+					throw new IllegalStateException();
+			}
+			if (stepper != null || trace != null)
+				throw new IllegalStateException("a stepper or a trace needs 3 rotors");
+		}
 		if (plugboard == null || reflector == null)
 			throw new IllegalStateException();
-		
+	}
+	
+	/**
+	 * Called by MachineConfig.newMachine()
+	 * @param configId the id of the config the machine was made from
+	 */
+	void setConfigId(int configId){
+		this.configId = configId;
+	}
+	
+	/**
+	 * Begins the event of a bulk encryption. While no recording enables the event none is made
+	 * @return the event or {@code null} if it is not enabled
+	 */
+	private static EncryptEvent beginBulk(){
+		if (!EncryptEvent.isRecorded())
+			return null;
+		EncryptEvent event = new EncryptEvent();
+		event.begin();
+		return event;
+	}
+	
+	/**
+	 * Ends a bulk encryption: commits the event if there is one and records the message in the metrics.
+	 * Letters are encrypted to letters and everything else is copied, so the output has the same letters as the input
+	 * @param event the event from beginBulk() or {@code null}
+	 * @param length number of chars or bytes encrypted
+	 * @param metrics the metrics at the start or {@code null}
+	 * @param start System.nanoTime() at the start (only with metrics)
+	 * @param letters number of letters in the output (only with metrics)
+	 */
+	private void finishBulk(EncryptEvent event, long length, EnigmaMetrics metrics, long start, long letters){
+		if (event != null){
+			event.end();
+			if (event.shouldCommit()){
+				String[] names = new String[rotor.length];
+				for (int i = 0; i < rotor.length; i++)
+					names[i] = rotor[i].getName();
+				event.set(length, names, reflector.getName(), configId);
+				event.commit();
+			}
+		}
+		if (metrics != null)
+			metrics.recordMessage(length, letters, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Encrypts the input and calls the stepper after every stage. Doesn't check if the parts exist
+	 * @param input the input to be encrypted
+	 * @return the encrypted char (partial if the stepper stopped the encryption)
+	 */
+	private char encryptStepped(char input){
 		// make sure that input is a letter
 		if ((input >= 'A' && input <= 'Z') || (input >= 'a' && input <= 'z')){
 			
@@ -143,7 +357,7 @@ public class EnigmaMachine {
 					return input;
 			}
 			
-			rotor[2].rotate();
+			step();
 			
 			if (stepper != null){
 				if (!stepper.afterRotate(input))
@@ -222,6 +436,298 @@ public class EnigmaMachine {
 		return input;
 	}
 	
+	/**
+	 * Encrypts a letter without calling the stepper. Doesn't check if the parts exist
+	 * <p>
+	 * Goes through the same stages as encrypt(char) but uses {@link Rotor#translateRightToLeft(char)}
+	 * and {@link Rotor#translateLeftToRight(char)} so nothing is allocated
+	 * @param input the input to be encrypted
+	 * @return the encrypted char
+	 */
+	private char encryptFast(char input){
+		if (trace != null)
+			return encryptTraced(input);
+		if (rotor.length != 3)
+			return rotor.length == 4 ? encryptFour(input) : encryptRotors(input);
+		if (compiled)
+			return encryptCompiled(input);
+		
+		if ((input >= 'A' && input <= 'Z') || (input >= 'a' && input <= 'z')){
+			step();
+			
+			input = plugboard.map(input);
+			
+			input = rotor[2].translateRightToLeft(input);
+			input = rotor[1].translateRightToLeft(input);
+			input = rotor[0].translateRightToLeft(input);
+			
+			input = reflector.map(input);
+			
+			input = rotor[0].translateLeftToRight(input);
+			input = rotor[1].translateLeftToRight(input);
+			input = rotor[2].translateLeftToRight(input);
+			
+			input = plugboard.map(input);
+		}
+		
+		return input;
+	}
+	
+	/**
+	 * encryptFast(char) for 4 rotors
+	 * @param input the input to be encrypted
+	 * @return the encrypted char
+	 */
+	private char encryptFour(char input){
+		if (compiled && leftNeverTurns())
+			return encryptFolded(input);
+		
+		if ((input >= 'A' && input <= 'Z') || (input >= 'a' && input <= 'z')){
+			step();
+			
+			input = plugboard.map(input);
+			
+			input = rotor[3].translateRightToLeft(input);
+			input = rotor[2].translateRightToLeft(input);
+			input = rotor[1].translateRightToLeft(input);
+			input = rotor[0].translateRightToLeft(input);
+			
+			input = reflector.map(input);
+			
+			input = rotor[0].translateLeftToRight(input);
+			input = rotor[1].translateLeftToRight(input);
+			input = rotor[2].translateLeftToRight(input);
+			input = rotor[3].translateLeftToRight(input);
+			
+			input = plugboard.map(input);
+		}
+		
+		return input;
+	}
+	
+	/**
+	 * Turns the rotors before a letter. Every kind of stepping has its own method so each one can be inlined
+	 */
+	private void step(){
+		switch (stepping){
+		case COG_WHEEL:
+			stepCogWheel();
+			break;
+		case DOUBLE_STEP:
+			stepDoubleStep();
+			break;
+		default:
+			stepOdometer();
+		}
+	}
+	
+	/**
+	 * Stepping.COG_WHEEL: same as rotate() of the rotor at the right, but the rotors of the machine are turned in a loop.
+	 * Only a connection to a rotor outside of the machine (or a rotor that turns its connection more than once
+	 * from the same position) goes through rotate()
+	 */
+	private void stepCogWheel(){
+		Rotor[] rotor = this.rotor;
+		for (int i = rotor.length - 1; ; i--){
+			Rotor turning = rotor[i];
+			Rotor connection = turning.getConnection();
+			if (connection == null || !turning.isAtNotch()){
+				turning.step();
+				return;
+			}
+			if (i == 0 || connection != rotor[i - 1] || turning.fullTurn().length != Integer.bitCount(turning.notches())){
+				turning.rotate();
+				return;
+			}
+			turning.step();
+		}
+	}
+	
+	/**
+	 * Stepping.DOUBLE_STEP: the pawl on the left of a rotor that isn't fixed pushes it and the rotor on its right
+	 * if that one is at a full turn position. All the pawls are read before any rotor moves
+	 */
+	private void stepDoubleStep(){
+		Rotor[] rotor = this.rotor;
+		if (rotor.length == 3){
+			boolean leftPawl = !rotor[0].isFixed() && rotor[1].isAtNotch();
+			boolean middlePawl = !rotor[1].isFixed() && rotor[2].isAtNotch();
+			if (leftPawl)
+				rotor[0].step();
+			if (leftPawl || middlePawl)
+				rotor[1].step();
+			rotor[2].step();
+			return;
+		}
+		
+		boolean pushed = false; // by the pawl on the left of rotor[i]
+		for (int i = 0; i < rotor.length - 1; i++){
+			boolean pawl = !rotor[i].isFixed() && rotor[i + 1].isAtNotch();
+			if (pawl || pushed)
+				rotor[i].step();
+			pushed = pawl;
+		}
+		rotor[rotor.length - 1].step();
+	}
+	
+	/**
+	 * Stepping.ODOMETER: a rotor turns the one on its left when it goes from Z to A
+	 */
+	private void stepOdometer(){
+		for (int i = rotor.length - 1; i >= 0 && !rotor[i].isFixed(); i--){
+			rotor[i].step();
+			if (rotor[i].getCurrentPos() != 1)
+				break;
+		}
+	}
+	
+	/**
+	 * @return whether the stepping never turns rotor[0]
+	 */
+	private boolean leftNeverTurns(){
+		if (stepping == Stepping.COG_WHEEL)
+			return rotor[1].getConnection() == null;
+		return rotor[0].isFixed();
+	}
+	
+	/**
+	 * encryptFast(char) for any number of rotors
+	 * @param input the input to be encrypted
+	 * @return the encrypted char
+	 */
+	private char encryptRotors(char input){
+		if ((input >= 'A' && input <= 'Z') || (input >= 'a' && input <= 'z')){
+			Rotor[] rotor = this.rotor;
+			step();
+			
+			input = plugboard.map(input);
+			for (int i = rotor.length - 1; i >= 0; i--)
+				input = rotor[i].translateRightToLeft(input);
+			input = reflector.map(input);
+			for (int i = 0; i < rotor.length; i++)
+				input = rotor[i].translateLeftToRight(input);
+			input = plugboard.map(input);
+		}
+		
+		return input;
+	}
+	
+	/**
+	 * Same as encryptFast(char) but records the output of every stage in the trace
+	 * @param input the input to be encrypted
+	 * @return the encrypted char
+	 */
+	private char encryptTraced(char input){
+		int letter;
+		if (input >= 'A' && input <= 'Z')
+			letter = input - 'A';
+		else if (input >= 'a' && input <= 'z')
+			letter = input - 'a';
+		else
+			return input;
+		
+		step();
+		int record = trace.append(input, rotor[0].getCurrentPos(), rotor[1].getCurrentPos(), rotor[2].getCurrentPos());
+		
+		letter = plugboard.map(letter);
+		trace.stage(record, EnigmaTrace.PLUGBOARD_IN, letter);
+		
+		letter = rotor[2].translateRightToLeft(letter);
+		trace.stage(record, EnigmaTrace.RIGHT_TO_LEFT_ROTOR3, letter);
+		letter = rotor[1].translateRightToLeft(letter);
+		trace.stage(record, EnigmaTrace.RIGHT_TO_LEFT_ROTOR2, letter);
+		letter = rotor[0].translateRightToLeft(letter);
+		trace.stage(record, EnigmaTrace.RIGHT_TO_LEFT_ROTOR1, letter);
+		
+		letter = reflector.map(letter);
+		trace.stage(record, EnigmaTrace.REFLECTOR, letter);
+		
+		letter = rotor[0].translateLeftToRight(letter);
+		trace.stage(record, EnigmaTrace.LEFT_TO_RIGHT_ROTOR1, letter);
+		letter = rotor[1].translateLeftToRight(letter);
+		trace.stage(record, EnigmaTrace.LEFT_TO_RIGHT_ROTOR2, letter);
+		letter = rotor[2].translateLeftToRight(letter);
+		trace.stage(record, EnigmaTrace.LEFT_TO_RIGHT_ROTOR3, letter);
+		
+		letter = plugboard.map(letter);
+		trace.stage(record, EnigmaTrace.PLUGBOARD_OUT, letter);
+		
+		return (char)(letter + (input >= 'a' ? 'a' : 'A'));
+	}
+	
+	/**
+	 * Same as encryptFast(char) but uses the ScramblerTable (builds it if needed)
+	 * @param input the input to be encrypted
+	 * @return the encrypted char
+	 */
+	private char encryptCompiled(char input){
+		if ((input >= 'A' && input <= 'Z') || (input >= 'a' && input <= 'z')){
+			int[][] tables = scramblerTables;
+			if (scrambler == null || tables[0] != rotor[0].rightToLeftTable() || tables[1] != rotor[1].rightToLeftTable()
+					|| tables[2] != rotor[2].rightToLeftTable())
+				buildScrambler();
+			
+			step();
+			int state = ScramblerTable.state(rotor[0].getCurrentPos(), rotor[1].getCurrentPos(), rotor[2].getCurrentPos());
+			
+			input = plugboard.map(input);
+			input = scrambler.map(state, input);
+			input = plugboard.map(input);
+		}
+		
+		return input;
+	}
+	
+	/**
+	 * encryptCompiled(char) for 4 rotors where rotor[0] never turns. Doesn't check that it doesn't
+	 * @param input the input to be encrypted
+	 * @return the encrypted char
+	 */
+	private char encryptFolded(char input){
+		if ((input >= 'A' && input <= 'Z') || (input >= 'a' && input <= 'z')){
+			if (!isScramblerCurrent())
+				buildScrambler();
+			
+			step();
+			int state = ScramblerTable.state(rotor[1].getCurrentPos(), rotor[2].getCurrentPos(), rotor[3].getCurrentPos());
+			
+			input = plugboard.map(input);
+			input = scrambler.map(state, input);
+			input = plugboard.map(input);
+		}
+		
+		return input;
+	}
+	
+	/**
+	 * Builds the table of a machine with 3 rotors, or 4 rotors with rotor[0] (at its current position) folded into the reflector
+	 */
+	private void buildScrambler(){
+		int[][] tables = new int[rotor.length][];
+		for (int i = 0; i < rotor.length; i++)
+			tables[i] = rotor[i].rightToLeftTable();
+		if (rotor.length == 3){
+			scrambler = ScramblerTable.build(rotor[0], rotor[1], rotor[2], reflector);
+		} else {
+			foldedPos = rotor[0].getCurrentPos();
+			scrambler = ScramblerTable.build(rotor[1], rotor[2], rotor[3], reflector.fold(rotor[0]));
+		}
+		scramblerTables = tables;
+	}
+	
+	/**
+	 * @return whether the table was built from the current wiring tables of the rotors (and position of the folded rotor)
+	 */
+	private boolean isScramblerCurrent(){
+		if (scrambler == null)
+			return false;
+		for (int i = 0; i < rotor.length; i++){
+			if (scramblerTables[i] != rotor[i].rightToLeftTable())
+				return false;
+		}
+		return rotor.length == 3 || foldedPos == rotor[0].getCurrentPos();
+	}
+	
 	/**
 	 * Encrypts a whole string, this method uses encrypt(char)
 	 * @param input the input to encrypt
@@ -230,27 +736,518 @@ public class EnigmaMachine {
 	 * @see EnigmaMachine#encrypt(char)
 	 */
 	public String encrypt(String input){
-		char [] result = new char[input.length()];
-		char [] inputArr = input.toCharArray();
+		char [] result = input.toCharArray();
+		encrypt(result, 0, result, 0, result.length);
+		
+		return new String(result);
+	}
+	
+	/**
+	 * Encrypts {@code len} chars of {@code src} starting at {@code srcOff} into {@code dst} starting at {@code dstOff}.
+	 * The result is the same as calling encrypt(char) on every char but the parts are only checked once.
+	 * <p>
+	 * {@code src} and {@code dst} can be the same array to encrypt in place (with {@code srcOff == dstOff})
+	 * @param src the input
+	 * @param srcOff index of the first char to encrypt
+	 * @param dst where the output is written
+	 * @param dstOff index in {@code dst} of the first encrypted char
+	 * @param len the number of chars to encrypt
+	 * @throws IllegalStateException if any of the parts of the Machine is {@code null}
+	 * @throws IndexOutOfBoundsException if a range is outside of its array
+	 */
+	public void encrypt(char[] src, int srcOff, char[] dst, int dstOff, int len){
+		checkRange(src.length, srcOff, len);
+		checkRange(dst.length, dstOff, len);
+		checkParts();
+		EnigmaMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		EncryptEvent event = beginBulk();
+		
+		if (stepper == null){
+			for (int i = 0; i < len; i++)
+				dst[dstOff + i] = encryptFast(src[srcOff + i]);
+		} else {
+			for (int i = 0; i < len; i++)
+				dst[dstOff + i] = encryptStepped(src[srcOff + i]);
+		}
+		
+		finishBulk(event, len, metrics, start, metrics == null ? 0 : countLetters(dst, dstOff, len));
+	}
+	
+	/**
+	 * Encrypts {@code len} chars of {@code buf} starting at {@code off} in place
+	 * @param buf the input and output
+	 * @param off index of the first char to encrypt
+	 * @param len the number of chars to encrypt
+	 * @throws IllegalStateException if any of the parts of the Machine is {@code null}
+	 * @throws IndexOutOfBoundsException if the range is outside of {@code buf}
+	 * @see EnigmaMachine#encrypt(char[], int, char[], int, int)
+	 */
+	public void encrypt(char[] buf, int off, int len){
+		encrypt(buf, off, buf, off, len);
+	}
+	
+	/**
+	 * Encrypts all the remaining chars of {@code src} into {@code dst}. Both buffers are advanced by the number of chars encrypted.
+	 * @param src the input
+	 * @param dst where the output is written
+	 * @throws IllegalStateException if any of the parts of the Machine is {@code null}
+	 * @throws BufferOverflowException if {@code dst} doesn't have enough space left (nothing is encrypted)
+	 * @see EnigmaMachine#encrypt(char[], int, char[], int, int)
+	 */
+	public void encrypt(CharBuffer src, CharBuffer dst){
+		int len = src.remaining();
+		if (dst.remaining() < len)
+			throw new BufferOverflowException();
+		
+		if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()){
+			encrypt(src.array(), src.arrayOffset() + src.position(), dst.array(), dst.arrayOffset() + dst.position(), len);
+			src.position(src.position() + len);
+			dst.position(dst.position() + len);
+			return;
+		}
+		
+		checkParts();
+		EnigmaMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		EncryptEvent event = beginBulk();
+		
+		if (stepper == null){
+			for (int i = 0; i < len; i++)
+				dst.put(encryptFast(src.get()));
+		} else {
+			for (int i = 0; i < len; i++)
+				dst.put(encryptStepped(src.get()));
+		}
+		
+		finishBulk(event, len, metrics, start, metrics == null ? 0 : countLetters(dst, dst.position() - len, len));
+	}
+	
+	/**
+	 * Encrypts {@code len} ASCII chars of {@code src} starting at {@code srcOff} into {@code dst} starting at {@code dstOff}.
+	 * Bytes that are not ASCII letters are copied as they are.
+	 * <p>
+	 * {@code src} and {@code dst} can be the same array to encrypt in place (with {@code srcOff == dstOff})
+	 * @param src the input
+	 * @param srcOff index of the first byte to encrypt
+	 * @param dst where the output is written
+	 * @param dstOff index in {@code dst} of the first encrypted byte
+	 * @param len the number of bytes to encrypt
+	 * @throws IllegalStateException if any of the parts of the Machine is {@code null}
+	 * @throws IndexOutOfBoundsException if a range is outside of its array
+	 * @see EnigmaMachine#encrypt(char[], int, char[], int, int)
+	 */
+	public void encrypt(byte[] src, int srcOff, byte[] dst, int dstOff, int len){
+		checkRange(src.length, srcOff, len);
+		checkRange(dst.length, dstOff, len);
+		checkParts();
+		EnigmaMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		EncryptEvent event = beginBulk();
+		
+		if (stepper == null){
+			for (int i = 0; i < len; i++)
+				dst[dstOff + i] = (byte)encryptFast((char)(src[srcOff + i] & 0xFF));
+		} else {
+			for (int i = 0; i < len; i++)
+				dst[dstOff + i] = (byte)encryptStepped((char)(src[srcOff + i] & 0xFF));
+		}
+		
+		finishBulk(event, len, metrics, start, metrics == null ? 0 : countLetters(dst, dstOff, len));
+	}
+	
+	/**
+	 * Encrypts {@code len} ASCII chars of {@code buf} starting at {@code off} in place
+	 * @param buf the input and output
+	 * @param off index of the first byte to encrypt
+	 * @param len the number of bytes to encrypt
+	 * @throws IllegalStateException if any of the parts of the Machine is {@code null}
+	 * @throws IndexOutOfBoundsException if the range is outside of {@code buf}
+	 * @see EnigmaMachine#encrypt(byte[], int, byte[], int, int)
+	 */
+	public void encrypt(byte[] buf, int off, int len){
+		encrypt(buf, off, buf, off, len);
+	}
+	
+	/**
+	 * Encrypts all the remaining ASCII chars of {@code src} into {@code dst}. Both buffers are advanced by the number of bytes encrypted.
+	 * @param src the input
+	 * @param dst where the output is written
+	 * @throws IllegalStateException if any of the parts of the Machine is {@code null}
+	 * @throws BufferOverflowException if {@code dst} doesn't have enough space left (nothing is encrypted)
+	 * @see EnigmaMachine#encrypt(byte[], int, byte[], int, int)
+	 */
+	public void encrypt(ByteBuffer src, ByteBuffer dst){
+		int len = src.remaining();
+		if (dst.remaining() < len)
+			throw new BufferOverflowException();
+		
+		if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()){
+			encrypt(src.array(), src.arrayOffset() + src.position(), dst.array(), dst.arrayOffset() + dst.position(), len);
+			src.position(src.position() + len);
+			dst.position(dst.position() + len);
+			return;
+		}
+		
+		checkParts();
+		EnigmaMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		EncryptEvent event = beginBulk();
+		
+		if (stepper == null){
+			for (int i = 0; i < len; i++)
+				dst.put((byte)encryptFast((char)(src.get() & 0xFF)));
+		} else {
+			for (int i = 0; i < len; i++)
+				dst.put((byte)encryptStepped((char)(src.get() & 0xFF)));
+		}
+		
+		finishBulk(event, len, metrics, start, metrics == null ? 0 : countLetters(dst, dst.position() - len, len));
+	}
+	
+	/**
+	 * @throws IndexOutOfBoundsException if {@code [off, off + len)} is not inside an array of length {@code length}
+	 */
+	private static void checkRange(int length, int off, int len){
+		if (off < 0 || len < 0 || off > length - len)
+			throw new IndexOutOfBoundsException("range [" + off + ", " + off + " + " + len + ") out of bounds for length " + length);
+	}
+	
+	/**
+	 * Moves the rotors to where they would be after encrypting {@code n} letters. This takes the same time for any {@code n}
+	 * except with Stepping.DOUBLE_STEP, which steps the rotors until their positions repeat (they repeat after at most
+	 * {@code 26^3} letters with 3 rotors) and then skips the whole cycles
+	 * @param n number of letters (can't be negative)
+	 * @throws IllegalStateException if any of the rotors is {@code null}
+	 * @throws IllegalArgumentException if {@code n} is negative
+	 * @see Rotor#advance(long)
+	 */
+	public void advance(long n){
+		for (Rotor r : rotor){
+			if (r == null)
+				throw new IllegalStateException();
+		}
+		if (n < 0)
+			throw new IllegalArgumentException();
 		
-		for (int i = 0; i < inputArr.length; i++){
-			result[i] = encrypt(inputArr[i]);
+		switch (stepping){
+		case COG_WHEEL:
+			rotor[rotor.length - 1].advance(n);
+			break;
+		case DOUBLE_STEP:
+			advanceDoubleStep(n);
+			break;
+		default:
+			advanceOdometer(n);
 		}
+	}
+	
+	/**
+	 * advance(long) for Stepping.DOUBLE_STEP. After every 26 letters the right rotor is back at the same position and
+	 * the positions of the other rotors only depend on where they were 26 letters before, so they repeat after at most
+	 * {@code 26^(rotors - 1)} turns of the right rotor. For a large {@code n} the turns are stepped until the positions
+	 * repeat (Brent's cycle detection, which only keeps one copy of the positions) and the whole cycles are skipped
+	 */
+	private void advanceDoubleStep(long n){
+		if (n > ScramblerTable.POSITIONS){
+			int[] seen = positions();
+			long power = 1, cycle = 0;
+			while (n >= 26){
+				skipDoubleStep(26);
+				n -= 26;
+				cycle++;
+				if (atPositions(seen)){
+					n %= 26 * cycle;
+					break;
+				}
+				if (cycle == power){
+					seen = positions();
+					power *= 2;
+					cycle = 0;
+				}
+			}
+		}
+		skipDoubleStep(n);
+	}
+	
+	/**
+	 * @return the current positions of the rotors
+	 */
+	private int[] positions(){
+		int[] positions = new int[rotor.length];
+		for (int i = 0; i < rotor.length; i++)
+			positions[i] = rotor[i].getCurrentPos();
+		return positions;
+	}
+	
+	/**
+	 * @return true if the rotors are at the positions
+	 */
+	private boolean atPositions(int[] positions){
+		for (int i = 0; i < rotor.length; i++){
+			if (rotor[i].getCurrentPos() != positions[i])
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Steps {@code n} letters with Stepping.DOUBLE_STEP. While no pawl is at a full turn position only the right rotor moves,
+	 * so it is moved to its next full turn position at once and only the letters around it are stepped one by one
+	 */
+	private void skipDoubleStep(long n){
+		Rotor right = rotor[rotor.length - 1];
+		int notches = right.notches();
+		boolean driven = rotor.length > 1 && !rotor[rotor.length - 2].isFixed() && notches != 0;
+		while (n > 0){
+			boolean pawl = false;
+			for (int i = 0; i < rotor.length - 1 && !pawl; i++)
+				pawl = !rotor[i].isFixed() && rotor[i + 1].isAtNotch();
+			if (pawl){
+				stepDoubleStep();
+				n--;
+				continue;
+			}
+			if (!driven){
+				right.step(n);
+				return;
+			}
+			
+			int skip = 1;
+			int pos = right.getCurrentPos() - 1;
+			while ((notches >>> (pos + skip) % 26 & 1) == 0)
+				skip++;
+			if (skip > n)
+				skip = (int)n;
+			right.step(skip);
+			n -= skip;
+		}
+	}
+	
+	/**
+	 * advance(long) for Stepping.ODOMETER: adds {@code n} to the positions as a number in base 26
+	 */
+	private void advanceOdometer(long n){
+		for (int i = rotor.length - 1; i >= 0 && n > 0 && !rotor[i].isFixed(); i--){
+			int start = rotor[i].getCurrentPos() - 1;
+			int rest = (int)(n % 26);
+			rotor[i].step(rest);
+			n = n / 26 + (start + rest >= 26 ? 1 : 0);
+		}
+	}
+	
+	/**
+	 * Same as encrypt(String) but large inputs are split in chunks that are encrypted in parallel (on the common ForkJoinPool)
+	 * @param input the input to encrypt
+	 * @return the encrypted string
+	 * @throws IllegalStateException if any of the parts of the Machine is {@code null}
+	 * @see EnigmaMachine#parallelEncrypt(char[], int, char[], int, int, ForkJoinPool)
+	 */
+	public String parallelEncrypt(String input){
+		char [] result = input.toCharArray();
+		parallelEncrypt(result, 0, result, 0, result.length, ForkJoinPool.commonPool());
 		
 		return new String(result);
 	}
 	
+	/**
+	 * Same as encrypt(char[], int, char[], int, int) but large inputs are split in chunks that are encrypted in parallel.
+	 * The output and the positions of the rotors afterwards are the same as encrypting sequentially.
+	 * <p>
+	 * Each chunk is encrypted by a fork of this machine moved (with advance(long)) by the number of letters before the chunk.
+	 * Inputs shorter than PARALLEL_THRESHOLD are encrypted sequentially, and so is everything if the pool has only one thread, a stepper or a trace is attached
+	 * or the rotors are connected to rotors outside of the machine
+	 * @param src the input
+	 * @param srcOff index of the first char to encrypt
+	 * @param dst where the output is written
+	 * @param dstOff index in {@code dst} of the first encrypted char
+	 * @param len the number of chars to encrypt
+	 * @param pool the pool the chunks are encrypted in
+	 * @throws IllegalStateException if any of the parts of the Machine is {@code null}
+	 * @throws IndexOutOfBoundsException if a range is outside of its array
+	 */
+	public void parallelEncrypt(final char[] src, final int srcOff, final char[] dst, final int dstOff, int len, ForkJoinPool pool){
+		checkRange(src.length, srcOff, len);
+		checkRange(dst.length, dstOff, len);
+		checkParts();
+		
+		EnigmaMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		
+		int chunks = Math.min(len / PARALLEL_THRESHOLD, pool.getParallelism() * 4);
+		if (chunks < 2 || pool.getParallelism() < 2 || stepper != null || trace != null || !canFork()){
+			encrypt(src, srcOff, dst, dstOff, len);
+			return;
+		}
+		
+		// the number of letters in each chunk tells how far to advance the machine of the next one
+		final int[] chunkStart = new int[chunks + 1];
+		List<Callable<Long>> counts = new ArrayList<Callable<Long>>();
+		for (int i = 0; i <= chunks; i++)
+			chunkStart[i] = (int)((long)len * i / chunks);
+		for (int i = 0; i < chunks; i++){
+			final int chunk = i;
+			counts.add(new Callable<Long>() {
+				public Long call() {
+					return countLetters(src, srcOff + chunkStart[chunk], chunkStart[chunk + 1] - chunkStart[chunk]);
+				}
+			});
+		}
+		List<Long> letters = invokeAll(pool, counts);
+		
+		if (compiled && (rotor.length == 3 || (rotor.length == 4 && leftNeverTurns())) && !isScramblerCurrent())
+			buildScrambler();
+		
+		long lettersBefore = 0;
+		List<Callable<Long>> encryptions = new ArrayList<Callable<Long>>();
+		for (int i = 0; i < chunks; i++){
+			final int chunk = i;
+			final EnigmaMachine copy = fork();
+			copy.advance(lettersBefore);
+			encryptions.add(new Callable<Long>() {
+				public Long call() {
+					int start = chunkStart[chunk];
+					copy.encrypt(src, srcOff + start, dst, dstOff + start, chunkStart[chunk + 1] - start);
+					return 0L;
+				}
+			});
+			lettersBefore += letters.get(i);
+		}
+		invokeAll(pool, encryptions);
+		
+		advance(lettersBefore);
+		// the forks don't have the metrics
+		if (metrics != null)
+			metrics.recordMessage(len, lettersBefore, System.nanoTime() - start);
+	}
+	
+	/**
+	 * @return the number of chars in the range that move the rotors (letters)
+	 */
+	private static long countLetters(char[] src, int off, int len){
+		long count = 0;
+		for (int i = off; i < off + len; i++){
+			if (isLetter(src[i]))
+				count++;
+		}
+		return count;
+	}
+	
+	private static long countLetters(byte[] src, int off, int len){
+		long count = 0;
+		for (int i = off; i < off + len; i++){
+			if (isLetter(src[i]))
+				count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Same as countLetters(char[], int, int) with absolute gets (the position of the buffer is not changed)
+	 */
+	private static long countLetters(CharBuffer src, int off, int len){
+		long count = 0;
+		for (int i = off; i < off + len; i++){
+			if (isLetter(src.get(i)))
+				count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Same as countLetters(byte[], int, int) with absolute gets (the position of the buffer is not changed)
+	 */
+	private static long countLetters(ByteBuffer src, int off, int len){
+		long count = 0;
+		for (int i = off; i < off + len; i++){
+			if (isLetter(src.get(i)))
+				count++;
+		}
+		return count;
+	}
+	
+	private static boolean isLetter(int c){
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+	}
+	
+	/**
+	 * Runs the tasks in the pool and waits for all of them
+	 * @return the results of the tasks in order
+	 */
+	private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks){
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			for (Future<T> future : pool.invokeAll(tasks))
+				results.add(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while encrypting", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		return results;
+	}
+	
+	/**
+	 * @return whether fork() can copy the rotors. It can if the rotors are different objects and each one is only
+	 * connected to the rotor on its left (or nothing)
+	 */
+	boolean canFork(){
+		for (int i = 0; i < rotor.length; i++){
+			if (rotor[i] == null)
+				return false;
+			for (int j = 0; j < i; j++){
+				if (rotor[j] == rotor[i])
+					return false;
+			}
+			Rotor connection = rotor[i].getConnection();
+			if (connection != null && (i == 0 || connection != rotor[i - 1]))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Copies the machine. The fork has its own rotors (at the same positions, sharing the wiring) and its own plugboard
+	 * so encrypting with one doesn't change the other. The reflector and the compiled table are shared since they never change
+	 * (a fork whose ring settings are changed builds its own table).
+	 * The stepping is copied, the stepper, the trace and the metrics are not
+	 * @return the new machine
+	 * @throws IllegalStateException if any of the parts are {@code null} or the rotors are connected to rotors outside of the machine
+	 */
+	public EnigmaMachine fork(){
+		checkParts();
+		if (!canFork())
+			throw new IllegalStateException("the rotors are connected to rotors outside of the machine");
+		
+		Rotor[] rotors = new Rotor[rotor.length];
+		for (int i = 0; i < rotor.length; i++)
+			rotors[i] = rotor[i].copy(rotor[i].getConnection() == null ? null : rotors[i - 1]);
+		
+		EnigmaMachine fork = new EnigmaMachine(rotors, reflector, plugboard.copy());
+		fork.stepping = stepping;
+		fork.compiled = compiled;
+		fork.scrambler = scrambler;
+		fork.scramblerTables = scramblerTables;
+		fork.foldedPos = foldedPos;
+		fork.configId = configId;
+		return fork;
+	}
+	
 	@Override
 	public String toString(){
-		if (rotor[0] == null || rotor[1] == null || rotor[2] == null)
-			return "Empty";
+		for (Rotor r : rotor){
+			if (r == null)
+				return "Empty";
+		}
 		if (plugboard == null || reflector == null)
 			return "Empty";
 		
 		String str = "";
-		str += "1: " + (rotor[0].getCurrentPos() + 'A' - 1) + "\n";
-		str += "2: " + (rotor[1].getCurrentPos() + 'A' - 1) + "\n";
-		str += "3: " + (rotor[2].getCurrentPos() + 'A' - 1) + "\n";
+		for (int i = 0; i < rotor.length; i++)
+			str += (i + 1) + ": " + (rotor[i].getCurrentPos() + 'A' - 1) + "\n";
 		str += "Reflector: " + reflector.toString();
 		str += "Plugboard: " + plugboard.toString();
 		return str;
@@ -0,0 +1,152 @@
+package enigma.machine;
+
+/**
+ * The state of one user of a MachineConfig: the positions of the 3 rotors
+ * <p>
+ * Everything else is read from the config, so creating a session is cheap and sessions of the same config
+ * don't share any mutable state. A session encrypts exactly like {@link EnigmaMachine#encrypt(char)} on the
+ * machine the config was made from (MachineConfig.of only takes machines with Stepping.COG_WHEEL, so a session always
+ * steps like that). A session is not thread safe (but different sessions can be used by different threads)
+ * @see MachineConfig#newSession()
+ */
+public final class EnigmaSession {
+	private final MachineConfig config;
+	// positions of the rotors (0 - 25)
+	private int left;
+	private int middle;
+	private int right;
+	
+	EnigmaSession(MachineConfig config, int left, int middle, int right){
+		this.config = config;
+		setPositions(left, middle, right);
+	}
+	
+	/**
+	 * @return the config of the session
+	 */
+	public MachineConfig getConfig(){
+		return config;
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the current position of the rotor (1 - 26)
+	 */
+	public int getPosition(int rotorNum){
+		switch (rotorNum){
+		case 0: return left + 1;
+		case 1: return middle + 1;
+		case 2: return right + 1;
+		default: throw new IndexOutOfBoundsException();
+		}
+	}
+	
+	/**
+	 * @param left position of rotor[0] (1 - 26)
+	 * @param middle position of rotor[1] (1 - 26)
+	 * @param right position of rotor[2] (1 - 26)
+	 */
+	public void setPositions(int left, int middle, int right){
+		if (left < 1 || left > 26 || middle < 1 || middle > 26 || right < 1 || right > 26)
+			throw new IllegalArgumentException();
+		this.left = left - 1;
+		this.middle = middle - 1;
+		this.right = right - 1;
+	}
+	
+	/**
+	 * Moves the rotors back to the starting positions of the config
+	 */
+	public void reset(){
+		setPositions(config.getStartPosition(0), config.getStartPosition(1), config.getStartPosition(2));
+	}
+	
+	/**
+	 * Encrypts a char. Anything that is not a letter is returned as it is and doesn't move the rotors
+	 * @param input the input to be encrypted
+	 * @return the encrypted char
+	 */
+	public char encrypt(char input){
+		if (input >= 'A' && input <= 'Z')
+			return (char)(encrypt(input - 'A') + 'A');
+		else if (input >= 'a' && input <= 'z')
+			return (char)(encrypt(input - 'a') + 'a');
+		else
+			return input;
+	}
+	
+	/**
+	 * Encrypts a whole string
+	 * @param input the input to encrypt
+	 * @return the encrypted string
+	 */
+	public String encrypt(String input){
+		char [] result = input.toCharArray();
+		encrypt(result, 0, result, 0, result.length);
+		return new String(result);
+	}
+	
+	/**
+	 * Same as {@link EnigmaMachine#encrypt(char[], int, char[], int, int)}
+	 * @param src the input
+	 * @param srcOff index of the first char to encrypt
+	 * @param dst where the output is written
+	 * @param dstOff index in {@code dst} of the first encrypted char
+	 * @param len the number of chars to encrypt
+	 * @throws IndexOutOfBoundsException if a range is outside of its array
+	 */
+	public void encrypt(char[] src, int srcOff, char[] dst, int dstOff, int len){
+		if (srcOff < 0 || dstOff < 0 || len < 0 || srcOff > src.length - len || dstOff > dst.length - len)
+			throw new IndexOutOfBoundsException();
+		
+		for (int i = 0; i < len; i++)
+			dst[dstOff + i] = encrypt(src[srcOff + i]);
+	}
+	
+	/**
+	 * Same as {@link EnigmaMachine#encrypt(byte[], int, byte[], int, int)}
+	 * @param src the input
+	 * @param srcOff index of the first byte to encrypt
+	 * @param dst where the output is written
+	 * @param dstOff index in {@code dst} of the first encrypted byte
+	 * @param len the number of bytes to encrypt
+	 * @throws IndexOutOfBoundsException if a range is outside of its array
+	 */
+	public void encrypt(byte[] src, int srcOff, byte[] dst, int dstOff, int len){
+		if (srcOff < 0 || dstOff < 0 || len < 0 || srcOff > src.length - len || dstOff > dst.length - len)
+			throw new IndexOutOfBoundsException();
+		
+		for (int i = 0; i < len; i++)
+			dst[dstOff + i] = (byte)encrypt((char)(src[srcOff + i] & 0xFF));
+	}
+	
+	/**
+	 * Steps the rotors and encrypts a letter
+	 * @param letter the letter (0 - 25)
+	 * @return the encrypted letter (0 - 25)
+	 */
+	private int encrypt(int letter){
+		// same as rotor[2].rotate() on a machine
+		int rightPos = right;
+		if (++right == 26)
+			right = 0;
+		if ((config.rightNotches() >>> rightPos & 1) != 0){
+			int middlePos = middle;
+			if (++middle == 26)
+				middle = 0;
+			if ((config.middleNotches() >>> middlePos & 1) != 0){
+				if (++left == 26)
+					left = 0;
+			}
+		}
+		
+		letter = config.plug(letter);
+		letter = config.scramble(letter, left, middle, right);
+		return config.plug(letter);
+	}
+	
+	@Override
+	public String toString(){
+		return config.toString() + " at " + (char)(left + 'A') + (char)(middle + 'A') + (char)(right + 'A');
+	}
+}
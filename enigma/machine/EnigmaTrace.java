@@ -0,0 +1,357 @@
+package enigma.machine;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Records every stage of the encryption of each letter, without calling anything or allocating
+ * <p>
+ * A trace is attached to a machine with {@link EnigmaMachine#setTrace(EnigmaTrace)}. For every letter the machine
+ * writes one record to a ring buffer of bytes: the input, the positions of the rotors after they turned and the
+ * output of each of the {@link #STAGES} stages (in the order of EnigmaMachineStepper). When the buffer is full the
+ * oldest records are overwritten. Letters are numbered from 0 in the order they were encrypted.
+ * <p>
+ * The records can be replayed to an EnigmaMachineStepper afterwards, all of them or only a range, and the
+ * stepper gets the same calls (and the same rotor steps) as if it was attached to the machine. A trace can be
+ * written to and read from a stream in a compact binary form. A trace is not thread safe
+ * @see EnigmaMachineStepper
+ */
+public final class EnigmaTrace {
+	/**
+	 * Output of the plugboard (on the way in)
+	 */
+	public static final int PLUGBOARD_IN = 0;
+	/**
+	 * Output of rotor[2] (right to left)
+	 */
+	public static final int RIGHT_TO_LEFT_ROTOR3 = 1;
+	/**
+	 * Output of rotor[1] (right to left)
+	 */
+	public static final int RIGHT_TO_LEFT_ROTOR2 = 2;
+	/**
+	 * Output of rotor[0] (right to left)
+	 */
+	public static final int RIGHT_TO_LEFT_ROTOR1 = 3;
+	/**
+	 * Output of the reflector
+	 */
+	public static final int REFLECTOR = 4;
+	/**
+	 * Output of rotor[0] (left to right)
+	 */
+	public static final int LEFT_TO_RIGHT_ROTOR1 = 5;
+	/**
+	 * Output of rotor[1] (left to right)
+	 */
+	public static final int LEFT_TO_RIGHT_ROTOR2 = 6;
+	/**
+	 * Output of rotor[2] (left to right)
+	 */
+	public static final int LEFT_TO_RIGHT_ROTOR3 = 7;
+	/**
+	 * Output of the plugboard (on the way out), the encrypted letter
+	 */
+	public static final int PLUGBOARD_OUT = 8;
+	/**
+	 * The number of stages
+	 */
+	public static final int STAGES = 9;
+	/**
+	 * Size of a record in bytes: the input (ASCII), the 3 positions (1 - 26) and the output of every stage (0 - 25)
+	 */
+	public static final int RECORD_SIZE = 4 + STAGES;
+	
+	private static final int MAGIC = 0x454E5452; // "ENTR"
+	private static final int VERSION = 1;
+	private static final int INPUT = 0;
+	private static final int POSITIONS = 1;
+	private static final int OUTPUTS = 4;
+	
+	private final int capacity;
+	private final byte[] records;
+	private long count; // letters recorded
+	private int next; // offset of the next record
+	
+	/**
+	 * @param capacity the number of records kept (the last {@code capacity} letters)
+	 * @throws IllegalArgumentException if capacity is not positive or too large
+	 */
+	public EnigmaTrace(int capacity){
+		if (capacity < 1 || capacity > Integer.MAX_VALUE / RECORD_SIZE)
+			throw new IllegalArgumentException("capacity: " + capacity);
+		this.capacity = capacity;
+		this.records = new byte[capacity * RECORD_SIZE];
+	}
+	
+	/**
+	 * @return the number of records kept
+	 */
+	public int capacity(){
+		return capacity;
+	}
+	
+	/**
+	 * @return the number of letters recorded since the trace was created or cleared (the number of the next letter)
+	 */
+	public long count(){
+		return count;
+	}
+	
+	/**
+	 * @return the number of the oldest letter that is still in the trace
+	 */
+	public long first(){
+		return Math.max(0, count - capacity);
+	}
+	
+	/**
+	 * Removes all the records. The next letter is number 0
+	 */
+	public void clear(){
+		count = 0;
+		next = 0;
+	}
+	
+	/**
+	 * Starts the record of a letter (called by the machine)
+	 * @param input the input letter (ASCII)
+	 * @return the offset of the record, for stage(int, int, int)
+	 */
+	int append(char input, int left, int middle, int right){
+		int record = next;
+		next += RECORD_SIZE;
+		if (next == records.length)
+			next = 0;
+		count++;
+		
+		records[record + INPUT] = (byte)input;
+		records[record + POSITIONS] = (byte)left;
+		records[record + POSITIONS + 1] = (byte)middle;
+		records[record + POSITIONS + 2] = (byte)right;
+		return record;
+	}
+	
+	/**
+	 * Records the output of a stage (called by the machine)
+	 * @param record the offset returned by append
+	 * @param stage the stage
+	 * @param letter the output (0 - 25)
+	 */
+	void stage(int record, int stage, int letter){
+		records[record + OUTPUTS + stage] = (byte)letter;
+	}
+	
+	/**
+	 * @return the offset of the record of a letter
+	 * @throws IndexOutOfBoundsException if the letter is not in the trace
+	 */
+	private int offset(long index){
+		if (index < first() || index >= count)
+			throw new IndexOutOfBoundsException("letter " + index + " is not in [" + first() + ", " + count + ")");
+		return (int)(index % capacity) * RECORD_SIZE;
+	}
+	
+	/**
+	 * @param index the number of the letter
+	 * @return the input (in its original case)
+	 * @throws IndexOutOfBoundsException if the letter is not in the trace
+	 */
+	public char getInput(long index){
+		return (char)records[offset(index) + INPUT];
+	}
+	
+	/**
+	 * @param index the number of the letter
+	 * @param stage the stage ({@link #PLUGBOARD_IN} to {@link #PLUGBOARD_OUT})
+	 * @return the output of the stage (in the case of the input)
+	 * @throws IndexOutOfBoundsException if the letter is not in the trace or the stage doesn't exist
+	 */
+	public char getStage(long index, int stage){
+		if (stage < 0 || stage >= STAGES)
+			throw new IndexOutOfBoundsException("stage: " + stage);
+		int record = offset(index);
+		return toChar(records[record + OUTPUTS + stage], records[record + INPUT]);
+	}
+	
+	/**
+	 * @param index the number of the letter
+	 * @return the encrypted letter (in the case of the input)
+	 * @throws IndexOutOfBoundsException if the letter is not in the trace
+	 */
+	public char getOutput(long index){
+		return getStage(index, PLUGBOARD_OUT);
+	}
+	
+	/**
+	 * @param index the number of the letter
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the position of the rotor while the letter was encrypted (1 - 26)
+	 * @throws IndexOutOfBoundsException if the letter is not in the trace or the rotor doesn't exist
+	 */
+	public int getPosition(long index, int rotorNum){
+		if (rotorNum < 0 || rotorNum > 2)
+			throw new IndexOutOfBoundsException("rotor: " + rotorNum);
+		return records[offset(index) + POSITIONS + rotorNum];
+	}
+	
+	/**
+	 * Same as replay(long, long, EnigmaMachineStepper) for all the letters in the trace
+	 * @param stepper the stepper
+	 */
+	public void replay(EnigmaMachineStepper stepper){
+		replay(first(), count, stepper);
+	}
+	
+	/**
+	 * Calls the stepper for every letter in {@code [from, to)} like the machine would have if the stepper was attached.
+	 * If a method of the stepper returns false, the rest of that letter is skipped (the letters were already
+	 * encrypted, so unlike a stepper attached to the machine it can't stop the rotors from turning)
+	 * @param from the number of the first letter
+	 * @param to the number after the last letter
+	 * @param stepper the stepper
+	 * @throws IndexOutOfBoundsException if a letter of the range is not in the trace
+	 */
+	public void replay(long from, long to, EnigmaMachineStepper stepper){
+		if (from > to)
+			throw new IndexOutOfBoundsException("from " + from + " > to " + to);
+		if (from < to){
+			offset(from);
+			offset(to - 1);
+		}
+		for (long index = from; index < to; index++)
+			replay(offset(index), stepper);
+	}
+	
+	/**
+	 * Replays one record (same calls as EnigmaMachine.encryptStepped)
+	 */
+	private void replay(int record, EnigmaMachineStepper stepper){
+		byte input = records[record + INPUT];
+		int left = records[record + POSITIONS];
+		int middle = records[record + POSITIONS + 1];
+		int right = records[record + POSITIONS + 2];
+		
+		char in = (char)input;
+		if (!stepper.start(in) || !stepper.afterRotate(in))
+			return;
+		char out = toChar(records[record + OUTPUTS + PLUGBOARD_IN], input);
+		if (!stepper.afterPlugboard1(in, out))
+			return;
+		
+		in = out;
+		out = toChar(records[record + OUTPUTS + RIGHT_TO_LEFT_ROTOR3], input);
+		if (!stepper.afterRightToLeftRotor3(in, steps(in, out, right)))
+			return;
+		in = out;
+		out = toChar(records[record + OUTPUTS + RIGHT_TO_LEFT_ROTOR2], input);
+		if (!stepper.afterRightToLeftRotor2(in, steps(in, out, middle)))
+			return;
+		in = out;
+		out = toChar(records[record + OUTPUTS + RIGHT_TO_LEFT_ROTOR1], input);
+		if (!stepper.afterRightToLeftRotor1(in, steps(in, out, left)))
+			return;
+		
+		in = out;
+		out = toChar(records[record + OUTPUTS + REFLECTOR], input);
+		if (!stepper.afterReflector(in, out))
+			return;
+		
+		in = out;
+		out = toChar(records[record + OUTPUTS + LEFT_TO_RIGHT_ROTOR1], input);
+		if (!stepper.afterLeftToRightRotor1(in, steps(in, out, left)))
+			return;
+		in = out;
+		out = toChar(records[record + OUTPUTS + LEFT_TO_RIGHT_ROTOR2], input);
+		if (!stepper.afterLeftToRightRotor2(in, steps(in, out, middle)))
+			return;
+		in = out;
+		out = toChar(records[record + OUTPUTS + LEFT_TO_RIGHT_ROTOR3], input);
+		if (!stepper.afterLeftToRightRotor3(in, steps(in, out, right)))
+			return;
+		
+		in = out;
+		out = toChar(records[record + OUTPUTS + PLUGBOARD_OUT], input);
+		if (!stepper.afterPlugboard2(in, out))
+			return;
+		stepper.end(out);
+	}
+	
+	/**
+	 * Rebuilds the result of Rotor.translateRightToLeftSteps (or LeftToRight) from the input, the output and the position.
+	 * The wiring is not needed: the letter after the wiring is the output shifted back by the position
+	 */
+	private static char[] steps(char in, char out, int pos){
+		int inLetter = Character.toUpperCase(in) - 'A';
+		int outLetter = Character.toUpperCase(out) - 'A';
+		char[] steps = new char[5];
+		steps[0] = (char)(inLetter + 'A');
+		steps[1] = (char)((inLetter + pos - 1) % 26 + 'A');
+		steps[2] = (char)((outLetter + pos - 1) % 26 + 'A');
+		steps[3] = (char)(outLetter + 'A');
+		steps[4] = out;
+		return steps;
+	}
+	
+	/**
+	 * @return the letter in the case of input
+	 */
+	private static char toChar(byte letter, byte input){
+		return (char)(letter + (input >= 'a' ? 'a' : 'A'));
+	}
+	
+	/**
+	 * Writes the records in the trace (oldest first) and the number of the first one. The stream is not closed
+	 * @param out the stream
+	 * @throws IOException if the stream can't be written
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		long first = first();
+		int size = (int)(count - first);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeLong(first);
+		data.writeInt(size);
+		if (size > 0){
+			int start = offset(first);
+			int end = Math.min(records.length, start + size * RECORD_SIZE);
+			data.write(records, start, end - start);
+			data.write(records, 0, size * RECORD_SIZE - (end - start));
+		}
+		data.flush();
+	}
+	
+	/**
+	 * Reads a trace written by writeTo(OutputStream). Its capacity is the number of records in it (at least 1)
+	 * and the letters keep their numbers. The stream is not closed
+	 * @param in the stream
+	 * @return the trace
+	 * @throws IOException if the stream can't be read or is not a trace
+	 */
+	public static EnigmaTrace readFrom(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC || data.readInt() != VERSION)
+			throw new IOException("not a trace");
+		long first = data.readLong();
+		int size = data.readInt();
+		if (first < 0 || size < 0 || size > Integer.MAX_VALUE / RECORD_SIZE)
+			throw new IOException("not a trace");
+		
+		EnigmaTrace trace = new EnigmaTrace(Math.max(size, 1));
+		data.readFully(trace.records, 0, size * RECORD_SIZE);
+		// the records are at the start of the buffer so letter first must be at offset 0
+		if (size > 0 && first % size != 0){
+			byte[] records = trace.records.clone();
+			int shift = (int)(first % size) * RECORD_SIZE;
+			System.arraycopy(records, 0, trace.records, shift, records.length - shift);
+			System.arraycopy(records, records.length - shift, trace.records, 0, shift);
+		}
+		trace.count = first + size;
+		trace.next = (int)(trace.count % trace.capacity) * RECORD_SIZE;
+		return trace;
+	}
+}
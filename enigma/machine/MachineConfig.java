@@ -0,0 +1,297 @@
+package enigma.machine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable snapshot of how an EnigmaMachine is set up: the wiring and full turn positions of the rotors,
+ * the reflector, the plugboard and the starting positions of the rotors
+ * <p>
+ * A config is made once (for example from the daily key) and can then be shared by any number of threads.
+ * Each user of the config gets its own state from it:
+ * <ul>
+ * 		<li> {@link #newSession()} creates an EnigmaSession, which only holds the 3 positions of the rotors
+ * 		<li> {@link #newMachine()} creates a full EnigmaMachine (with its own rotors and plugboard)
+ * </ul>
+ * Both encrypt exactly like the machine the config was made from
+ * @see EnigmaSession
+ */
+public final class MachineConfig {
+	// the last id given to a config
+	private static final AtomicInteger ids = new AtomicInteger();
+	
+	// rotor i (0 is the one at the left) translates letter x to rightToLeft[i * 26 + x] at position 1
+	private final int[] rightToLeft;
+	private final int[] leftToRight;
+	// bit p is set if rotor[2] (or rotor[1]) turns the rotor on its left when it steps from position p + 1
+	// it is 0 if the rotor is not connected
+	private final int rightNotches;
+	private final int middleNotches;
+	private final int[] reflector;
+	private final int[] plugboard;
+	private final int[] startPositions; // 1 - 26
+	// computed once, a config is a key of the pools and caches
+	private final int hash;
+	private final int id = ids.incrementAndGet();
+	
+	// the parts the machines made by newMachine() are copied from
+	private final Rotor[] rotors;
+	private final Reflector reflectorPart;
+	private final Plugboard plugboardPart;
+	
+	private MachineConfig(Rotor[] rotors, Reflector reflector, Plugboard plugboard){
+		this.rotors = rotors;
+		this.reflectorPart = reflector;
+		this.plugboardPart = plugboard;
+		
+		rightToLeft = new int[3 * 26];
+		leftToRight = new int[3 * 26];
+		startPositions = new int[3];
+		for (int i = 0; i < 3; i++){
+			System.arraycopy(rotors[i].rightToLeftTable(), 0, rightToLeft, i * 26, 26);
+			System.arraycopy(rotors[i].leftToRightTable(), 0, leftToRight, i * 26, 26);
+			startPositions[i] = rotors[i].getCurrentPos();
+		}
+		rightNotches = rotors[2].getConnection() == null ? 0 : notches(rotors[2]);
+		middleNotches = rotors[1].getConnection() == null ? 0 : notches(rotors[1]);
+		
+		this.reflector = new int[26];
+		this.plugboard = new int[26];
+		for (int i = 0; i < 26; i++){
+			this.reflector[i] = reflector.map(i);
+			this.plugboard[i] = plugboard.map(i);
+		}
+		
+		int hash = Arrays.hashCode(rightToLeft);
+		hash = 31 * hash + Arrays.hashCode(this.reflector);
+		hash = 31 * hash + Arrays.hashCode(this.plugboard);
+		hash = 31 * hash + Arrays.hashCode(startPositions);
+		hash = 31 * hash + rightNotches;
+		hash = 31 * hash + middleNotches;
+		this.hash = hash;
+	}
+	
+	/**
+	 * Takes a snapshot of the machine. The current positions of the rotors become the starting positions
+	 * <p>
+	 * The machine is not changed and later changes to it don't affect the config
+	 * @param machine the machine
+	 * @return the config
+	 * @throws IllegalStateException if any of the parts are {@code null} or the rotors are connected to rotors outside of the machine
+	 * @throws IllegalArgumentException if the machine doesn't have 3 rotors or Stepping.COG_WHEEL or a rotor turns the next one more than once from the same position
+	 */
+	public static MachineConfig of(EnigmaMachine machine){
+		if (machine.getRotorCount() != 3)
+			throw new IllegalArgumentException("a config has 3 rotors, the machine has " + machine.getRotorCount());
+		if (machine.getStepping() != Stepping.COG_WHEEL)
+			throw new IllegalArgumentException("a config steps like " + Stepping.COG_WHEEL + ", the machine steps like " + machine.getStepping());
+		// the fork has its own copy of everything so the config doesn't share anything mutable
+		EnigmaMachine fork = machine.fork();
+		Rotor[] rotors = new Rotor[3];
+		for (int i = 0; i < 3; i++){
+			rotors[i] = fork.getRotor(i);
+			notches(rotors[i]);
+		}
+		
+		return new MachineConfig(rotors, fork.getReflector().copy(), fork.getPlugboard());
+	}
+	
+	/**
+	 * @return the full turn positions of the rotor as a bit set (bit p for position p + 1)
+	 * @throws IllegalArgumentException if a position is there twice
+	 */
+	private static int notches(Rotor rotor){
+		int notches = 0;
+		for (int pos : rotor.fullTurn()){
+			if ((notches & 1 << (pos - 1)) != 0)
+				throw new IllegalArgumentException("rotor " + rotor.getName() + " turns the next rotor twice at position " + pos);
+			notches |= 1 << (pos - 1);
+		}
+		return notches;
+	}
+	
+	/**
+	 * @return a session at the starting positions
+	 */
+	public EnigmaSession newSession(){
+		return new EnigmaSession(this, startPositions[0], startPositions[1], startPositions[2]);
+	}
+	
+	/**
+	 * @param left position of rotor[0] (1 - 26)
+	 * @param middle position of rotor[1] (1 - 26)
+	 * @param right position of rotor[2] (1 - 26)
+	 * @return a session at the positions
+	 */
+	public EnigmaSession newSession(int left, int middle, int right){
+		return new EnigmaSession(this, left, middle, right);
+	}
+	
+	/**
+	 * @return a new machine at the starting positions that encrypts like this config.
+	 * It has its own rotors and plugboard so it can be changed without changing the config
+	 */
+	public EnigmaMachine newMachine(){
+		Rotor left = rotors[0].copy(null);
+		Rotor middle = rotors[1].copy(rotors[1].getConnection() == null ? null : left);
+		Rotor right = rotors[2].copy(rotors[2].getConnection() == null ? null : middle);
+		left.setCurrentPos(startPositions[0]);
+		middle.setCurrentPos(startPositions[1]);
+		right.setCurrentPos(startPositions[2]);
+		
+		EnigmaMachine machine = new EnigmaMachine(new Rotor[] {left, middle, right}, reflectorPart.copy(), plugboardPart.copy());
+		machine.setConfigId(id);
+		return machine;
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the starting position of the rotor (1 - 26)
+	 */
+	public int getStartPosition(int rotorNum){
+		return startPositions[rotorNum];
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the ring setting of the rotor (1 - 26)
+	 */
+	public int getRingSetting(int rotorNum){
+		return rotors[rotorNum].getRingSetting();
+	}
+	
+	/**
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the name of the rotor
+	 */
+	public String getRotorName(int rotorNum){
+		return rotors[rotorNum].getName();
+	}
+	
+	/**
+	 * @return the name of the reflector
+	 */
+	public String getReflectorName(){
+		return reflectorPart.getName();
+	}
+	
+	/**
+	 * Sends a letter through the rotors, reflector and back without the plugboard
+	 * @param letter the letter (0 - 25)
+	 * @param left position of rotor[0] (0 - 25)
+	 * @param middle position of rotor[1] (0 - 25)
+	 * @param right position of rotor[2] (0 - 25)
+	 * @return the output (0 - 25)
+	 */
+	int scramble(int letter, int left, int middle, int right){
+		letter = translate(rightToLeft, 52, letter, right);
+		letter = translate(rightToLeft, 26, letter, middle);
+		letter = translate(rightToLeft, 0, letter, left);
+		letter = reflector[letter];
+		letter = translate(leftToRight, 0, letter, left);
+		letter = translate(leftToRight, 26, letter, middle);
+		return translate(leftToRight, 52, letter, right);
+	}
+	
+	/**
+	 * Same as Rotor.translateRightToLeft(int, int) for the table that starts at {@code offset}
+	 */
+	private static int translate(int[] table, int offset, int letter, int shift){
+		letter += shift;
+		if (letter > 25)
+			letter -= 26;
+		letter = table[offset + letter] - shift;
+		return letter < 0 ? letter + 26 : letter;
+	}
+	
+	/**
+	 * @param letter the letter (0 - 25)
+	 * @return the letter through the plugboard (0 - 25)
+	 */
+	int plug(int letter){
+		return plugboard[letter];
+	}
+	
+	/**
+	 * @return the tables of the rotors (rotor i at position 1 translates x to {@code rightToLeftTable()[i * 26 + x]}). Not a copy
+	 */
+	int[] rightToLeftTable(){
+		return rightToLeft;
+	}
+	
+	/**
+	 * @return the tables of the rotors in the other direction, like rightToLeftTable(). Not a copy
+	 */
+	int[] leftToRightTable(){
+		return leftToRight;
+	}
+	
+	/**
+	 * @return the wiring of the reflector. Not a copy
+	 */
+	int[] reflectorTable(){
+		return reflector;
+	}
+	
+	/**
+	 * @return the wiring of the plugboard. Not a copy
+	 */
+	int[] plugboardTable(){
+		return plugboard;
+	}
+	
+	/**
+	 * @return the full turn positions of rotor[2] as a bit set (0 if it is not connected to rotor[1])
+	 */
+	int rightNotches(){
+		return rightNotches;
+	}
+	
+	/**
+	 * @return the full turn positions of rotor[1] as a bit set (0 if it is not connected to rotor[0])
+	 */
+	int middleNotches(){
+		return middleNotches;
+	}
+	
+	@Override
+	public boolean equals(Object obj){
+		if (this == obj)
+			return true;
+		if (!(obj instanceof MachineConfig))
+			return false;
+		MachineConfig other = (MachineConfig)obj;
+		return hash == other.hash && rightNotches == other.rightNotches && middleNotches == other.middleNotches
+				&& Arrays.equals(startPositions, other.startPositions)
+				&& Arrays.equals(rightToLeft, other.rightToLeft)
+				&& Arrays.equals(reflector, other.reflector)
+				&& Arrays.equals(plugboard, other.plugboard);
+	}
+	
+	@Override
+	public int hashCode(){
+		return hash;
+	}
+	
+	/**
+	 * The id tells the configs made in this JVM apart without anything of the key in it (unlike hashCode()),
+	 * so it can be recorded like in EncryptEvent. Two equal configs made one after the other have different ids
+	 * @return the number of the config (1 for the first one made)
+	 */
+	public int getId(){
+		return id;
+	}
+	
+	@Override
+	public String toString(){
+		String str = "";
+		for (int i = 0; i < 3; i++)
+			str += rotors[i].getName() + ":" + (char)(startPositions[i] + 'A' - 1) + " ";
+		str += reflectorPart.getName();
+		for (int i = 0; i < 26; i++){
+			if (plugboard[i] > i)
+				str += " " + (char)(i + 'A') + (char)(plugboard[i] + 'A');
+		}
+		return str;
+	}
+}
@@ -26,7 +26,7 @@ public class Plugboard {
 	 */
 	public char map(char input){
 		boolean inputWasLowerCase = false;
-		if (input > 'a' && input < 'z'){
+		if (input >= 'a' && input <= 'z'){
 			inputWasLowerCase = true;
 		} else if (input < 'A' || input > 'Z') // not a char
 			return input;
@@ -68,6 +68,24 @@ public class Plugboard {
 		map[indexOfB] = a;
 	}
 
+	/**
+	 * Same as map(char) for a letter index
+	 * @param letter the letter to map (0 - 25)
+	 * @return the mapped letter (0 - 25)
+	 */
+	int map(int letter){
+		return map[letter] - 'A';
+	}
+	
+	/**
+	 * @return a plugboard with the same pairs
+	 */
+	Plugboard copy(){
+		Plugboard copy = new Plugboard();
+		copy.map = map.clone();
+		return copy;
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
 	 */
@@ -33,6 +33,8 @@ public class Reflector {
 	 * 		<li> Reflector A
 	 * 		<li> Reflector B
 	 * 		<li> Reflector C
+	 * 		<li> Reflector B Thin (M4, used with BETA or GAMMA)
+	 * 		<li> Reflector C Thin (M4, used with BETA or GAMMA)
 	 * </ul>
 	 * @return the new reflector or {@code null} if there is an error
 	 */
@@ -44,6 +46,10 @@ public class Reflector {
 			r = createReflector("YRUHQSLDPXNGOKMIEBFZCWVJAT");
 		else if (name.equals("Reflector C"))
 			r = createReflector("FVPJIAOYEDRZXWGCTKUQSBNMHL");
+		else if (name.equals("Reflector B Thin"))
+			r = createReflector("ENKQAUYWJICOPBLMDXZVFTHRGS");
+		else if (name.equals("Reflector C Thin"))
+			r = createReflector("RDOBJNTKVEHMLFCWZAXGYIPSUQ");
 		else
 			throw new IllegalArgumentException();
 		
@@ -79,6 +85,44 @@ public class Reflector {
 			return input;
 	}
 
+	/**
+	 * Same as map(char) for a letter index
+	 * @param letter the letter to map (0 - 25)
+	 * @return the mapped letter (0 - 25)
+	 */
+	int map(int letter){
+		return map[letter] - 'A';
+	}
+
+	/**
+	 * Folds a rotor that never turns into the reflector
+	 * @param rotor the rotor on the left of the others (its position and ring setting are used)
+	 * @return a reflector with the same name that maps like the rotor (right to left), this reflector and the rotor (left to right)
+	 */
+	Reflector fold(Rotor rotor){
+		int pos = rotor.getCurrentPos();
+		char[] folded = new char[26];
+		for (int letter = 0; letter < 26; letter++){
+			int out = rotor.translateRightToLeft(letter, pos);
+			out = map(out);
+			folded[letter] = (char)(rotor.translateLeftToRight(out, pos) + 'A');
+		}
+		Reflector r = new Reflector();
+		r.map = folded;
+		r.name = name;
+		return r;
+	}
+
+	/**
+	 * @return a reflector with the same mapping and name
+	 */
+	Reflector copy(){
+		Reflector copy = new Reflector();
+		copy.map = map;
+		copy.name = name;
+		return copy;
+	}
+
 	/**
 	 * @return the name
 	 */
@@ -1,11 +1,18 @@
 package enigma.machine;
 
+import java.util.Arrays;
+
 /**
  * A Rotor represents a physical rotor in an Enigma Machine
  * <p>
  * It starts out with an initial position and moves using the methods provided
  * <p>
- * A rotor's physical structure can bet set using the constructor but they cannot be changed later (except the position)
+ * A rotor's physical structure can bet set using the constructor but they cannot be changed later (except the position
+ * and the ring setting)
+ * <p>
+ * The ring setting turns the wiring against the letters of the ring. The positions and the full turn positions are letters
+ * of the ring, so they don't change. The ring setting is folded into the wiring tables when it is set, so translating a
+ * letter costs the same with any ring setting
  */
 public class Rotor {
 	String name;
@@ -14,10 +21,21 @@ public class Rotor {
 	String rightSide;
     // the first wiring is 1 ... 26
 	// leftSide[i] maps to rightSide[i]
+    
+    // the wiring as lookup tables (built once from leftSide and rightSide)
+    // letter x (0 - 25) entering from the right exits from the left at rightToLeft[x]. leftToRight is the inverse
+    private int[] rightToLeft;
+    private int[] leftToRight;
+    // the same tables with ring setting 1. rightToLeft[x] = (wiringRightToLeft[x - ringSetting + 1] + ringSetting - 1) mod 26
+    private int[] wiringRightToLeft;
+    private int[] wiringLeftToRight;
+    private int ringSetting = 1;
 
     // When this rotor completes a full turn, it turns the rotor in connection if there is one
     private Rotor connection;
-    private int[] fullTurn; // length 1 or 2
+    private int[] fullTurn; // length 1 or 2 (0 for the thin rotors)
+    private int notches; // bit p is set if p + 1 is in fullTurn
+    private boolean fixed; // never turned by the rotor on its right (Beta and Gamma)
     // Rotor completes a full when it steps from fullTurn to the next number
 
 
@@ -43,6 +61,8 @@ public class Rotor {
         Rotor newRotor = new Rotor("empty");
         newRotor.leftSide = to;
         newRotor.rightSide = from;
+        if (!newRotor.buildTables())
+            return null;
 
         newRotor.connection = connection;
 
@@ -52,9 +72,10 @@ public class Rotor {
         } else{
             newRotor.fullTurn = fullTurn.clone();
         }
-        for (int i = 0; i < fullTurn.length; i++){
-            if (fullTurn[i] < 1 || fullTurn[i] > 26)
+        for (int i = 0; i < newRotor.fullTurn.length; i++){
+            if (newRotor.fullTurn[i] < 1 || newRotor.fullTurn[i] > 26)
                 return null;
+            newRotor.notches |= 1 << (newRotor.fullTurn[i] - 1);
         }
 
         return newRotor;
@@ -72,6 +93,8 @@ public class Rotor {
      * <li> VI
      * <li> VII
      * <li> VIII
+     * <li> BETA (thin rotor of the M4, never turns)
+     * <li> GAMMA (thin rotor of the M4, never turns)
      * </ul>
      * @param connection a connection to another rotor. When this rotor completes a full turn it turns connection. Can be {@code null}
      * @return a new Rotor or {@code null} if there is an error
@@ -118,6 +141,13 @@ public class Rotor {
             fullTurn[0] = 'Z' - 'A' + 1;
             fullTurn[1] = 'M' - 'A' + 1;
         }
+        else if (rotorName.equals("BETA") || rotorName.equals("GAMMA")) {
+            to = rotorName.equals("BETA") ? "LEYJVCNIXWPBQMDRTAKZGFUHOS" : "FSOKANUERHMBTIYCWLQPZXVGJD";
+            Rotor r = Rotor.createRotor(from, to, connection, new int[0]);
+            r.setName(rotorName);
+            r.fixed = true;
+            return r;
+        }
         else
         	return null;
 
@@ -139,6 +169,33 @@ public class Rotor {
         // creates an empty Rotor
         this.currPos = 1;
     }
+    
+    /**
+     * Builds rightToLeft and leftToRight from leftSide and rightSide
+     * @return false if the sides are not both a permutation of the alphabet (in UPPERCASE)
+     */
+    private boolean buildTables(){
+        int[] r2l = new int[26];
+        int[] l2r = new int[26];
+        Arrays.fill(r2l, -1);
+        Arrays.fill(l2r, -1);
+        
+        for (int i = 0; i < 26; i++){
+            int right = rightSide.charAt(i) - 'A';
+            int left = leftSide.charAt(i) - 'A';
+            if (right < 0 || right > 25 || left < 0 || left > 25)
+                return false;
+            if (r2l[right] != -1 || l2r[left] != -1)
+                return false;
+            r2l[right] = left;
+            l2r[left] = right;
+        }
+        
+        rightToLeft = wiringRightToLeft = r2l;
+        leftToRight = wiringLeftToRight = l2r;
+        ringSetting = 1;
+        return true;
+    }
 
     /**
      * Create a Rotor with default settings starting at position 1
@@ -164,9 +221,11 @@ public class Rotor {
     public Rotor(int pos, Rotor connection){
         leftSide = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
         rightSide = "EKMFLGDQVZNTOWYHXUSPAIBRCJ";
+        buildTables();
 
         this.fullTurn = new int[1];
         this.fullTurn[0] = 17;
+        this.notches = 1 << 16;
 
         this.currPos = pos;
         if (pos < 1 || pos > 26){
@@ -209,6 +268,55 @@ public class Rotor {
     	setCurrentPos((int)(currPos - 'A' + 1));
     }
 
+    /**
+     * @return the ring setting of the rotor (1 - 26)
+     */
+    public int getRingSetting() {
+        return ringSetting;
+    }
+    
+    /**
+     * Set the ring setting (Ringstellung) of the rotor. The wiring tables are rebuilt once here
+     * @param ringSetting has to be an int between 1 and 26 (inclusive). 1 is the same as no ring setting
+     */
+    public void setRingSetting(int ringSetting){
+        if (ringSetting < 1 || ringSetting > 26)
+            throw new IllegalArgumentException();
+        
+        // new tables, a copy of the rotor can share the old ones
+        int shift = ringSetting - 1;
+        int[] r2l = new int[26];
+        int[] l2r = new int[26];
+        for (int i = 0; i < 26; i++){
+            int from = i - shift < 0 ? i - shift + 26 : i - shift;
+            r2l[i] = (wiringRightToLeft[from] + shift) % 26;
+            l2r[i] = (wiringLeftToRight[from] + shift) % 26;
+        }
+        rightToLeft = r2l;
+        leftToRight = l2r;
+        this.ringSetting = ringSetting;
+    }
+    
+    /**
+     * Set the ring setting of the rotor. 'A' corresponds to 1
+     * @param ringSetting ring setting as a letter. ringSetting must be a letter
+     */
+    public void setRingSetting(char ringSetting){
+        ringSetting = Character.toUpperCase(ringSetting);
+        if (ringSetting < 'A' || ringSetting > 'Z')
+            throw new IllegalArgumentException();
+        
+        setRingSetting(ringSetting - 'A' + 1);
+    }
+
+    /**
+     * @return {@code true} if the rotor is never turned by the rotor on its right (the thin rotors Beta and Gamma).
+     * EnigmaMachine doesn't connect a rotor to it
+     */
+    public boolean isFixed() {
+        return fixed;
+    }
+
     /**
      * @return the connection (to another Rotor)
      */
@@ -227,7 +335,7 @@ public class Rotor {
      * Rotates the rotor and if it rotates a full turn, rotates the next one
      */
     public void rotate(){
-    	if (connection != null){
+    	if (connection != null && (notches >>> (currPos - 1) & 1) != 0){
             for (int i = 0; i < fullTurn.length; i++){
                 if (currPos == fullTurn[i]) {
                     connection.rotate();
@@ -240,32 +348,188 @@ public class Rotor {
             currPos = 1;
     }
     
+    /**
+     * Same as calling rotate() {@code n} times but doesn't depend on {@code n}
+     * <p>
+     * The connection is advanced by the number of times this rotor steps from a full turn position
+     * @param n the number of steps (can't be negative)
+     */
+    public void advance(long n){
+        if (n < 0)
+            throw new IllegalArgumentException();
+        
+        int start = currPos - 1;
+        int rest = (int)(n % 26);
+        if (connection != null){
+            // the positions this rotor steps from are start, start + 1, ..., start + n - 1 (mod 26)
+            long turns = 0;
+            for (int i = 0; i < fullTurn.length; i++){
+                int distance = fullTurn[i] - 1 - start;
+                if (distance < 0)
+                    distance += 26;
+                turns += n / 26;
+                if (distance < rest)
+                    turns++;
+            }
+            if (turns > 0)
+                connection.advance(turns);
+        }
+        
+        currPos = (start + rest) % 26 + 1;
+    }
+    
+    /**
+     * Moves the rotor one step without turning the connection (for the Stepping of the machine)
+     */
+    void step(){
+        currPos = currPos == 26 ? 1 : currPos + 1;
+    }
+    
+    /**
+     * Moves the rotor {@code n} steps without turning the connection
+     * @param n the number of steps (can't be negative)
+     */
+    void step(long n){
+        currPos = (int)((currPos - 1 + n % 26) % 26) + 1;
+    }
+    
+    /**
+     * @return {@code true} if the current position is a full turn position
+     */
+    boolean isAtNotch(){
+        return (notches >>> (currPos - 1) & 1) != 0;
+    }
+    
+    /**
+     * @return the full turn positions as a bit set (bit p for position p + 1)
+     */
+    int notches(){
+        return notches;
+    }
+    
+    /**
+     * @return the full turn positions (not a copy, don't change it)
+     */
+    int[] fullTurn(){
+        return fullTurn;
+    }
+    
+    /**
+     * @return the table used to translate right to left, with the ring setting (not a copy, don't change it)
+     */
+    int[] rightToLeftTable(){
+        return rightToLeft;
+    }
+    
+    /**
+     * @return the table used to translate left to right, with the ring setting (not a copy, don't change it)
+     */
+    int[] leftToRightTable(){
+        return leftToRight;
+    }
+    
+    /**
+     * @param connection the connection of the copy
+     * @return a rotor with the same wiring, ring setting, full turn and position as this one (the wiring tables are shared)
+     */
+    Rotor copy(Rotor connection){
+        Rotor copy = new Rotor("empty");
+        copy.name = name;
+        copy.leftSide = leftSide;
+        copy.rightSide = rightSide;
+        copy.rightToLeft = rightToLeft;
+        copy.leftToRight = leftToRight;
+        copy.wiringRightToLeft = wiringRightToLeft;
+        copy.wiringLeftToRight = wiringLeftToRight;
+        copy.ringSetting = ringSetting;
+        copy.fullTurn = fullTurn;
+        copy.notches = notches;
+        copy.fixed = fixed;
+        copy.currPos = currPos;
+        copy.connection = connection;
+        return copy;
+    }
+    
     /**
      * Translates a character to another (based on the wiring of the rotor)
      * This simulates a signal coming from the left side of the rotor and exiting from the right side
+     * <p>
+     * Gives the same result as {@code translateRightToLeftSteps(input)[4]} without allocating the steps
      * @param input the character to translate
-     * @return the translated to a character
+     * @return the translated to a character or {@code input} if it is not a letter
      */
     public char translateRightToLeft(char input){
-    	char[] result = this.translateRightToLeftSteps(input);
-    	if (result == null)
-    		return input;
-    	else
-    		return result[result.length-1];
+        if (input >= 'A' && input <= 'Z')
+            return (char)(translateRightToLeft(input - 'A') + 'A');
+        else if (input >= 'a' && input <= 'z')
+            return (char)(translateRightToLeft(input - 'a') + 'a');
+        else
+            return input;
     }
     
     /**
      * Translates a character to another (based on the wiring of the rotor)
      * This simulates a signal coming from the right side of the rotor and exiting from the left side
+     * <p>
+     * Gives the same result as {@code translateLeftToRightSteps(input)[4]} without allocating the steps
      * @param input the character to translate
-     * @return the translated to a character
+     * @return the translated to a character or {@code input} if it is not a letter
      */
     public char translateLeftToRight(char input){
-    	char[] result = this.translateRightToLeftSteps(input);
-    	if (result == null)
-    		return input;
-    	else
-    		return result[result.length-1];
+        if (input >= 'A' && input <= 'Z')
+            return (char)(translateLeftToRight(input - 'A') + 'A');
+        else if (input >= 'a' && input <= 'z')
+            return (char)(translateLeftToRight(input - 'a') + 'a');
+        else
+            return input;
+    }
+    
+    /**
+     * Same as translateRightToLeft(char) for a letter index
+     * @param letter the letter to translate (0 - 25)
+     * @return the translated letter (0 - 25)
+     */
+    int translateRightToLeft(int letter){
+        return translateRightToLeft(letter, currPos);
+    }
+    
+    /**
+     * Same as translateRightToLeft(int) as if the rotor was at {@code pos}
+     * @param letter the letter to translate (0 - 25)
+     * @param pos the position of the rotor (1 - 26)
+     * @return the translated letter (0 - 25)
+     */
+    int translateRightToLeft(int letter, int pos){
+        int shift = pos - 1;
+        letter += shift;
+        if (letter > 25)
+            letter -= 26;
+        letter = rightToLeft[letter] - shift;
+        return letter < 0 ? letter + 26 : letter;
+    }
+    
+    /**
+     * Same as translateLeftToRight(char) for a letter index
+     * @param letter the letter to translate (0 - 25)
+     * @return the translated letter (0 - 25)
+     */
+    int translateLeftToRight(int letter){
+        return translateLeftToRight(letter, currPos);
+    }
+    
+    /**
+     * Same as translateLeftToRight(int) as if the rotor was at {@code pos}
+     * @param letter the letter to translate (0 - 25)
+     * @param pos the position of the rotor (1 - 26)
+     * @return the translated letter (0 - 25)
+     */
+    int translateLeftToRight(int letter, int pos){
+        int shift = pos - 1;
+        letter += shift;
+        if (letter > 25)
+            letter -= 26;
+        letter = leftToRight[letter] - shift;
+        return letter < 0 ? letter + 26 : letter;
     }
     
     
@@ -302,7 +566,7 @@ public class Rotor {
         }
         result[1] = (char)intChar;
         
-        intChar = (int)leftSide.charAt(rightSide.indexOf(intChar));
+        intChar = rightToLeft[intChar - 'A'] + 'A';
         
         result[2] = (char)intChar;
         
@@ -357,7 +621,7 @@ public class Rotor {
         
         results[1] = (char)intChar;
         
-        intChar = (int)rightSide.charAt(leftSide.indexOf(intChar));
+        intChar = leftToRight[intChar - 'A'] + 'A';
 
         results[2] = (char)intChar;
         
@@ -393,6 +657,6 @@ public class Rotor {
 
 	@Override
     public String toString(){
-        return "Rotor " + name + " at position " + currPos;
+        return "Rotor " + name + " at position " + currPos + (ringSetting == 1 ? "" : " with ring setting " + ringSetting);
     }
 }
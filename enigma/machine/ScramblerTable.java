@@ -0,0 +1,166 @@
+package enigma.machine;
+
+/**
+ * The path rotor3, rotor2, rotor1, reflector, rotor1, rotor2, rotor3 compiled into one table
+ * <p>
+ * For a fixed choice of rotors and reflector the path is a permutation that only depends on the
+ * positions of the 3 rotors, so all {@code 26^3} of them are computed once and each letter is then a single lookup
+ * <p>
+ * The table does not follow changes to the parts it was built from. The wiring of a Reflector never changes but
+ * a ring setting changes the wiring tables of a Rotor, so the table has to be rebuilt when a part is switched or a ring setting changes
+ * (EnigmaMachine checks both)
+ * <p>
+ * The positions of the rotors are packed into a state (see {@link #state(int, int, int)}) and {@link #next(int)}
+ * steps a state like a machine with rotor[2] connected to rotor[1] and rotor[1] connected to rotor[0].
+ * The table can be shared by any number of threads
+ * @see EnigmaMachine#compile()
+ */
+public final class ScramblerTable {
+	/**
+	 * Number of different positions of 3 rotors
+	 */
+	public static final int POSITIONS = 26 * 26 * 26;
+	
+	// the output for letter x (0 - 25) at state s is table[s * 26 + x]
+	private final byte[] table;
+	// bit p is set if the right (middle) rotor turns the next one when it steps from position p + 1
+	private final int rightNotches;
+	private final int middleNotches;
+	
+	private ScramblerTable(byte[] table, int rightNotches, int middleNotches){
+		this.table = table;
+		this.rightNotches = rightNotches;
+		this.middleNotches = middleNotches;
+	}
+	
+	/**
+	 * Builds the table for rotors and a reflector given by name
+	 * @param left the name of the rotor at the left (see {@link Rotor#createRotor(String, Rotor)})
+	 * @param middle the name of the middle rotor
+	 * @param right the name of the rotor at the right
+	 * @param reflector the name of the reflector (see {@link Reflector#createReflectorType(String)})
+	 * @return the new table
+	 * @throws IllegalArgumentException if a name is not valid
+	 */
+	public static ScramblerTable build(String left, String middle, String right, String reflector){
+		Rotor[] rotors = new Rotor[3];
+		String[] names = {left, middle, right};
+		for (int i = 0; i < 3; i++){
+			rotors[i] = Rotor.createRotor(names[i], null);
+			if (rotors[i] == null)
+				throw new IllegalArgumentException("invalid rotor name " + names[i]);
+		}
+		return build(rotors[0], rotors[1], rotors[2], Reflector.createReflectorType(reflector));
+	}
+	
+	/**
+	 * Builds the table for the rotors and reflector. The current positions of the rotors are not used (or changed)
+	 * @param left the rotor at the left (rotor[0])
+	 * @param middle the middle rotor (rotor[1])
+	 * @param right the rotor at the right (rotor[2])
+	 * @param reflector the reflector
+	 * @return the new table
+	 */
+	public static ScramblerTable build(Rotor left, Rotor middle, Rotor right, Reflector reflector){
+		byte[] table = new byte[POSITIONS * 26];
+		
+		int i = 0;
+		for (int leftPos = 1; leftPos <= 26; leftPos++){
+			for (int middlePos = 1; middlePos <= 26; middlePos++){
+				for (int rightPos = 1; rightPos <= 26; rightPos++){
+					for (int letter = 0; letter < 26; letter++){
+						int out = right.translateRightToLeft(letter, rightPos);
+						out = middle.translateRightToLeft(out, middlePos);
+						out = left.translateRightToLeft(out, leftPos);
+						out = reflector.map(out);
+						out = left.translateLeftToRight(out, leftPos);
+						out = middle.translateLeftToRight(out, middlePos);
+						out = right.translateLeftToRight(out, rightPos);
+						table[i++] = (byte)out;
+					}
+				}
+			}
+		}
+		
+		return new ScramblerTable(table, notches(right), notches(middle));
+	}
+	
+	/**
+	 * @return the full turn positions of the rotor as a bit set
+	 */
+	private static int notches(Rotor rotor){
+		int notches = 0;
+		for (int pos : rotor.fullTurn())
+			notches |= 1 << (pos - 1);
+		return notches;
+	}
+	
+	/**
+	 * @param leftPos position of the rotor at the left (1 - 26)
+	 * @param middlePos position of the middle rotor (1 - 26)
+	 * @param rightPos position of the rotor at the right (1 - 26)
+	 * @return the state used to index the table (0 - {@code POSITIONS - 1})
+	 */
+	public static int state(int leftPos, int middlePos, int rightPos){
+		return ((leftPos - 1) * 26 + (middlePos - 1)) * 26 + (rightPos - 1);
+	}
+	
+	/**
+	 * @param state a state (see {@link #state(int, int, int)})
+	 * @param rotorNum the rotor (0 is the one at the left)
+	 * @return the position of the rotor in the state (1 - 26)
+	 */
+	public static int position(int state, int rotorNum){
+		switch (rotorNum){
+		case 0: return state / (26 * 26) + 1;
+		case 1: return state / 26 % 26 + 1;
+		case 2: return state % 26 + 1;
+		default: throw new IndexOutOfBoundsException();
+		}
+	}
+	
+	/**
+	 * Steps the rotors (same as rotor[2].rotate() on a machine with connected rotors, which is Stepping.COG_WHEEL.
+	 * The other steppings are not supported by the table)
+	 * @param state the state before the step
+	 * @return the state after the step
+	 */
+	public int next(int state){
+		int left = state / (26 * 26);
+		int middle = state / 26 % 26;
+		int right = state % 26;
+		
+		if ((rightNotches >>> right & 1) != 0){
+			if ((middleNotches >>> middle & 1) != 0)
+				left = left == 25 ? 0 : left + 1;
+			middle = middle == 25 ? 0 : middle + 1;
+		}
+		right = right == 25 ? 0 : right + 1;
+		
+		return (left * 26 + middle) * 26 + right;
+	}
+	
+	/**
+	 * @param state the state of the rotors (see {@link #state(int, int, int)})
+	 * @param letter the letter to map (0 - 25)
+	 * @return the mapped letter (0 - 25)
+	 */
+	public int map(int state, int letter){
+		return table[state * 26 + letter];
+	}
+	
+	/**
+	 * Maps a char keeping its case. Anything that is not a letter is returned as it is
+	 * @param state the state of the rotors (see {@link #state(int, int, int)})
+	 * @param input the char to map
+	 * @return the mapped char
+	 */
+	char map(int state, char input){
+		if (input >= 'A' && input <= 'Z')
+			return (char)(table[state * 26 + input - 'A'] + 'A');
+		else if (input >= 'a' && input <= 'z')
+			return (char)(table[state * 26 + input - 'a'] + 'a');
+		else
+			return input;
+	}
+}
@@ -0,0 +1,29 @@
+package enigma.machine;
+
+/**
+ * How the rotors of an EnigmaMachine move before a letter is encrypted. The rotor at the right always moves one step
+ * <p>
+ * A fixed rotor (BETA and GAMMA, see {@link Rotor#isFixed()}) is never turned by any of them
+ * @see EnigmaMachine#setStepping(Stepping)
+ */
+public enum Stepping {
+	/**
+	 * Gear driven (Enigma G): a rotor turns its connection every time it steps from one of its full turn positions,
+	 * like {@link Rotor#rotate()} of the rotor at the right (so the rotors can also be connected to rotors outside of the machine).
+	 * This is the default and the only stepping of MachineConfig, EnigmaSession, EnigmaBatch, ScramblerTable and the analysis
+	 */
+	COG_WHEEL,
+
+	/**
+	 * Ratchets and pawls (Enigma I, M3, M4, K and Railway): the pawl between two rotors pushes both of them when the
+	 * one on the right is at a full turn position. So a middle rotor at its full turn position steps again with the
+	 * rotor on its left (the double step). The connections of the rotors are not used
+	 */
+	DOUBLE_STEP,
+
+	/**
+	 * Like a counter: a rotor turns the one on its left when it goes from Z back to A. The full turn positions
+	 * and the connections of the rotors are not used
+	 */
+	ODOMETER
+}
@@ -0,0 +1,50 @@
+package enigma.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for setting up a machine or a MachineConfig from parsed settings.
+ * Disabled unless a recording enables {@code enigma.Config}
+ * <p>
+ * Like EncryptEvent, only the rotor order and the reflector of the key are recorded
+ * @see enigma.commandline.settings.Settings
+ */
+@Name("enigma.Config")
+@Label("Config")
+@Category("Enigma")
+@Description("Machine or MachineConfig set up from settings")
+@StackTrace(false)
+public final class ConfigEvent extends Event {
+	@Label("Settings")
+	@Description("Number of settings applied")
+	private int settings;
+	
+	@Label("Rotor Order")
+	private String rotorOrder;
+	
+	@Label("Reflector")
+	private String reflector;
+	
+	@Label("Config Id")
+	@Description("Id of the MachineConfig (0 if the settings were only applied to a machine)")
+	private int configId;
+	
+	/**
+	 * Sets the fields before the event is committed
+	 * @param settings number of settings applied
+	 * @param rotorOrder names of the rotors (left to right)
+	 * @param reflector name of the reflector
+	 * @param configId id of the config or 0
+	 */
+	public void set(int settings, String[] rotorOrder, String reflector, int configId){
+		this.settings = settings;
+		this.rotorOrder = EncryptEvent.join(rotorOrder);
+		this.reflector = reflector;
+		this.configId = configId;
+	}
+}
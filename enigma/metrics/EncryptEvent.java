@@ -0,0 +1,77 @@
+package enigma.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one bulk encryption of a machine (a {@code char[]}, {@code byte[]} or buffer).
+ * Disabled unless a recording enables {@code enigma.Encrypt}; while it is disabled a machine checks {@link #isRecorded()}
+ * and doesn't make the event.
+ * <p>
+ * The rotor order and the reflector are recorded by name. Nothing else of the key is recorded: the config id is the
+ * id of the MachineConfig the machine was made from, a number counted up for every config, so it tells the
+ * messages of different configs apart without anything of the key in it
+ * @see enigma.machine.MachineConfig#getId()
+ */
+@Name("enigma.Encrypt")
+@Label("Encrypt")
+@Category("Enigma")
+@Description("Bulk encryption by an EnigmaMachine")
+@StackTrace(false)
+public final class EncryptEvent extends Event {
+	// looked up once, isRecorded() is called for every bulk encryption
+	private static final EventType TYPE = EventType.getEventType(EncryptEvent.class);
+	
+	@Label("Length")
+	@Description("Number of chars or bytes encrypted")
+	private long length;
+	
+	@Label("Rotor Order")
+	private String rotorOrder;
+	
+	@Label("Reflector")
+	private String reflector;
+	
+	@Label("Config Id")
+	@Description("Id of the MachineConfig the machine was made from (0 if it was not made from one)")
+	private int configId;
+	
+	/**
+	 * Sets the fields before the event is committed
+	 * @param length number of chars or bytes encrypted
+	 * @param rotorOrder names of the rotors (left to right)
+	 * @param reflector name of the reflector
+	 * @param configId id of the config the machine was made from or 0
+	 */
+	public void set(long length, String[] rotorOrder, String reflector, int configId){
+		this.length = length;
+		this.rotorOrder = join(rotorOrder);
+		this.reflector = reflector;
+		this.configId = configId;
+	}
+	
+	/**
+	 * @return true if a recording enables the event (checked before making one)
+	 */
+	public static boolean isRecorded(){
+		return TYPE.isEnabled();
+	}
+	
+	/**
+	 * @return the names separated by spaces
+	 */
+	static String join(String[] names){
+		StringBuilder str = new StringBuilder();
+		for (int i = 0; i < names.length; i++){
+			if (i > 0)
+				str.append(' ');
+			str.append(names[i]);
+		}
+		return str.toString();
+	}
+}
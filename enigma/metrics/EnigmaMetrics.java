@@ -0,0 +1,182 @@
+package enigma.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts what EnigmaMachines encrypt and how long bulk encryptions take
+ * <p>
+ * Metrics are attached to machines with {@code EnigmaMachine.setMetrics}, any number of machines (and threads) can
+ * share the same metrics. A machine without metrics only checks for {@code null} once per call, nothing is
+ * counted and the time is not read, so there is no cost in the loops. With metrics:
+ * <ul>
+ * 		<li> every char is counted as a letter or a passthrough (not a letter)
+ * 		<li> every bulk encryption (of a string, an array or a buffer) is counted as a message and its latency
+ * 			is recorded in a LatencyHistogram
+ * </ul>
+ * The counters are LongAdders so they can be updated by many threads. The metrics can be read directly, with a
+ * snapshot, through JMX (see {@link #register()}) or sent to a MetricsExporter
+ */
+public final class EnigmaMetrics implements EnigmaMetricsMXBean {
+	private final String name;
+	private final LongAdder letters = new LongAdder();
+	private final LongAdder passthroughs = new LongAdder();
+	private final LongAdder messages = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	
+	/**
+	 * @param name the name of the metrics (used for JMX and exporters)
+	 */
+	public EnigmaMetrics(String name){
+		if (name == null)
+			throw new NullPointerException();
+		this.name = name;
+	}
+	
+	/**
+	 * @return the name of the metrics
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	/**
+	 * Counts one char encrypted on its own
+	 * @param letter whether it was a letter
+	 */
+	public void recordChar(boolean letter){
+		if (letter)
+			letters.increment();
+		else
+			passthroughs.increment();
+	}
+	
+	/**
+	 * Counts one bulk encryption
+	 * @param chars the number of chars
+	 * @param letters how many of them were letters
+	 * @param nanos how long it took
+	 */
+	public void recordMessage(long chars, long letters, long nanos){
+		this.letters.add(letters);
+		this.passthroughs.add(chars - letters);
+		this.messages.increment();
+		this.latency.record(nanos);
+	}
+	
+	/**
+	 * @return the latency histogram of the bulk encryptions
+	 */
+	public LatencyHistogram getLatency(){
+		return latency;
+	}
+	
+	@Override
+	public long getCharacters(){
+		return letters.sum() + passthroughs.sum();
+	}
+	
+	@Override
+	public long getLetters(){
+		return letters.sum();
+	}
+	
+	@Override
+	public long getPassthroughs(){
+		return passthroughs.sum();
+	}
+	
+	@Override
+	public long getMessages(){
+		return messages.sum();
+	}
+	
+	@Override
+	public long getLatencyCount(){
+		return latency.getCount();
+	}
+	
+	@Override
+	public double getLatencyMean(){
+		return latency.getMean();
+	}
+	
+	@Override
+	public long getLatencyP50(){
+		return latency.getPercentile(50);
+	}
+	
+	@Override
+	public long getLatencyP99(){
+		return latency.getPercentile(99);
+	}
+	
+	@Override
+	public long getLatencyP999(){
+		return latency.getPercentile(99.9);
+	}
+	
+	@Override
+	public long getLatencyMax(){
+		return latency.getMax();
+	}
+	
+	@Override
+	public void reset(){
+		letters.reset();
+		passthroughs.reset();
+		messages.reset();
+		latency.reset();
+	}
+	
+	/**
+	 * @return the current values
+	 */
+	public MetricsSnapshot snapshot(){
+		return new MetricsSnapshot(System.currentTimeMillis(), letters.sum(), passthroughs.sum(), messages.sum(),
+				latency.counts(), latency.getMean(), latency.getMax());
+	}
+	
+	/**
+	 * Sends a snapshot to an exporter
+	 * @param exporter the exporter
+	 */
+	public void exportTo(MetricsExporter exporter){
+		exporter.export(name, snapshot());
+	}
+	
+	/**
+	 * @return the JMX name of the metrics: {@code enigma:type=EnigmaMetrics,name=<name>}
+	 * @throws JMException if the name is not valid in JMX
+	 */
+	public ObjectName getObjectName() throws JMException {
+		return ObjectName.getInstance("enigma:type=EnigmaMetrics,name=" + ObjectName.quote(name));
+	}
+	
+	/**
+	 * Registers the metrics in the platform MBean server
+	 * @return the name they are registered with
+	 * @throws JMException if they can't be registered (for example if the name is already used)
+	 */
+	public ObjectName register() throws JMException {
+		ObjectName objectName = getObjectName();
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+	
+	/**
+	 * Removes the metrics from the platform MBean server
+	 * @throws JMException if they are not registered
+	 */
+	public void unregister() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName());
+	}
+	
+	@Override
+	public String toString(){
+		return name + ": " + snapshot();
+	}
+}
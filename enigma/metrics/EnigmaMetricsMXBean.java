@@ -0,0 +1,33 @@
+package enigma.metrics;
+
+/**
+ * The JMX view of an EnigmaMetrics. Latencies are in nanoseconds
+ * @see EnigmaMetrics#register()
+ */
+public interface EnigmaMetricsMXBean {
+	
+	public long getCharacters();
+	
+	public long getLetters();
+	
+	public long getPassthroughs();
+	
+	public long getMessages();
+	
+	public long getLatencyCount();
+	
+	public double getLatencyMean();
+	
+	public long getLatencyP50();
+	
+	public long getLatencyP99();
+	
+	public long getLatencyP999();
+	
+	public long getLatencyMax();
+	
+	/**
+	 * Sets all the counters and the histogram back to 0
+	 */
+	public void reset();
+}
@@ -0,0 +1,155 @@
+package enigma.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies (in nanoseconds) with log-linear buckets, like HdrHistogram
+ * <p>
+ * Values below 32 have a bucket each. Above that, every power of 2 is split in 16 buckets of the same width,
+ * so a value is known within 1/16 (about 6%) of itself, for any value up to {@code Long.MAX_VALUE}.
+ * <p>
+ * Recording is lock free: the counts are striped over several arrays (a thread always uses the same one)
+ * so threads recording at the same time don't fight over the same counters. Reading sums the stripes, so a
+ * read while values are being recorded may miss some of them. The histogram is thread safe
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKETS = 16;
+	private static final int SUB_BUCKET_BITS = 4;
+	/**
+	 * The number of buckets
+	 */
+	public static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	
+	private final AtomicLongArray[] stripes;
+	private final int stripeMask;
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+	
+	public LatencyHistogram(){
+		int stripes = Integer.highestOneBit(Math.max(1, Math.min(64, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+		this.stripes = new AtomicLongArray[stripes];
+		for (int i = 0; i < stripes; i++)
+			this.stripes[i] = new AtomicLongArray(BUCKETS);
+		this.stripeMask = stripes - 1;
+	}
+	
+	/**
+	 * @param value a value (negative values are recorded as 0)
+	 * @return the index of its bucket
+	 */
+	static int bucket(long value){
+		if (value < 2 * SUB_BUCKETS)
+			return value < 0 ? 0 : (int)value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int)(value >>> shift & (SUB_BUCKETS - 1));
+	}
+	
+	/**
+	 * @param bucket the index of a bucket
+	 * @return the lowest value in the bucket
+	 */
+	static long lowestValue(int bucket){
+		if (bucket < 2 * SUB_BUCKETS)
+			return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		return (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+	}
+	
+	/**
+	 * @param bucket the index of a bucket
+	 * @return the highest value in the bucket
+	 */
+	static long highestValue(int bucket){
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowestValue(bucket + 1) - 1;
+	}
+	
+	/**
+	 * Records a value
+	 * @param nanos the value
+	 */
+	public void record(long nanos){
+		if (nanos < 0)
+			nanos = 0;
+		stripes[(int)Thread.currentThread().getId() & stripeMask].incrementAndGet(bucket(nanos));
+		sum.add(nanos);
+		long currentMax = max.get();
+		while (nanos > currentMax && !max.compareAndSet(currentMax, nanos))
+			currentMax = max.get();
+	}
+	
+	/**
+	 * @return the count of every bucket (summed over the stripes)
+	 */
+	long[] counts(){
+		long[] counts = new long[BUCKETS];
+		for (AtomicLongArray stripe : stripes){
+			for (int i = 0; i < BUCKETS; i++)
+				counts[i] += stripe.get(i);
+		}
+		return counts;
+	}
+	
+	/**
+	 * @return the number of values recorded
+	 */
+	public long getCount(){
+		long count = 0;
+		for (long c : counts())
+			count += c;
+		return count;
+	}
+	
+	/**
+	 * @return the mean of the values recorded (0 if there are none)
+	 */
+	public double getMean(){
+		long count = getCount();
+		return count == 0 ? 0 : (double)sum.sum() / count;
+	}
+	
+	/**
+	 * @return the largest value recorded (0 if there are none)
+	 */
+	public long getMax(){
+		return max.get();
+	}
+	
+	/**
+	 * @param percentile the percentile (0 - 100)
+	 * @return the highest value of the bucket the percentile is in, or the max if it is lower (0 if nothing was recorded)
+	 */
+	public long getPercentile(double percentile){
+		return Math.min(percentile(counts(), percentile), getMax());
+	}
+	
+	static long percentile(long[] counts, double percentile){
+		long count = 0;
+		for (long c : counts)
+			count += c;
+		if (count == 0)
+			return 0;
+		
+		long rank = Math.max(1, (long)Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++){
+			seen += counts[i];
+			if (seen >= rank)
+				return highestValue(i);
+		}
+		return highestValue(BUCKETS - 1);
+	}
+	
+	/**
+	 * Removes all the values. Values recorded at the same time may be kept or removed
+	 */
+	public void reset(){
+		for (AtomicLongArray stripe : stripes){
+			for (int i = 0; i < BUCKETS; i++)
+				stripe.set(i, 0);
+		}
+		sum.reset();
+		max.set(0);
+	}
+}
@@ -0,0 +1,14 @@
+package enigma.metrics;
+
+/**
+ * Sends metrics somewhere (a log, a monitoring system...)
+ * @see EnigmaMetrics#exportTo(MetricsExporter)
+ */
+public interface MetricsExporter {
+	
+	/**
+	 * @param name the name of the metrics
+	 * @param snapshot their values
+	 */
+	public void export(String name, MetricsSnapshot snapshot);
+}
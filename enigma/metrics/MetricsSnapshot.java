@@ -0,0 +1,118 @@
+package enigma.metrics;
+
+/**
+ * The values of an EnigmaMetrics at one time
+ * @see EnigmaMetrics#snapshot()
+ */
+public final class MetricsSnapshot {
+	private final long timeMillis;
+	private final long letters;
+	private final long passthroughs;
+	private final long messages;
+	private final long latencyCount;
+	private final double latencyMean;
+	private final long latencyP50;
+	private final long latencyP99;
+	private final long latencyP999;
+	private final long latencyMax;
+	
+	MetricsSnapshot(long timeMillis, long letters, long passthroughs, long messages, long[] latencyCounts,
+			double latencyMean, long latencyMax){
+		this.timeMillis = timeMillis;
+		this.letters = letters;
+		this.passthroughs = passthroughs;
+		this.messages = messages;
+		long count = 0;
+		for (long c : latencyCounts)
+			count += c;
+		this.latencyCount = count;
+		this.latencyMean = latencyMean;
+		this.latencyP50 = Math.min(LatencyHistogram.percentile(latencyCounts, 50), latencyMax);
+		this.latencyP99 = Math.min(LatencyHistogram.percentile(latencyCounts, 99), latencyMax);
+		this.latencyP999 = Math.min(LatencyHistogram.percentile(latencyCounts, 99.9), latencyMax);
+		this.latencyMax = latencyMax;
+	}
+	
+	/**
+	 * @return when the snapshot was taken ({@code System.currentTimeMillis()})
+	 */
+	public long getTimeMillis(){
+		return timeMillis;
+	}
+	
+	/**
+	 * @return the number of chars given to the machine (letters and passthroughs)
+	 */
+	public long getCharacters(){
+		return letters + passthroughs;
+	}
+	
+	/**
+	 * @return the number of letters encrypted
+	 */
+	public long getLetters(){
+		return letters;
+	}
+	
+	/**
+	 * @return the number of chars that were not letters (returned as they were)
+	 */
+	public long getPassthroughs(){
+		return passthroughs;
+	}
+	
+	/**
+	 * @return the number of bulk encryptions (strings, arrays and buffers)
+	 */
+	public long getMessages(){
+		return messages;
+	}
+	
+	/**
+	 * @return the number of bulk encryptions whose latency was recorded
+	 */
+	public long getLatencyCount(){
+		return latencyCount;
+	}
+	
+	/**
+	 * @return the mean latency of a bulk encryption in nanoseconds
+	 */
+	public double getLatencyMean(){
+		return latencyMean;
+	}
+	
+	/**
+	 * @return the median latency of a bulk encryption in nanoseconds
+	 */
+	public long getLatencyP50(){
+		return latencyP50;
+	}
+	
+	/**
+	 * @return the 99th percentile of the latency of a bulk encryption in nanoseconds
+	 */
+	public long getLatencyP99(){
+		return latencyP99;
+	}
+	
+	/**
+	 * @return the 99.9th percentile of the latency of a bulk encryption in nanoseconds
+	 */
+	public long getLatencyP999(){
+		return latencyP999;
+	}
+	
+	/**
+	 * @return the largest latency of a bulk encryption in nanoseconds
+	 */
+	public long getLatencyMax(){
+		return latencyMax;
+	}
+	
+	@Override
+	public String toString(){
+		return String.format("chars %d letters %d passthroughs %d messages %d latency(ns) mean %.0f p50 %d p99 %d p99.9 %d max %d",
+				getCharacters(), letters, passthroughs, messages, latencyMean, latencyP50, latencyP99, latencyP999, latencyMax);
+	}
+}
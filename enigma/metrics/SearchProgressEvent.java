@@ -0,0 +1,103 @@
+package enigma.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for the progress of a search over the start positions of one rotor order.
+ * Disabled unless a recording enables {@code enigma.SearchProgress}
+ * <p>
+ * Each event covers the positions tested since the one before. A search makes the first event with the constructor
+ * and then calls {@link #next(long)} every {@link #INTERVAL} positions and at the end:
+ * <pre>
+ * SearchProgressEvent progress = new SearchProgressEvent("Bombe", order, reflector, ScramblerTable.POSITIONS);
+ * for (int start = 0; start &lt; ScramblerTable.POSITIONS; start++){
+ * 	...
+ * 	if ((start + 1) % SearchProgressEvent.INTERVAL == 0)
+ * 		progress = progress.next(start + 1);
+ * }
+ * progress.next(ScramblerTable.POSITIONS);
+ * </pre>
+ */
+@Name("enigma.SearchProgress")
+@Label("Search Progress")
+@Category("Enigma")
+@Description("Start positions tested by a key search")
+@StackTrace(false)
+public final class SearchProgressEvent extends Event {
+	/**
+	 * How many positions a search should test between two events
+	 */
+	public static final int INTERVAL = 1024;
+	
+	@Label("Search")
+	private final String search;
+	
+	@Label("Rotor Order")
+	private String rotorOrder;
+	
+	@Label("Reflector")
+	private final String reflector;
+	
+	@Label("Positions")
+	@Description("Start positions tested during the event")
+	private long positions;
+	
+	@Label("Positions Tested")
+	@Description("Start positions of the rotor order tested so far")
+	private long positionsTested;
+	
+	@Label("Total Positions")
+	private final long totalPositions;
+	
+	@Label("Positions per Second")
+	private double positionsPerSecond;
+	
+	// not recorded
+	private final transient String[] order;
+	private final transient long tested; // positions tested before the event
+	private final transient long startNanos;
+	
+	/**
+	 * Begins the first event of a rotor order
+	 * @param search what is searching (for example "Bombe")
+	 * @param order names of the rotors (left to right)
+	 * @param reflector name of the reflector
+	 * @param totalPositions the number of positions the search will test
+	 */
+	public SearchProgressEvent(String search, String[] order, String reflector, long totalPositions){
+		this(search, order, reflector, 0, totalPositions);
+	}
+	
+	private SearchProgressEvent(String search, String[] order, String reflector, long tested, long totalPositions){
+		this.search = search;
+		this.order = order;
+		this.reflector = reflector;
+		this.tested = tested;
+		this.totalPositions = totalPositions;
+		this.startNanos = isEnabled() ? System.nanoTime() : 0;
+		begin();
+	}
+	
+	/**
+	 * Ends and commits the event and begins the next one
+	 * @param tested the number of positions tested so far
+	 * @return the next event (the one to call next on later)
+	 */
+	public SearchProgressEvent next(long tested){
+		end();
+		if (shouldCommit()){
+			long nanos = Math.max(1, System.nanoTime() - startNanos);
+			rotorOrder = EncryptEvent.join(order);
+			positions = tested - this.tested;
+			positionsTested = tested;
+			positionsPerSecond = positions * 1e9 / nanos;
+			commit();
+		}
+		return new SearchProgressEvent(search, order, reflector, tested, totalPositions);
+	}
+}
@@ -0,0 +1,218 @@
+package enigma.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import enigma.machine.EnigmaMachine;
+import enigma.machine.MachineConfig;
+import enigma.machine.Stepping;
+
+/**
+ * Encrypts for many concurrent sessions without a global lock
+ * <p>
+ * EnigmaMachine is not thread safe, so every call borrows a machine of the right config from a pool,
+ * encrypts with it and gives it back. Machines are kept in a separate pool for each MachineConfig
+ * (up to {@code maxIdle} of them per config) and their rotors are moved back to the starting positions
+ * of the config when they are given back, so every call starts from the same state.
+ * <p>
+ * Pools are kept for up to {@code maxConfigs} configs. When a machine is given back for a config without a pool and
+ * there are already that many, the pool of the config that was used the longest time ago is dropped with its idle
+ * machines, so a service that sees a new config for every session keeps at most {@code maxConfigs * maxIdle}
+ * idle machines.
+ * <p>
+ * The only shared state is the pools themselves (lock free queues). Encrypting only touches the borrowed
+ * machine, which is not used by any other thread at the same time
+ */
+public class EnigmaService {
+	
+	/**
+	 * The idle machines of one config
+	 */
+	private static final class Pool {
+		final ConcurrentLinkedQueue<EnigmaMachine> idle = new ConcurrentLinkedQueue<EnigmaMachine>();
+		final AtomicInteger size = new AtomicInteger();
+		// the value of clock when the pool was last used
+		volatile long lastUsed;
+	}
+	
+	/**
+	 * The number of configs pools are kept for if it is not given to the constructor
+	 */
+	public static final int DEFAULT_MAX_CONFIGS = 1024;
+	
+	private final ConcurrentHashMap<MachineConfig, Pool> pools = new ConcurrentHashMap<MachineConfig, Pool>();
+	private final AtomicLong clock = new AtomicLong();
+	private final int maxIdle;
+	private final int maxConfigs;
+	private final Executor executor;
+	
+	/**
+	 * Creates a service that keeps up to {@code maxIdle} idle machines per config for up to DEFAULT_MAX_CONFIGS configs
+	 * and runs encryptAsync on the common ForkJoinPool
+	 * @param maxIdle the maximum number of idle machines kept for each config
+	 */
+	public EnigmaService(int maxIdle){
+		this(maxIdle, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Creates a service that keeps pools for up to DEFAULT_MAX_CONFIGS configs
+	 * @param maxIdle the maximum number of idle machines kept for each config
+	 * @param executor runs the encryptions started by encryptAsync
+	 */
+	public EnigmaService(int maxIdle, Executor executor){
+		this(maxIdle, DEFAULT_MAX_CONFIGS, executor);
+	}
+	
+	/**
+	 * @param maxIdle the maximum number of idle machines kept for each config
+	 * @param maxConfigs the maximum number of configs idle machines are kept for
+	 * @param executor runs the encryptions started by encryptAsync
+	 */
+	public EnigmaService(int maxIdle, int maxConfigs, Executor executor){
+		if (maxIdle < 0 || maxConfigs < 1 || executor == null)
+			throw new IllegalArgumentException();
+		this.maxIdle = maxIdle;
+		this.maxConfigs = maxConfigs;
+		this.executor = executor;
+	}
+	
+	/**
+	 * Takes a machine of the config from the pool (or makes a new one if there are no idle ones).
+	 * The machine is at the starting positions of the config and must be given back with release
+	 * @param config the config of the machine
+	 * @return the machine. Only the caller uses it until it is released
+	 */
+	public EnigmaMachine borrow(MachineConfig config){
+		Pool pool = pools.get(config);
+		if (pool == null)
+			return config.newMachine();
+		pool.lastUsed = clock.incrementAndGet();
+		EnigmaMachine machine = pool.idle.poll();
+		if (machine == null)
+			return config.newMachine();
+		
+		pool.size.decrementAndGet();
+		return machine;
+	}
+	
+	/**
+	 * Gives back a machine taken with borrow. Its rotors are moved back to the starting positions, the stepper, trace
+	 * and metrics are removed and the stepping is set back to Stepping.COG_WHEEL, so the next borrower gets a machine
+	 * like a new one of the config. If the pool of the config is full the machine is dropped.
+	 * If the config has no pool yet and there are pools for maxConfigs configs, the least recently used pool is dropped
+	 * <p>
+	 * The parts of the machine must not have been switched or changed (other than the positions of the rotors)
+	 * @param config the config the machine was borrowed for
+	 * @param machine the machine
+	 */
+	public void release(MachineConfig config, EnigmaMachine machine){
+		machine.setStepper(null);
+		machine.setTrace(null);
+		machine.setMetrics(null);
+		machine.setStepping(Stepping.COG_WHEEL);
+		for (int i = 0; i < 3; i++)
+			machine.getRotor(i).setCurrentPos(config.getStartPosition(i));
+		
+		Pool pool = pool(config);
+		if (pool.size.incrementAndGet() > maxIdle){
+			pool.size.decrementAndGet();
+			return;
+		}
+		pool.idle.offer(machine);
+	}
+	
+	/**
+	 * Encrypts the input with a machine of the config (starting at the starting positions of the config)
+	 * @param config the config of the machine
+	 * @param input the input to encrypt
+	 * @return the encrypted string
+	 */
+	public String encrypt(MachineConfig config, String input){
+		EnigmaMachine machine = borrow(config);
+		try {
+			return machine.encrypt(input);
+		} finally {
+			release(config, machine);
+		}
+	}
+	
+	/**
+	 * Same as encrypt(MachineConfig, String) but runs on the executor of the service
+	 * @param config the config of the machine
+	 * @param input the input to encrypt
+	 * @return the future encrypted string
+	 */
+	public CompletableFuture<String> encryptAsync(final MachineConfig config, final String input){
+		return CompletableFuture.supplyAsync(new Supplier<String>() {
+			public String get() {
+				return encrypt(config, input);
+			}
+		}, executor);
+	}
+	
+	/**
+	 * @param config a config
+	 * @return the number of idle machines of the config
+	 */
+	public int idleCount(MachineConfig config){
+		Pool pool = pools.get(config);
+		return pool == null ? 0 : pool.size.get();
+	}
+	
+	/**
+	 * @return the number of configs the service keeps a pool for (at most maxConfigs, a few more for a moment
+	 * while other threads add pools)
+	 */
+	public int configCount(){
+		return pools.size();
+	}
+	
+	/**
+	 * Drops all the idle machines
+	 */
+	public void clear(){
+		pools.clear();
+	}
+	
+	private Pool pool(MachineConfig config){
+		Pool pool = pools.get(config);
+		if (pool == null){
+			Pool newPool = new Pool();
+			pool = pools.putIfAbsent(config, newPool);
+			if (pool == null){
+				pool = newPool;
+				if (pools.size() > maxConfigs)
+					evict(config);
+			}
+		}
+		pool.lastUsed = clock.incrementAndGet();
+		return pool;
+	}
+	
+	/**
+	 * Drops the least recently used pool other than the one of config. A machine that is given back to
+	 * the dropped pool at the same time is dropped with it
+	 */
+	private void evict(MachineConfig config){
+		MachineConfig oldest = null;
+		Pool oldestPool = null;
+		for (Map.Entry<MachineConfig, Pool> entry : pools.entrySet()){
+			if (entry.getKey().equals(config))
+				continue;
+			if (oldestPool == null || entry.getValue().lastUsed < oldestPool.lastUsed){
+				oldest = entry.getKey();
+				oldestPool = entry.getValue();
+			}
+		}
+		if (oldest != null)
+			pools.remove(oldest, oldestPool);
+	}
+}